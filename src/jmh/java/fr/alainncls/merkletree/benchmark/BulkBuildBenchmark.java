@@ -0,0 +1,72 @@
+package fr.alainncls.merkletree.benchmark;
+
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.model.BulkMerkleTreeResult;
+import fr.alainncls.merkletree.model.InputItems;
+import fr.alainncls.merkletree.model.MerkleTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating many small trees one by one through {@code generateMerkleTree}, or all at once through
+ * {@code generateMerkleTrees}. Repositories are stubbed, so the gap only comes from building trees in parallel: with
+ * MongoDB, the bulk path also saves two round trips per tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BulkBuildBenchmark {
+
+    @Param({"100", "1000"})
+    private int treeCount;
+
+    @Param({"300"})
+    private int leafCount;
+
+    private List<InputItems> inputItems;
+    private OfflineMerkleTreeService offlineMerkleTreeService;
+
+    @Setup
+    public void setUp() {
+        inputItems = new ArrayList<>(treeCount);
+        for (int tree = 0; tree < treeCount; tree++) {
+            List<String> items = new ArrayList<>(leafCount);
+            for (int i = 0; i < leafCount; i++) {
+                items.add("ledger-" + tree + "-entry-" + i);
+            }
+            inputItems.add(InputItems.builder().items(items).build());
+        }
+
+        offlineMerkleTreeService = new OfflineMerkleTreeService(new MerkleTreeProperties());
+    }
+
+    @TearDown(Level.Invocation)
+    public void clear() {
+        offlineMerkleTreeService.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        offlineMerkleTreeService.close();
+    }
+
+    @Benchmark
+    public List<MerkleTree> generateOneByOne() {
+        List<MerkleTree> merkleTrees = new ArrayList<>(treeCount);
+        for (InputItems items : inputItems) {
+            merkleTrees.add(offlineMerkleTreeService.getMerkleTreeService().generateMerkleTree(items));
+        }
+        return merkleTrees;
+    }
+
+    @Benchmark
+    public List<BulkMerkleTreeResult> generateInBulk() {
+        return offlineMerkleTreeService.getMerkleTreeService().generateMerkleTrees(inputItems);
+    }
+}
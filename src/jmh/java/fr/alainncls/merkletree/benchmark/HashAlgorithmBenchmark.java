@@ -0,0 +1,52 @@
+package fr.alainncls.merkletree.benchmark;
+
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.hash.TreeHasher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+/**
+ * Throughput of each hash function, for leaves and for internal nodes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashAlgorithmBenchmark {
+
+    @Param({"SHA_256", "SHA_512_256", "KECCAK_256"})
+    private HashAlgorithm algorithm;
+
+    @Param({"RAW", "HEX_CONCATENATION"})
+    private HashMode hashMode;
+
+    private TreeHasher treeHasher;
+    private final byte[] children = new byte[2 * HASH_LENGTH];
+    private final byte[] target = new byte[HASH_LENGTH];
+    private final String item = "ledger-entry-0000000042";
+
+    @Setup
+    public void setUp() {
+        treeHasher = TreeHasher.of(algorithm, hashMode);
+        ThreadLocalRandom.current().nextBytes(children);
+    }
+
+    @Benchmark
+    public byte[] hashLeaf() {
+        treeHasher.hashLeaf(item, target, 0);
+        return target;
+    }
+
+    @Benchmark
+    public byte[] hashChildren() {
+        treeHasher.hashChildren(children, 0, target, 0);
+        return target;
+    }
+}
@@ -0,0 +1,364 @@
+package fr.alainncls.merkletree.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.alainncls.merkletree.MerkleTreeApplication;
+import fr.alainncls.merkletree.model.TreeLayout;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends a mix of tree creations, root reads, level reads, deletions and requests to a fixed path at a fixed rate, then
+ * prints the throughput and the latency percentiles of each operation, and fails if one of them misses its latency
+ * objective.
+ * <p>
+ * Without a URL, the application is started in this JVM on an embedded MongoDB, so that the whole HTTP, service and
+ * storage path is exercised without any setup; the MongoDB binary is downloaded on the first run. Requests are sent
+ * on schedule whether or not the previous ones have been answered, and latencies are measured from the time each
+ * request was due rather than from the time it was sent, so that a slow server cannot hide its own queueing.
+ * <p>
+ * Arguments are {@code key=value} pairs, those starting with {@code --} are passed to the started application:
+ * <ul>
+ *     <li>{@code url}: base URL of a running instance, instead of starting one</li>
+ *     <li>{@code rate}: requests per second (200 by default)</li>
+ *     <li>{@code duration}, {@code warmup}: seconds measured (60 by default) and sent before (10 by default)</li>
+ *     <li>{@code mix}: weight of each operation ({@code create:1,root:6,level:2,delete:1} by default), {@code get}
+ *     requests the fixed path, {@code mix=get:1} compares deployments on a single endpoint</li>
+ *     <li>{@code path}: path requested by {@code get} ({@code /merkletrees/} by default)</li>
+ *     <li>{@code sizes}: leaf counts of the created trees, picked at random ({@code 100,1000,10000} by default)</li>
+ *     <li>{@code trees}: trees created before the warmup, for the first reads (20 by default, none when the mix only
+ *     holds {@code get})</li>
+ *     <li>{@code concurrency}: requests in flight, later ones wait and their latency grows (1000 by default)</li>
+ *     <li>{@code slo}: 99th percentile objective of operations, in milliseconds, for instance {@code root:50,create:500}</li>
+ *     <li>{@code output}: directory of the full latency distributions, one {@code .hgrm} file per operation
+ *     ({@code target/load-test} by default)</li>
+ * </ul>
+ */
+public class MixedLoadTest {
+
+    // Latencies above a minute are recorded as a minute
+    private static final long MAX_LATENCY = TimeUnit.MINUTES.toNanos(1);
+    private static final String EMBEDDED_MONGO_VERSION = "4.4.1";
+
+    private enum Operation {
+        CREATE(false), ROOT(true), LEVEL(true), DELETE(true), GET(false);
+
+        private final boolean onTree;
+
+        Operation(boolean onTree) {
+            this.onTree = onTree;
+        }
+    }
+
+    private static final class Tree {
+
+        private final String id;
+        private final int height;
+
+        private Tree(String id, int leafCount) {
+            this.id = id;
+            this.height = TreeLayout.height(leafCount);
+        }
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final ConcurrentLinkedDeque<Tree> trees = new ConcurrentLinkedDeque<>();
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+
+    private final String baseUrl;
+    private final String path;
+    private final int[] sizes;
+
+    private MixedLoadTest(String baseUrl, String path, int[] sizes) {
+        this.baseUrl = baseUrl;
+        this.path = path;
+        this.sizes = sizes;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(MAX_LATENCY, 3));
+            errors.put(operation, new AtomicLong());
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                applicationArgs.add(arg);
+            } else if (arg.contains("=")) {
+                options.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                System.err.println("Usage: MixedLoadTest [url=...] [rate=200] [duration=60] [warmup=10] [mix=create:1,root:6,level:2,delete:1] [path=/merkletrees/] "
+                        + "[sizes=100,1000,10000] [trees=20] [concurrency=1000] [slo=root:50,...] [output=target/load-test] [--application.property=...]");
+                System.exit(1);
+            }
+        }
+
+        int rate = Integer.parseInt(options.getOrDefault("rate", "200"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "60"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        Map<Operation, Integer> mix = parseOperations(options.getOrDefault("mix", "create:1,root:6,level:2,delete:1"));
+        String path = options.getOrDefault("path", "/merkletrees/");
+        int[] sizes = parseSizes(options.getOrDefault("sizes", "100,1000,10000"));
+        boolean onTrees = mix.keySet().stream().anyMatch(operation -> operation.onTree);
+        int initialTrees = Integer.parseInt(options.getOrDefault("trees", onTrees ? "20" : "0"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "1000"));
+        Map<Operation, Integer> slo = options.containsKey("slo") ? parseOperations(options.get("slo")) : Map.of();
+        Path output = Path.of(options.getOrDefault("output", "target/load-test"));
+
+        ConfigurableApplicationContext context = null;
+        String baseUrl = options.get("url");
+        if (baseUrl == null) {
+            context = startApplication(applicationArgs);
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        }
+
+        boolean met;
+        try {
+            MixedLoadTest loadTest = new MixedLoadTest(baseUrl.replaceAll("/+$", ""), path, sizes);
+            loadTest.seed(initialTrees);
+
+            loadTest.run(rate, warmup, mix, concurrency);
+            loadTest.reset();
+            long start = System.nanoTime();
+            loadTest.run(rate, duration, mix, concurrency);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            loadTest.writeDistributions(output);
+            met = loadTest.report(rate, seconds, slo);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+        System.exit(met ? 0 : 2);
+    }
+
+    private static ConfigurableApplicationContext startApplication(List<String> applicationArgs) {
+        return new SpringApplicationBuilder(MerkleTreeApplication.class)
+                .properties("server.port=0", "spring.mongodb.embedded.version=" + EMBEDDED_MONGO_VERSION)
+                .run(applicationArgs.toArray(new String[0]));
+    }
+
+    // Trees read before the first ones created under load, created one at a time
+    private void seed(int count) {
+        for (int i = 0; i < count; i++) {
+            create(sizes[i % sizes.length]).join();
+        }
+    }
+
+    private void run(int rate, int seconds, Map<Operation, Integer> mix, int concurrency) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long requests = (long) rate * seconds;
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        long start = System.nanoTime();
+
+        for (long i = 0; i < requests; i++) {
+            long due = start + i * interval;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            inFlight.acquire();
+            Operation picked = pick(mix, totalWeight);
+            // Reads and deletions need an existing tree, creations keep the set of trees from running out
+            Tree tree = !picked.onTree ? null : picked == Operation.DELETE ? trees.pollFirst() : randomTree();
+            Operation operation = picked.onTree && tree == null ? Operation.CREATE : picked;
+            send(operation, tree).whenComplete((succeeded, error) -> {
+                latencies.get(operation).recordValue(Math.min(System.nanoTime() - due, MAX_LATENCY));
+                if (error != null || !succeeded) {
+                    errors.get(operation).incrementAndGet();
+                }
+                inFlight.release();
+            });
+        }
+
+        // Waits for the last answers
+        inFlight.acquire(concurrency);
+    }
+
+    // Deletions take the oldest tree, a read of that tree already in flight is answered with an error
+    private CompletableFuture<Boolean> send(Operation operation, Tree tree) {
+        switch (operation) {
+            case CREATE:
+                return create(sizes[ThreadLocalRandom.current().nextInt(sizes.length)]);
+            case ROOT:
+                return get("/merkletrees/" + tree.id + "/root");
+            case LEVEL:
+                return get("/merkletrees/" + tree.id + "/" + ThreadLocalRandom.current().nextInt(tree.height));
+            case GET:
+                return get(path);
+            default:
+                HttpRequest request = newRequest("/merkletrees/" + tree.id).DELETE().build();
+                return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenApply(MixedLoadTest::succeeded);
+        }
+    }
+
+    private CompletableFuture<Boolean> create(int leafCount) {
+        // Items differ from one tree to the other, so that no store can share their hashes
+        String prefix = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        StringBuilder body = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < leafCount; i++) {
+            body.append(i == 0 ? "\"" : ",\"").append(prefix).append('_').append(i).append('"');
+        }
+        body.append("]}");
+
+        HttpRequest request = newRequest("/merkletrees/")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            if (!succeeded(response)) {
+                return false;
+            }
+            try {
+                trees.addLast(new Tree(objectMapper.readTree(response.body()).get("id").asText(), leafCount));
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private CompletableFuture<Boolean> get(String path) {
+        return httpClient.sendAsync(newRequest(path).GET().build(), HttpResponse.BodyHandlers.discarding()).thenApply(MixedLoadTest::succeeded);
+    }
+
+    private HttpRequest.Builder newRequest(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(60));
+    }
+
+    // Scans the deque, which stays small since trees are deleted as they are created
+    private Tree randomTree() {
+        int size = trees.size();
+        if (size == 0) {
+            return null;
+        }
+
+        int index = ThreadLocalRandom.current().nextInt(size);
+        Tree picked = null;
+        for (Tree tree : trees) {
+            picked = tree;
+            if (index-- == 0) {
+                break;
+            }
+        }
+        return picked;
+    }
+
+    private void reset() {
+        latencies.values().forEach(Histogram::reset);
+        errors.values().forEach(count -> count.set(0));
+    }
+
+    private void writeDistributions(Path output) {
+        try {
+            Files.createDirectories(output);
+            for (Operation operation : Operation.values()) {
+                try (PrintStream stream = new PrintStream(Files.newOutputStream(output.resolve(operation.name().toLowerCase() + ".hgrm")))) {
+                    // In milliseconds, the format plotted by the HdrHistogram tools
+                    latencies.get(operation).outputPercentileDistribution(stream, 1e6);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Prints one line per operation and one for all of them, returns whether all objectives are met
+    private boolean report(int rate, double seconds, Map<Operation, Integer> slo) {
+        Histogram total = new Histogram(MAX_LATENCY, 3);
+        long totalErrors = 0;
+        boolean met = true;
+
+        System.out.printf("%-8s %10s %10s %8s %9s %9s %9s %9s %9s%n", "", "requests", "req/s", "errors", "p50 ms", "p95 ms", "p99 ms", "p999 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            if (histogram.getTotalCount() > 0) {
+                total.add(histogram);
+                totalErrors += errors.get(operation).get();
+                print(operation.name().toLowerCase(), histogram, errors.get(operation).get(), seconds);
+            }
+        }
+        print("total", total, totalErrors, seconds);
+        System.out.printf("Target rate: %d requests/s over %.1f s%n", rate, seconds);
+
+        for (Map.Entry<Operation, Integer> objective : slo.entrySet()) {
+            double p99 = latencies.get(objective.getKey()).getValueAtPercentile(99) / 1e6;
+            if (p99 > objective.getValue()) {
+                met = false;
+                System.out.printf("SLO missed: %s p99 %.1f ms > %d ms%n", objective.getKey().name().toLowerCase(), p99, objective.getValue());
+            }
+        }
+        return met;
+    }
+
+    private static void print(String name, Histogram histogram, long errors, double seconds) {
+        System.out.printf("%-8s %10d %10.0f %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, histogram.getTotalCount(), histogram.getTotalCount() / seconds, errors,
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(95) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMaxValue() / 1e6);
+    }
+
+    private static Operation pick(Map<Operation, Integer> mix, int totalWeight) {
+        int value = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            value -= entry.getValue();
+            if (value < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty mix");
+    }
+
+    private static boolean succeeded(HttpResponse<?> response) {
+        return response.statusCode() < 400;
+    }
+
+    private static Map<Operation, Integer> parseOperations(String value) {
+        Map<Operation, Integer> operations = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split(":");
+            operations.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return operations;
+    }
+
+    private static int[] parseSizes(String value) {
+        String[] parts = value.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim());
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,118 @@
+package fr.alainncls.merkletree.benchmark;
+
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.model.MerkleTreeChunk;
+import fr.alainncls.merkletree.model.MerkleTreeMetadata;
+import fr.alainncls.merkletree.repository.MerkleTreeChunkRepository;
+import fr.alainncls.merkletree.repository.MerkleTreeRepository;
+import fr.alainncls.merkletree.repository.MongoHashStore;
+import fr.alainncls.merkletree.service.MerkleTreeBuilder;
+import fr.alainncls.merkletree.service.MerkleTreeCache;
+import fr.alainncls.merkletree.service.MerkleTreeService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * A {@link MerkleTreeService} whose repositories keep documents in maps, so that benchmarks run without MongoDB while
+ * still going through the chunking of {@link MongoHashStore}.
+ */
+class OfflineMerkleTreeService implements AutoCloseable {
+
+    private final Map<String, MerkleTree> merkleTrees = new ConcurrentHashMap<>();
+    private final Map<String, MerkleTreeChunk> chunks = new ConcurrentHashMap<>();
+    private final MerkleTreeBuilder merkleTreeBuilder;
+    private final MerkleTreeCache merkleTreeCache;
+    private final MerkleTreeService merkleTreeService;
+
+    OfflineMerkleTreeService(MerkleTreeProperties properties) {
+        MerkleTreeMetrics metrics = new MerkleTreeMetrics();
+        merkleTreeBuilder = new MerkleTreeBuilder(properties, metrics);
+        merkleTreeCache = new MerkleTreeCache(properties);
+        merkleTreeService = new MerkleTreeService(merkleTreeRepository(), new MongoHashStore(merkleTreeChunkRepository(), properties),
+                merkleTreeCache, merkleTreeBuilder, properties, metrics);
+    }
+
+    MerkleTreeService getMerkleTreeService() {
+        return merkleTreeService;
+    }
+
+    MerkleTreeCache getMerkleTreeCache() {
+        return merkleTreeCache;
+    }
+
+    // Drops all trees and chunks, generated trees would otherwise pile up across invocations
+    void clear() {
+        merkleTrees.keySet().forEach(merkleTreeCache::invalidate);
+        merkleTrees.clear();
+        chunks.clear();
+    }
+
+    @Override
+    public void close() {
+        clear();
+        merkleTreeBuilder.shutdown();
+    }
+
+    // Stub-only mocks don't record invocations, memory stays flat however many times they are called
+    private MerkleTreeRepository merkleTreeRepository() {
+        MerkleTreeRepository merkleTreeRepository = mock(MerkleTreeRepository.class, withSettings().stubOnly());
+
+        when(merkleTreeRepository.save(any())).thenAnswer(invocation -> {
+            MerkleTree merkleTree = invocation.getArgument(0);
+            merkleTrees.put(merkleTree.getId(), merkleTree.toBuilder().hashes(null).build());
+            return merkleTree;
+        });
+        when(merkleTreeRepository.insertUnordered(any())).thenAnswer(invocation -> {
+            List<MerkleTree> inserted = invocation.getArgument(0);
+            inserted.forEach(merkleTree -> merkleTrees.put(merkleTree.getId(), merkleTree.toBuilder().hashes(null).build()));
+            return Set.of();
+        });
+        when(merkleTreeRepository.findById(anyString())).thenAnswer(invocation ->
+                Optional.ofNullable(merkleTrees.get(invocation.<String>getArgument(0))).map(merkleTree -> merkleTree.toBuilder().build()));
+        when(merkleTreeRepository.findMetadataById(anyString())).thenAnswer(invocation ->
+                Optional.ofNullable(merkleTrees.get(invocation.<String>getArgument(0))).map(MerkleTreeMetadata::of));
+        doAnswer(invocation -> merkleTrees.remove(invocation.<String>getArgument(0))).when(merkleTreeRepository).deleteById(anyString());
+        return merkleTreeRepository;
+    }
+
+    private MerkleTreeChunkRepository merkleTreeChunkRepository() {
+        MerkleTreeChunkRepository merkleTreeChunkRepository = mock(MerkleTreeChunkRepository.class, withSettings().stubOnly());
+
+        when(merkleTreeChunkRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<String> ids = invocation.getArgument(0);
+            return StreamSupport.stream(ids.spliterator(), false).map(chunks::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
+        when(merkleTreeChunkRepository.saveAll(any())).thenAnswer(invocation -> {
+            Iterable<MerkleTreeChunk> saved = invocation.getArgument(0);
+            saved.forEach(chunk -> chunks.put(chunk.getId(), chunk));
+            return List.of();
+        });
+        when(merkleTreeChunkRepository.insertUnordered(any())).thenAnswer(invocation -> {
+            List<MerkleTreeChunk> inserted = invocation.getArgument(0);
+            inserted.forEach(chunk -> chunks.put(chunk.getId(), chunk));
+            return Set.of();
+        });
+        doAnswer(invocation -> {
+            Iterable<String> ids = invocation.getArgument(0);
+            ids.forEach(chunks::remove);
+            return null;
+        }).when(merkleTreeChunkRepository).deleteAllById(any());
+        return merkleTreeChunkRepository;
+    }
+}
@@ -0,0 +1,73 @@
+package fr.alainncls.merkletree.benchmark;
+
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.hash.TreeHasher;
+import fr.alainncls.merkletree.model.InputItems;
+import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.service.MerkleTreeBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building trees from 1K to 10M items, with the builder alone and through {@code generateMerkleTree} with stubbed
+ * repositories, which adds the chunked writes and the header. 10M items need a few GB of heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class TreeBuildBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int leafCount;
+
+    @Param({"true", "false"})
+    private boolean parallel;
+
+    private final TreeHasher treeHasher = TreeHasher.of(HashAlgorithm.SHA_256, HashMode.RAW);
+    private List<String> items;
+    private MerkleTreeBuilder merkleTreeBuilder;
+    private OfflineMerkleTreeService offlineMerkleTreeService;
+
+    @Setup
+    public void setUp() {
+        items = new ArrayList<>(leafCount);
+        for (int i = 0; i < leafCount; i++) {
+            items.add("ledger-entry-" + i);
+        }
+
+        MerkleTreeProperties properties = new MerkleTreeProperties();
+        properties.getBuild().setParallelThreshold(parallel ? 0 : Integer.MAX_VALUE);
+        merkleTreeBuilder = new MerkleTreeBuilder(properties, new MerkleTreeMetrics());
+        offlineMerkleTreeService = new OfflineMerkleTreeService(properties);
+    }
+
+    @TearDown(Level.Invocation)
+    public void clear() {
+        offlineMerkleTreeService.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        merkleTreeBuilder.shutdown();
+        offlineMerkleTreeService.close();
+    }
+
+    @Benchmark
+    public byte[] build() {
+        return merkleTreeBuilder.build(items, treeHasher);
+    }
+
+    @Benchmark
+    public MerkleTree generateMerkleTree() {
+        return offlineMerkleTreeService.getMerkleTreeService().generateMerkleTree(InputItems.builder().items(items).build());
+    }
+}
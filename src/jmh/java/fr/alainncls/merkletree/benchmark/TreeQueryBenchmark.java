@@ -0,0 +1,70 @@
+package fr.alainncls.merkletree.benchmark;
+
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.model.InputItems;
+import fr.alainncls.merkletree.model.MerkleProof;
+import fr.alainncls.merkletree.service.MerkleTreeService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of a tree of 1M leaves through the service, from the in-memory cache or from the stubbed chunk store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class TreeQueryBenchmark {
+
+    private static final int LEAF_COUNT = 1 << 20;
+    // 1024 hashes, the level 10 levels above the leaves
+    private static final int LEVEL = 10;
+
+    @Param({"true", "false"})
+    private boolean cached;
+
+    private OfflineMerkleTreeService offlineMerkleTreeService;
+    private MerkleTreeService merkleTreeService;
+    private String id;
+
+    @Setup
+    public void setUp() {
+        List<String> items = new ArrayList<>(LEAF_COUNT);
+        for (int i = 0; i < LEAF_COUNT; i++) {
+            items.add("ledger-entry-" + i);
+        }
+
+        offlineMerkleTreeService = new OfflineMerkleTreeService(new MerkleTreeProperties());
+        merkleTreeService = offlineMerkleTreeService.getMerkleTreeService();
+        id = merkleTreeService.generateMerkleTree(InputItems.builder().items(items).build()).getId();
+        if (!cached) {
+            offlineMerkleTreeService.getMerkleTreeCache().invalidate(id);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        offlineMerkleTreeService.close();
+    }
+
+    @Benchmark
+    public int height() {
+        return merkleTreeService.getMerkleTreeHeight(id);
+    }
+
+    @Benchmark
+    public long level() {
+        return merkleTreeService.getMerkleTreeLevel(id, LEVEL, 0, null).count();
+    }
+
+    @Benchmark
+    public MerkleProof proof() {
+        return merkleTreeService.getMerkleProof(id, ThreadLocalRandom.current().nextInt(LEAF_COUNT));
+    }
+}
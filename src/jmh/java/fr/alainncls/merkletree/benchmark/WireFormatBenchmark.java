@@ -0,0 +1,101 @@
+package fr.alainncls.merkletree.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import fr.alainncls.merkletree.codec.BinaryCodec;
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.hash.Hex;
+import fr.alainncls.merkletree.model.MerkleProof;
+import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.model.ProofStep;
+import fr.alainncls.merkletree.model.TreeLayout;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+/**
+ * Serialization of a whole tree and of an inclusion proof, as JSON and with the binary codec. The size of each
+ * encoding is printed once per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"1024", "65536"})
+    private int leafCount;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private MerkleTree merkleTree;
+    private MerkleProof merkleProof;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] hashes = new byte[Math.toIntExact(TreeLayout.nodeCount(leafCount) * HASH_LENGTH)];
+        ThreadLocalRandom.current().nextBytes(hashes);
+
+        merkleTree = MerkleTree.builder()
+                .id("61a7b3f4c2e5d8a9b0c1d2e3")
+                .leafCount(leafCount)
+                .height(TreeLayout.height(leafCount))
+                .algorithm(HashAlgorithm.SHA_256)
+                .hashMode(HashMode.RAW)
+                .root(Hex.encode(hashes, hashes.length - HASH_LENGTH, HASH_LENGTH))
+                .createdAt(Instant.now())
+                .hashes(hashes)
+                .build();
+
+        List<ProofStep> siblings = new ArrayList<>();
+        for (int level = 1; level < merkleTree.getHeight(); level++) {
+            siblings.add(ProofStep.builder().hash(Hex.encode(hashes, level * HASH_LENGTH, HASH_LENGTH)).position(ProofStep.Position.RIGHT).build());
+        }
+        merkleProof = MerkleProof.builder()
+                .root(merkleTree.getRoot())
+                .leafIndex(0)
+                .leaf(Hex.encode(hashes, 0, HASH_LENGTH))
+                .algorithm(HashAlgorithm.SHA_256)
+                .hashMode(HashMode.RAW)
+                .siblings(siblings)
+                .build();
+
+        System.out.printf("%n%d leaves, tree: %d bytes as JSON, %d bytes as binary; proof: %d bytes as JSON, %d bytes as binary%n",
+                leafCount, jsonTree().length, binaryTree().length, jsonProof().length, binaryProof().length);
+    }
+
+    @Benchmark
+    public byte[] jsonTree() throws IOException {
+        return objectMapper.writeValueAsBytes(merkleTree);
+    }
+
+    @Benchmark
+    public byte[] binaryTree() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinaryCodec.writeMerkleTree(merkleTree, new DataOutputStream(output));
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] jsonProof() throws IOException {
+        return objectMapper.writeValueAsBytes(merkleProof);
+    }
+
+    @Benchmark
+    public byte[] binaryProof() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinaryCodec.writeMerkleProof(merkleProof, new DataOutputStream(output));
+        return output.toByteArray();
+    }
+}
@@ -2,8 +2,10 @@ package fr.alainncls.merkletree;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class MerkleTreeApplication {
 
     public static void main(String[] args) {
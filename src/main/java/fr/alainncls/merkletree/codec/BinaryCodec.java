@@ -0,0 +1,202 @@
+package fr.alainncls.merkletree.codec;
+
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.hash.Hex;
+import fr.alainncls.merkletree.model.MerkleMultiProof;
+import fr.alainncls.merkletree.model.MerkleProof;
+import fr.alainncls.merkletree.model.MerkleSubtree;
+import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.model.ProofStep;
+import fr.alainncls.merkletree.model.TreeLayout;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+/**
+ * Compact binary layout of the API models, sent instead of JSON for {@code application/octet-stream}.
+ * <p>
+ * Numbers are big-endian, hashes are their 32 raw bytes, lists of hashes are an int count followed by the hashes,
+ * strings and enums are modified UTF-8 as written by {@link DataOutput#writeUTF(String)}, empty when null.
+ * <ul>
+ * <li>Tree: id, leafCount (int), algorithm, hashMode, createdAt (long, epoch milliseconds or -1), root, height
+ * (int), then each level from the root down as a list of hashes</li>
+ * <li>Proof: root, leafIndex (int), leaf, algorithm, hashMode, then a count (int) of siblings, each one a position
+ * byte (0 for LEFT, 1 for RIGHT) followed by its hash</li>
+ * <li>Multi-proof: root, leafCount (int), a count (int) of leaf indices followed by the indices (int), leaves,
+ * algorithm, hashMode, proof</li>
+ * <li>Subtree: level (int), index (long), then a count (int) of levels, each one a list of hashes</li>
+ * </ul>
+ */
+public final class BinaryCodec {
+
+    // Counts are read from the request body, lists only grow to them as elements are actually read
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private BinaryCodec() {
+    }
+
+    public static void writeMerkleTree(MerkleTree merkleTree, DataOutput output) throws IOException {
+        writeString(output, merkleTree.getId());
+        output.writeInt(merkleTree.getLeafCount());
+        writeEnum(output, merkleTree.getAlgorithm());
+        writeEnum(output, merkleTree.getHashMode());
+        output.writeLong(merkleTree.getCreatedAt() != null ? merkleTree.getCreatedAt().toEpochMilli() : -1);
+        writeHash(output, merkleTree.getRoot());
+
+        // Levels are written straight from the flat hashes, no hexadecimal string is ever built
+        byte[] hashes = merkleTree.getHashes();
+        int height = hashes != null ? TreeLayout.height(merkleTree.getLeafCount()) : 0;
+        output.writeInt(height);
+        for (int level = 0; level < height; level++) {
+            int offset = Math.toIntExact(TreeLayout.levelOffset(merkleTree.getLeafCount(), level));
+            int width = Math.toIntExact(TreeLayout.levelWidth(merkleTree.getLeafCount(), level));
+            output.writeInt(width);
+            output.write(hashes, offset * HASH_LENGTH, width * HASH_LENGTH);
+        }
+    }
+
+    public static void writeMerkleProof(MerkleProof merkleProof, DataOutput output) throws IOException {
+        writeHash(output, merkleProof.getRoot());
+        output.writeInt(merkleProof.getLeafIndex());
+        writeHash(output, merkleProof.getLeaf());
+        writeEnum(output, merkleProof.getAlgorithm());
+        writeEnum(output, merkleProof.getHashMode());
+
+        List<ProofStep> siblings = merkleProof.getSiblings() != null ? merkleProof.getSiblings() : List.of();
+        output.writeInt(siblings.size());
+        for (ProofStep sibling : siblings) {
+            output.writeByte(sibling.getPosition() == ProofStep.Position.LEFT ? 0 : 1);
+            writeHash(output, sibling.getHash());
+        }
+    }
+
+    public static MerkleProof readMerkleProof(DataInput input) throws IOException {
+        MerkleProof merkleProof = MerkleProof.builder()
+                .root(readHash(input))
+                .leafIndex(input.readInt())
+                .leaf(readHash(input))
+                .algorithm(readEnum(input, HashAlgorithm.class))
+                .hashMode(readEnum(input, HashMode.class))
+                .build();
+
+        int count = readCount(input);
+        List<ProofStep> siblings = new ArrayList<>(Math.min(count, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < count; i++) {
+            ProofStep.Position position = input.readByte() == 0 ? ProofStep.Position.LEFT : ProofStep.Position.RIGHT;
+            siblings.add(ProofStep.builder().position(position).hash(readHash(input)).build());
+        }
+        merkleProof.setSiblings(siblings);
+        return merkleProof;
+    }
+
+    public static void writeMerkleMultiProof(MerkleMultiProof merkleMultiProof, DataOutput output) throws IOException {
+        writeHash(output, merkleMultiProof.getRoot());
+        output.writeInt(merkleMultiProof.getLeafCount());
+
+        List<Integer> leafIndices = merkleMultiProof.getLeafIndices() != null ? merkleMultiProof.getLeafIndices() : List.of();
+        output.writeInt(leafIndices.size());
+        for (int leafIndex : leafIndices) {
+            output.writeInt(leafIndex);
+        }
+
+        writeHashes(output, merkleMultiProof.getLeaves());
+        writeEnum(output, merkleMultiProof.getAlgorithm());
+        writeEnum(output, merkleMultiProof.getHashMode());
+        writeHashes(output, merkleMultiProof.getProof());
+    }
+
+    public static MerkleMultiProof readMerkleMultiProof(DataInput input) throws IOException {
+        String root = readHash(input);
+        int leafCount = input.readInt();
+
+        int count = readCount(input);
+        List<Integer> leafIndices = new ArrayList<>(Math.min(count, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < count; i++) {
+            leafIndices.add(input.readInt());
+        }
+
+        return MerkleMultiProof.builder()
+                .root(root)
+                .leafCount(leafCount)
+                .leafIndices(leafIndices)
+                .leaves(readHashes(input))
+                .algorithm(readEnum(input, HashAlgorithm.class))
+                .hashMode(readEnum(input, HashMode.class))
+                .proof(readHashes(input))
+                .build();
+    }
+
+    public static void writeMerkleSubtree(MerkleSubtree merkleSubtree, DataOutput output) throws IOException {
+        output.writeInt(merkleSubtree.getLevel());
+        output.writeLong(merkleSubtree.getIndex());
+
+        List<List<String>> levels = merkleSubtree.getLevels() != null ? merkleSubtree.getLevels() : List.of();
+        output.writeInt(levels.size());
+        for (List<String> level : levels) {
+            writeHashes(output, level);
+        }
+    }
+
+    private static void writeHash(DataOutput output, String hash) throws IOException {
+        byte[] bytes = hash != null ? Hex.decode(hash) : new byte[HASH_LENGTH];
+        if (bytes.length != HASH_LENGTH) {
+            throw new IllegalArgumentException("Hashes must be " + HASH_LENGTH + " bytes long");
+        }
+        output.write(bytes);
+    }
+
+    private static String readHash(DataInput input) throws IOException {
+        byte[] bytes = new byte[HASH_LENGTH];
+        input.readFully(bytes);
+        return Hex.encode(bytes);
+    }
+
+    private static void writeHashes(DataOutput output, List<String> hashes) throws IOException {
+        List<String> values = hashes != null ? hashes : List.of();
+        output.writeInt(values.size());
+        for (String hash : values) {
+            writeHash(output, hash);
+        }
+    }
+
+    private static List<String> readHashes(DataInput input) throws IOException {
+        int count = readCount(input);
+        List<String> hashes = new ArrayList<>(Math.min(count, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < count; i++) {
+            hashes.add(readHash(input));
+        }
+        return hashes;
+    }
+
+    private static int readCount(DataInput input) throws IOException {
+        int count = input.readInt();
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative count " + count);
+        }
+        return count;
+    }
+
+    private static void writeString(DataOutput output, String value) throws IOException {
+        output.writeUTF(value != null ? value : "");
+    }
+
+    private static String readString(DataInput input) throws IOException {
+        String value = input.readUTF();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static void writeEnum(DataOutput output, Enum<?> value) throws IOException {
+        writeString(output, value != null ? value.name() : null);
+    }
+
+    private static <E extends Enum<E>> E readEnum(DataInput input, Class<E> type) throws IOException {
+        String value = readString(input);
+        return value != null ? Enum.valueOf(type, value) : null;
+    }
+}
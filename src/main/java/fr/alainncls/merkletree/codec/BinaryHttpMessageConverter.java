@@ -0,0 +1,91 @@
+package fr.alainncls.merkletree.codec;
+
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import fr.alainncls.merkletree.model.MerkleMultiProof;
+import fr.alainncls.merkletree.model.MerkleProof;
+import fr.alainncls.merkletree.model.MerkleSubtree;
+import fr.alainncls.merkletree.model.MerkleTree;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes the models with {@link BinaryCodec} for {@code application/octet-stream}, JSON stays the default
+ * as long as this converter is registered after the Jackson one.
+ */
+public class BinaryHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    private static final Set<Class<?>> WRITABLE = Set.of(MerkleTree.class, MerkleProof.class, MerkleMultiProof.class, MerkleSubtree.class);
+    private static final Set<Class<?>> READABLE = Set.of(MerkleProof.class, MerkleMultiProof.class);
+
+    private final MerkleTreeMetrics metrics;
+
+    public BinaryHttpMessageConverter(MerkleTreeMetrics metrics) {
+        super(MediaType.APPLICATION_OCTET_STREAM);
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return WRITABLE.contains(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return mediaType != null && super.canRead(mediaType);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return READABLE.contains(clazz) && canRead(mediaType);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(inputMessage.getBody()));
+        try {
+            return clazz == MerkleProof.class ? BinaryCodec.readMerkleProof(input) : BinaryCodec.readMerkleMultiProof(input);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new HttpMessageNotReadableException("Invalid binary " + clazz.getSimpleName() + ": " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object object, HttpOutputMessage outputMessage) throws IOException {
+        long start = System.nanoTime();
+        try {
+            write(object, outputMessage);
+        } finally {
+            metrics.serializationTimer(object.getClass().getSimpleName(), "binary").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static void write(Object object, HttpOutputMessage outputMessage) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputMessage.getBody()));
+        try {
+            if (object instanceof MerkleTree) {
+                BinaryCodec.writeMerkleTree((MerkleTree) object, output);
+            } else if (object instanceof MerkleProof) {
+                BinaryCodec.writeMerkleProof((MerkleProof) object, output);
+            } else if (object instanceof MerkleMultiProof) {
+                BinaryCodec.writeMerkleMultiProof((MerkleMultiProof) object, output);
+            } else {
+                BinaryCodec.writeMerkleSubtree((MerkleSubtree) object, output);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new HttpMessageNotWritableException("Can't encode " + object.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
+        output.flush();
+    }
+}
@@ -0,0 +1,46 @@
+package fr.alainncls.merkletree.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The default JSON converter, timing each response body it writes by type of the returned value.
+ */
+public class TimedJsonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final MerkleTreeMetrics metrics;
+
+    public TimedJsonHttpMessageConverter(ObjectMapper objectMapper, MerkleTreeMetrics metrics) {
+        super(objectMapper);
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        long start = System.nanoTime();
+        try {
+            super.writeInternal(object, type, outputMessage);
+        } finally {
+            metrics.serializationTimer(typeName(object), "json").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Maps and lists are returned as immutable collections whose class names say nothing of their content
+    static String typeName(Object object) {
+        if (object instanceof Map) {
+            return "Map";
+        }
+        if (object instanceof Collection) {
+            return "List";
+        }
+        return object.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,92 @@
+package fr.alainncls.merkletree.config;
+
+import fr.alainncls.merkletree.model.TreeLayout;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+/**
+ * Meters of the build, storage and serialization hot paths, published with the other metrics of the application.
+ * <p>
+ * They are recorded once per build phase, storage call or response, never per hash, so that hashing loops run as
+ * fast as without them: the hash rate is the rate of the {@code merkletree.hashes} counter. Until they are bound to a
+ * registry, they record nothing.
+ */
+@Component
+public class MerkleTreeMetrics implements MeterBinder {
+
+    private final CompositeMeterRegistry registry = new CompositeMeterRegistry();
+
+    private final Timer leafHashing = Timer.builder("merkletree.build.leaves")
+            .description("Time spent hashing the leaves of trees built in memory")
+            .register(registry);
+    private final Timer levelReduction = Timer.builder("merkletree.build.levels")
+            .description("Time spent hashing the levels above the leaves of trees built in memory")
+            .register(registry);
+    private final Counter hashes = Counter.builder("merkletree.hashes")
+            .description("Leaves and internal nodes hashed")
+            .register(registry);
+    private final DistributionSummary treeLeaves = DistributionSummary.builder("merkletree.tree.leaves")
+            .description("Leaf count of the trees created or grown")
+            .baseUnit("leaves")
+            .register(registry);
+    private final DistributionSummary treeSize = DistributionSummary.builder("merkletree.tree.size")
+            .description("Size of the hashes of the trees created or grown")
+            .baseUnit(BaseUnits.BYTES)
+            .register(registry);
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        registry.add(meterRegistry);
+    }
+
+    public void leavesHashed(int count, long nanos) {
+        leafHashing.record(nanos, TimeUnit.NANOSECONDS);
+        hashes.increment(count);
+    }
+
+    public void levelsReduced(int count, long nanos) {
+        levelReduction.record(nanos, TimeUnit.NANOSECONDS);
+        hashes.increment(count);
+    }
+
+    // Nodes hashed outside of in-memory builds
+    public void nodesHashed(long count) {
+        hashes.increment(count);
+    }
+
+    public void treeStored(long leafCount) {
+        treeLeaves.record(leafCount);
+        treeSize.record(TreeLayout.nodeCount(leafCount) * HASH_LENGTH);
+    }
+
+    public Timer storageTimer(String store, String operation) {
+        return timers.computeIfAbsent("storage:" + store + ":" + operation, key -> Timer.builder("merkletree.storage")
+                .description("Time spent reading and writing hashes")
+                .tag("store", store)
+                .tag("operation", operation)
+                .register(registry));
+    }
+
+    // Writing a response body, including the time spent waiting for the client to read it
+    public Timer serializationTimer(String type, String format) {
+        return timers.computeIfAbsent("serialization:" + type + ":" + format, key -> Timer.builder("merkletree.serialization")
+                .description("Time spent writing response bodies")
+                .tag("type", type)
+                .tag("format", format)
+                .register(registry));
+    }
+}
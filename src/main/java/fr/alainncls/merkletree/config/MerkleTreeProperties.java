@@ -0,0 +1,94 @@
+package fr.alainncls.merkletree.config;
+
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "merkletree")
+public class MerkleTreeProperties {
+
+    private final Build build = new Build();
+    private final Hash hash = new Hash();
+    private final Storage storage = new Storage();
+    private final Cache cache = new Cache();
+    private final Threads threads = new Threads();
+    private final Jobs jobs = new Jobs();
+
+    @Data
+    public static class Build {
+
+        // Number of items from which trees are built on the fork/join pool
+        private int parallelThreshold = 16384;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        // Number of hashes computed by a single fork/join task
+        private int chunkSize = 2048;
+        // Number of trees accepted by a single bulk request
+        private int maxBulkSize = 1000;
+    }
+
+    @Data
+    public static class Hash {
+
+        // Default hash function of new trees
+        private HashAlgorithm algorithm = HashAlgorithm.SHA_256;
+
+        // Default node hashing mode of new trees, HEX_CONCATENATION reproduces the roots of legacy trees
+        private HashMode mode = HashMode.RAW;
+    }
+
+    @Data
+    public static class Storage {
+
+        // Number of hashes stored in a single chunk document, 4096 hashes are 128 KB
+        private int chunkSize = 4096;
+        private Type type = Type.CHUNKS;
+        // Where MAPPED_FILES stores the levels of each tree
+        private String directory = "hashes";
+        // How long an append, an update or a sparse tree change can hold a tree, other writers get a 409 until it is released or expires
+        private Duration writeLease = Duration.ofMinutes(1);
+        // Largest tree returned whole, at most 2 GB, larger ones are only available level by level
+        private DataSize maxWholeTreeSize = DataSize.ofMegabytes(256);
+
+        public enum Type {
+            // Chunks owned by each tree
+            CHUNKS,
+            // Chunks keyed by their content, shared by all trees holding them; the reactive API is not available
+            CONTENT_ADDRESSED,
+            // Memory-mapped files on the local disk of the instance; the reactive API is not available
+            MAPPED_FILES
+        }
+    }
+
+    @Data
+    public static class Cache {
+
+        // Total size of the hashes of the trees kept in memory
+        private DataSize maximumWeight = DataSize.ofMegabytes(256);
+
+        // Bounds how long a tree changed by another instance is served stale
+        private Duration expireAfterWrite = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Threads {
+
+        // Runs requests and asynchronous responses on virtual threads
+        private boolean virtual = false;
+    }
+
+    @Data
+    public static class Jobs {
+
+        // Number of trees built at the same time by asynchronous jobs
+        private int concurrency = 2;
+        // Number of jobs waiting for a worker, beyond which new jobs are rejected
+        private int queueCapacity = 16;
+        // How long the status of a finished job can still be read
+        private Duration retention = Duration.ofHours(1);
+    }
+}
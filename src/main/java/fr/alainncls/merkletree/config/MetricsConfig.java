@@ -0,0 +1,27 @@
+package fr.alainncls.merkletree.config;
+
+import fr.alainncls.merkletree.repository.HashStore;
+import fr.alainncls.merkletree.repository.TimedHashStore;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    // Static so that it does not create this configuration early, unordered so that it wraps the translating proxy of the store
+    @Bean
+    public static BeanPostProcessor timedHashStorePostProcessor(ObjectProvider<MerkleTreeMetrics> metrics) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HashStore) {
+                    return new TimedHashStore((HashStore) bean, AopUtils.getTargetClass(bean).getSimpleName(), metrics.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
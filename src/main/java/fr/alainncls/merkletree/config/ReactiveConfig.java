@@ -0,0 +1,16 @@
+package fr.alainncls.merkletree.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class ReactiveConfig {
+
+    // Hashing is CPU-bound, the reactive API runs it on a fixed number of threads instead of on request or I/O threads
+    @Bean(destroyMethod = "dispose")
+    public Scheduler hashScheduler(MerkleTreeProperties properties) {
+        return Schedulers.newParallel("merkle-hash", properties.getBuild().getParallelism());
+    }
+}
@@ -0,0 +1,47 @@
+package fr.alainncls.merkletree.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs each request, and each asynchronous response such as streamed levels, on its own virtual thread, so that
+ * requests waiting on Mongo don't hold a platform thread.
+ * <p>
+ * Tree builds stay on the fork/join pool of {@link fr.alainncls.merkletree.service.MerkleTreeBuilder}, hashing is
+ * CPU-bound and gains nothing from virtual threads.
+ */
+@Configuration
+@ConditionalOnProperty(name = "merkletree.threads.virtual", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    @Bean
+    public WebMvcConfigurer virtualThreadsAsyncConfigurer() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setTaskExecutor(new TaskExecutorAdapter(executor));
+            }
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,27 @@
+package fr.alainncls.merkletree.config;
+
+import fr.alainncls.merkletree.codec.BinaryHttpMessageConverter;
+import fr.alainncls.merkletree.codec.TimedJsonHttpMessageConverter;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+@AllArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final MerkleTreeMetrics merkleTreeMetrics;
+
+    // Added last so that requests without an explicit Accept header keep getting JSON
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.replaceAll(converter -> converter.getClass() == MappingJackson2HttpMessageConverter.class
+                ? new TimedJsonHttpMessageConverter(((MappingJackson2HttpMessageConverter) converter).getObjectMapper(), merkleTreeMetrics)
+                : converter);
+        converters.add(new BinaryHttpMessageConverter(merkleTreeMetrics));
+    }
+}
@@ -1,14 +1,44 @@
 package fr.alainncls.merkletree.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.model.BulkMerkleTreeResult;
+import fr.alainncls.merkletree.model.InputItem;
 import fr.alainncls.merkletree.model.InputItems;
+import fr.alainncls.merkletree.model.InputLeaves;
+import fr.alainncls.merkletree.model.MerkleMultiProof;
+import fr.alainncls.merkletree.model.MerkleProof;
+import fr.alainncls.merkletree.model.MerkleSubtree;
 import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.model.MerkleTreeJob;
+import fr.alainncls.merkletree.model.MerkleTreeMetadata;
+import fr.alainncls.merkletree.model.MerkleTreePage;
+import fr.alainncls.merkletree.service.MerkleTreeJobService;
 import fr.alainncls.merkletree.service.MerkleTreeService;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 @RestController
 @AllArgsConstructor
@@ -16,10 +46,31 @@ import java.util.Map;
 public class MerkleTreeController {
 
     private final MerkleTreeService merkleTreeService;
+    private final MerkleTreeJobService merkleTreeJobService;
+    private final ObjectMapper objectMapper;
+    private final MerkleTreeMetrics merkleTreeMetrics;
 
-    @GetMapping("/")
-    public List<MerkleTree> getAllMerkleTrees() {
-        return merkleTreeService.getAllMerkleTrees();
+    @GetMapping(value = "/", produces = MediaType.APPLICATION_JSON_VALUE)
+    public MerkleTreePage getMerkleTrees(@RequestParam(required = false) String after, @RequestParam(defaultValue = "100") int limit) {
+        return merkleTreeService.getMerkleTrees(after, limit);
+    }
+
+    // One JSON document per line, written as trees are read so memory does not grow with the collection
+    @GetMapping(value = "/", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMerkleTrees() {
+        StreamingResponseBody body = outputStream -> {
+            try (Stream<MerkleTreeMetadata> merkleTrees = merkleTreeService.streamMerkleTrees();
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                // Lines are separated explicitly instead of by the default space between root values
+                generator.setRootValueSeparator(null);
+                Iterator<MerkleTreeMetadata> iterator = merkleTrees.iterator();
+                while (iterator.hasNext()) {
+                    objectMapper.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(timed(body, "MerkleTreeMetadata", "ndjson"));
     }
 
     @GetMapping("/{id}")
@@ -27,6 +78,11 @@ public class MerkleTreeController {
         return merkleTreeService.getMerkleTree(id);
     }
 
+    @GetMapping("/{id}/metadata")
+    public MerkleTreeMetadata getMerkleTreeMetadata(@PathVariable String id) {
+        return merkleTreeService.getMerkleTreeMetadata(id);
+    }
+
     @GetMapping("/{id}/root")
     public Map<String, String> getMerkleTreeRoot(@PathVariable String id) {
         return Map.of("root", merkleTreeService.getMerkleTreeRoot(id));
@@ -37,9 +93,97 @@ public class MerkleTreeController {
         return Map.of("height", merkleTreeService.getMerkleTreeHeight(id));
     }
 
-    @GetMapping("/{id}/{level}")
-    public List<String> getMerkleTreeLevel(@PathVariable String id, @PathVariable int level) {
-        return merkleTreeService.getMerkleTreeLevel(id, level);
+    // Levels can hold millions of hashes, they are written as they are read instead of being collected first
+    @GetMapping(value = "/{id}/{level}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getMerkleTreeLevel(@PathVariable String id,
+                                                                    @PathVariable int level,
+                                                                    @RequestParam(defaultValue = "0") long offset,
+                                                                    @RequestParam(required = false) Long limit) {
+        Stream<String> hashes = merkleTreeService.getMerkleTreeLevel(id, level, offset, limit);
+
+        StreamingResponseBody body = outputStream -> {
+            try (hashes; JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                Iterator<String> iterator = hashes.iterator();
+                while (iterator.hasNext()) {
+                    generator.writeString(iterator.next());
+                }
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(timed(body, "level", "json"));
+    }
+
+    // The binary level is its raw hashes one after the other, the response length gives their count
+    @GetMapping(value = "/{id}/{level}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> getMerkleTreeLevelHashes(@PathVariable String id,
+                                                                          @PathVariable int level,
+                                                                          @RequestParam(defaultValue = "0") long offset,
+                                                                          @RequestParam(required = false) Long limit) {
+        Stream<ByteBuffer> pages = merkleTreeService.getMerkleTreeLevelHashes(id, level, offset, limit);
+
+        StreamingResponseBody body = outputStream -> {
+            try (pages) {
+                WritableByteChannel channel = Channels.newChannel(outputStream);
+                Iterator<ByteBuffer> iterator = pages.iterator();
+                while (iterator.hasNext()) {
+                    ByteBuffer page = iterator.next();
+                    while (page.hasRemaining()) {
+                        channel.write(page);
+                    }
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(timed(body, "level", "binary"));
+    }
+
+    @GetMapping("/{id}/nodes/{level}/{index}")
+    public MerkleSubtree getMerkleSubtree(@PathVariable String id, @PathVariable int level, @PathVariable long index,
+                                          @RequestParam(defaultValue = "1") int depth) {
+        return merkleTreeService.getMerkleSubtree(id, level, index, depth);
+    }
+
+    // Indices are written as they are found, a diff of two unrelated trees lists all their leaves
+    @GetMapping(value = "/{id}/diff/{otherId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> diffMerkleTrees(@PathVariable String id, @PathVariable String otherId) {
+        LongStream leafIndices = merkleTreeService.diffMerkleTrees(id, otherId);
+
+        StreamingResponseBody body = outputStream -> {
+            try (leafIndices; JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                PrimitiveIterator.OfLong iterator = leafIndices.iterator();
+                while (iterator.hasNext()) {
+                    generator.writeNumber(iterator.nextLong());
+                }
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(timed(body, "diff", "json"));
+    }
+
+    @GetMapping("/{id}/proof/{leafIndex}")
+    public MerkleProof getMerkleProof(@PathVariable String id, @PathVariable int leafIndex) {
+        return merkleTreeService.getMerkleProof(id, leafIndex);
+    }
+
+    @GetMapping("/{id}/proof")
+    public MerkleProof getMerkleProofByItem(@PathVariable String id, @RequestParam String item) {
+        return merkleTreeService.getMerkleProof(id, item);
+    }
+
+    @PostMapping("/verify")
+    public Map<String, Boolean> verifyMerkleProof(@RequestBody MerkleProof merkleProof) {
+        return Map.of("valid", merkleTreeService.verifyMerkleProof(merkleProof));
+    }
+
+    @PostMapping("/{id}/multiproof")
+    public MerkleMultiProof getMerkleMultiProof(@PathVariable String id, @RequestBody InputLeaves inputLeaves) {
+        return merkleTreeService.getMerkleMultiProof(id, inputLeaves);
+    }
+
+    @PostMapping("/verify/multiproof")
+    public Map<String, Boolean> verifyMerkleMultiProof(@RequestBody MerkleMultiProof merkleMultiProof) {
+        return Map.of("valid", merkleTreeService.verifyMerkleMultiProof(merkleMultiProof));
     }
 
     @PostMapping("/")
@@ -47,10 +191,64 @@ public class MerkleTreeController {
         return merkleTreeService.generateMerkleTree(inputItems);
     }
 
+    // Answers right away, the tree is built in the background and its job can be polled until it is done
+    @PostMapping(value = "/", params = "async=true")
+    public ResponseEntity<MerkleTreeJob> generateMerkleTreeAsync(@RequestBody InputItems inputItems) {
+        MerkleTreeJob merkleTreeJob = merkleTreeJobService.submit(inputItems);
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentContextPath().path("/merkletrees/jobs/{id}").build(merkleTreeJob.getId()))
+                .body(merkleTreeJob);
+    }
+
+    // One result per submitted tree, in the same order, trees failing individually don't fail the request
+    @PostMapping("/bulk")
+    public List<BulkMerkleTreeResult> generateMerkleTrees(@RequestBody List<InputItems> inputItems) {
+        return merkleTreeService.generateMerkleTrees(inputItems);
+    }
+
+    @GetMapping("/jobs/{id}")
+    public MerkleTreeJob getMerkleTreeJob(@PathVariable String id) {
+        return merkleTreeJobService.getJob(id);
+    }
+
+    @PostMapping(value = "/stream", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    public Map<String, Object> streamMerkleTree(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                @RequestParam(required = false) HashAlgorithm algorithm,
+                                                @RequestParam(required = false) HashMode hashMode,
+                                                InputStream inputStream) throws IOException {
+        return toSummary(merkleTreeService.generateMerkleTree(inputStream, contentType, algorithm, hashMode));
+    }
+
+    @PostMapping("/{id}/items")
+    public Map<String, Object> appendItems(@PathVariable String id, @RequestBody InputItems inputItems) {
+        return toSummary(merkleTreeService.appendItems(id, inputItems));
+    }
+
+    @PutMapping("/{id}/items/{leafIndex}")
+    public Map<String, Object> updateItem(@PathVariable String id, @PathVariable int leafIndex, @RequestBody InputItem inputItem) {
+        return toSummary(merkleTreeService.updateItem(id, leafIndex, inputItem));
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteMerkleTree(@PathVariable String id) {
         merkleTreeService.deleteMerkleTree(id);
     }
 
+    // Trees being streamed or updated can be huge, only their ID, root and size are returned
+    private static Map<String, Object> toSummary(MerkleTree merkleTree) {
+        return Map.of("id", merkleTree.getId(), "root", merkleTree.getRoot(), "leafCount", merkleTree.getLeafCount());
+    }
+
+    // Streamed bodies are written after the handler returns, out of reach of the message converters
+    private StreamingResponseBody timed(StreamingResponseBody body, String type, String format) {
+        return outputStream -> {
+            long start = System.nanoTime();
+            try {
+                body.writeTo(outputStream);
+            } finally {
+                merkleTreeMetrics.serializationTimer(type, format).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
 }
@@ -0,0 +1,86 @@
+package fr.alainncls.merkletree.controller;
+
+import fr.alainncls.merkletree.model.InputItems;
+import fr.alainncls.merkletree.model.MerkleProof;
+import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.model.MerkleTreeMetadata;
+import fr.alainncls.merkletree.service.ReactiveMerkleTreeService;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Non-blocking variant of the read endpoints of {@link MerkleTreeController}. Request threads are released while
+ * Mongo is queried, lists are collected into a JSON array or streamed line by line with {@code application/x-ndjson}.
+ */
+@RestController
+@ConditionalOnProperty(name = "merkletree.storage.type", havingValue = "CHUNKS", matchIfMissing = true)
+@AllArgsConstructor
+@RequestMapping("reactive/merkletrees")
+public class ReactiveMerkleTreeController {
+
+    private final ReactiveMerkleTreeService reactiveMerkleTreeService;
+
+    @GetMapping(value = "/", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<MerkleTreeMetadata> getMerkleTrees(@RequestParam(required = false) String after, @RequestParam(defaultValue = "100") int limit) {
+        return reactiveMerkleTreeService.getMerkleTrees(after, limit);
+    }
+
+    @GetMapping("/{id}/metadata")
+    public Mono<MerkleTreeMetadata> getMerkleTreeMetadata(@PathVariable String id) {
+        return reactiveMerkleTreeService.getMerkleTreeMetadata(id);
+    }
+
+    @GetMapping("/{id}/root")
+    public Mono<Map<String, String>> getMerkleTreeRoot(@PathVariable String id) {
+        return reactiveMerkleTreeService.getMerkleTreeRoot(id).map(root -> Map.of("root", root));
+    }
+
+    @GetMapping("/{id}/height")
+    public Mono<Map<String, Integer>> getMerkleTreeHeight(@PathVariable String id) {
+        return reactiveMerkleTreeService.getMerkleTreeHeight(id).map(height -> Map.of("height", height));
+    }
+
+    // Hex hashes never need escaping, the JSON array is written piece by piece as hashes are read
+    @GetMapping(value = "/{id}/{level}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<String> getMerkleTreeLevel(@PathVariable String id,
+                                           @PathVariable int level,
+                                           @RequestParam(defaultValue = "0") long offset,
+                                           @RequestParam(required = false) Long limit) {
+        // Nothing is written before the first hash, so that errors still get their status code
+        return reactiveMerkleTreeService.getMerkleTreeLevel(id, level, offset, limit)
+                .index((index, hash) -> (index == 0 ? "[\"" : ",\"") + hash + "\"")
+                .switchIfEmpty(Flux.just("["))
+                .concatWith(Flux.just("]"));
+    }
+
+    @GetMapping(value = "/{id}/{level}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<String> streamMerkleTreeLevel(@PathVariable String id,
+                                              @PathVariable int level,
+                                              @RequestParam(defaultValue = "0") long offset,
+                                              @RequestParam(required = false) Long limit) {
+        // Strings are written as they are, each line is made a JSON string here
+        return reactiveMerkleTreeService.getMerkleTreeLevel(id, level, offset, limit).map(hash -> "\"" + hash + "\"\n");
+    }
+
+    @GetMapping("/{id}/proof/{leafIndex}")
+    public Mono<MerkleProof> getMerkleProof(@PathVariable String id, @PathVariable int leafIndex) {
+        return reactiveMerkleTreeService.getMerkleProof(id, leafIndex);
+    }
+
+    @PostMapping("/verify")
+    public Mono<Map<String, Boolean>> verifyMerkleProof(@RequestBody MerkleProof merkleProof) {
+        return reactiveMerkleTreeService.verifyMerkleProof(merkleProof).map(valid -> Map.of("valid", valid));
+    }
+
+    @PostMapping("/")
+    public Mono<MerkleTree> generateMerkleTree(@RequestBody InputItems inputItems) {
+        return reactiveMerkleTreeService.generateMerkleTree(inputItems);
+    }
+
+}
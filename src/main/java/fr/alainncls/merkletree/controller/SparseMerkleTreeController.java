@@ -0,0 +1,57 @@
+package fr.alainncls.merkletree.controller;
+
+import fr.alainncls.merkletree.model.InputItem;
+import fr.alainncls.merkletree.model.InputSparseMerkleTree;
+import fr.alainncls.merkletree.model.SparseMerkleProof;
+import fr.alainncls.merkletree.model.SparseMerkleTree;
+import fr.alainncls.merkletree.service.SparseMerkleTreeService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@AllArgsConstructor
+@RequestMapping("sparse-merkletrees")
+public class SparseMerkleTreeController {
+
+    private final SparseMerkleTreeService sparseMerkleTreeService;
+
+    @PostMapping("/")
+    public SparseMerkleTree createSparseMerkleTree(@RequestBody(required = false) InputSparseMerkleTree inputSparseMerkleTree) {
+        return sparseMerkleTreeService.createSparseMerkleTree(inputSparseMerkleTree);
+    }
+
+    @GetMapping("/{id}")
+    public SparseMerkleTree getSparseMerkleTree(@PathVariable String id) {
+        return sparseMerkleTreeService.getSparseMerkleTree(id);
+    }
+
+    @PutMapping("/{id}/entries/{key}")
+    public SparseMerkleTree putEntry(@PathVariable String id, @PathVariable String key, @RequestBody InputItem inputItem) {
+        return sparseMerkleTreeService.putEntry(id, key, inputItem);
+    }
+
+    @DeleteMapping("/{id}/entries/{key}")
+    public SparseMerkleTree removeEntry(@PathVariable String id, @PathVariable String key) {
+        return sparseMerkleTreeService.removeEntry(id, key);
+    }
+
+    @GetMapping("/{id}/proof/{key}")
+    public SparseMerkleProof getSparseMerkleProof(@PathVariable String id, @PathVariable String key) {
+        return sparseMerkleTreeService.getSparseMerkleProof(id, key);
+    }
+
+    @PostMapping("/verify")
+    public Map<String, Boolean> verifySparseMerkleProof(@RequestBody SparseMerkleProof sparseMerkleProof) {
+        return Map.of("valid", sparseMerkleTreeService.verifySparseMerkleProof(sparseMerkleProof));
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void deleteSparseMerkleTree(@PathVariable String id) {
+        sparseMerkleTreeService.deleteSparseMerkleTree(id);
+    }
+
+}
@@ -0,0 +1,12 @@
+package fr.alainncls.merkletree.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class InvalidBulkException extends RuntimeException {
+
+    public InvalidBulkException(int maxBulkSize) {
+        super("A bulk request must hold between 1 and " + maxBulkSize + " trees");
+    }
+}
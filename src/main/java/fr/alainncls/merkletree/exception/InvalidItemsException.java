@@ -0,0 +1,16 @@
+package fr.alainncls.merkletree.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class InvalidItemsException extends RuntimeException {
+
+    public InvalidItemsException() {
+        super("A Merkle tree needs at least one item");
+    }
+
+    public InvalidItemsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package fr.alainncls.merkletree.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class InvalidPageException extends RuntimeException {
+
+    public InvalidPageException(int maxPageSize) {
+        super("The page size must be between 1 and " + maxPageSize);
+    }
+}
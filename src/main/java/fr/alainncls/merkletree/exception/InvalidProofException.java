@@ -0,0 +1,12 @@
+package fr.alainncls.merkletree.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class InvalidProofException extends RuntimeException {
+
+    public InvalidProofException(String message) {
+        super(message);
+    }
+}
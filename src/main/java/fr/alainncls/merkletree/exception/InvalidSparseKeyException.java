@@ -0,0 +1,12 @@
+package fr.alainncls.merkletree.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class InvalidSparseKeyException extends RuntimeException {
+
+    public InvalidSparseKeyException() {
+        super("Keys must be 64 hexadecimal characters long");
+    }
+}
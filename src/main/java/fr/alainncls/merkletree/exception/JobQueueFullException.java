@@ -0,0 +1,12 @@
+package fr.alainncls.merkletree.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE)
+public class JobQueueFullException extends RuntimeException {
+
+    public JobQueueFullException() {
+        super("Too many trees are being built, retry later");
+    }
+}
@@ -0,0 +1,12 @@
+package fr.alainncls.merkletree.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT)
+public class MerkleTreeConflictException extends RuntimeException {
+
+    public MerkleTreeConflictException() {
+        super("The tree is being changed by another request, retry later");
+    }
+}
@@ -0,0 +1,12 @@
+package fr.alainncls.merkletree.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.NOT_FOUND)
+public class MerkleTreeJobNotFoundException extends RuntimeException {
+
+    public MerkleTreeJobNotFoundException() {
+        super("This job doesn't exist or has expired");
+    }
+}
@@ -0,0 +1,12 @@
+package fr.alainncls.merkletree.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.NOT_FOUND)
+public class MerkleTreeLeafException extends RuntimeException {
+
+    public MerkleTreeLeafException() {
+        super("This leaf doesn't exist in the given Merkle tree");
+    }
+}
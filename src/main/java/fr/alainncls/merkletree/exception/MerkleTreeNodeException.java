@@ -0,0 +1,12 @@
+package fr.alainncls.merkletree.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.NOT_FOUND)
+public class MerkleTreeNodeException extends RuntimeException {
+
+    public MerkleTreeNodeException() {
+        super("This node doesn't exist in the given Merkle tree");
+    }
+}
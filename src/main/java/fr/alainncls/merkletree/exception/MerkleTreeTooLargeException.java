@@ -0,0 +1,12 @@
+package fr.alainncls.merkletree.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class MerkleTreeTooLargeException extends RuntimeException {
+
+    public MerkleTreeTooLargeException(long maxSize) {
+        super("The tree is larger than " + maxSize + " bytes, read it level by level with GET /merkletrees/{id}/{level}?offset=&limit=");
+    }
+}
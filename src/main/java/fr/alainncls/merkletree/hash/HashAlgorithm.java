@@ -0,0 +1,50 @@
+package fr.alainncls.merkletree.hash;
+
+import fr.alainncls.merkletree.exception.HashException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Supplier;
+
+/**
+ * Hash functions a Merkle tree can be built with, the one used is stored on each tree.
+ */
+public enum HashAlgorithm implements HashFunction {
+
+    SHA_256("SHA-256"),
+    // Truncated SHA-512, faster than SHA-256 on 64-bit CPUs without SHA extensions
+    SHA_512_256("SHA-512/256"),
+    // Original Keccak padding, as used by Ethereum
+    KECCAK_256("Keccak-256", Keccak256::new);
+
+    private final String name;
+    private final Supplier<MessageDigest> digestSupplier;
+
+    HashAlgorithm(String name) {
+        this.name = name;
+        this.digestSupplier = () -> getJcaDigest(name);
+    }
+
+    HashAlgorithm(String name, Supplier<MessageDigest> digestSupplier) {
+        this.name = name;
+        this.digestSupplier = digestSupplier;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public MessageDigest newDigest() {
+        return digestSupplier.get();
+    }
+
+    private static MessageDigest getJcaDigest(String name) {
+        try {
+            return MessageDigest.getInstance(name);
+        } catch (NoSuchAlgorithmException e) {
+            throw new HashException(name + " algorithm not found, can't hash anything");
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package fr.alainncls.merkletree.hash;
+
+import java.security.MessageDigest;
+
+/**
+ * A hash function usable to build Merkle trees, it must produce 32-byte digests.
+ * <p>
+ * Digests are created once per thread and reused, so implementations may return a new, non thread-safe instance.
+ */
+public interface HashFunction {
+
+    String getName();
+
+    MessageDigest newDigest();
+}
@@ -0,0 +1,12 @@
+package fr.alainncls.merkletree.hash;
+
+/**
+ * How the hash of an internal node is derived from the hashes of its two children.
+ */
+public enum HashMode {
+
+    // Hash of the 64 raw bytes of both child digests
+    RAW,
+    // Hash of the concatenation of both child digests encoded as lowercase hexadecimal strings (legacy trees)
+    HEX_CONCATENATION
+}
@@ -0,0 +1,52 @@
+package fr.alainncls.merkletree.hash;
+
+import java.nio.charset.StandardCharsets;
+
+public final class Hex {
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+    private static final byte[] ASCII_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private Hex() {
+    }
+
+    public static String encode(byte[] bytes) {
+        return encode(bytes, 0, bytes.length);
+    }
+
+    public static String encode(byte[] bytes, int offset, int length) {
+        char[] chars = new char[2 * length];
+        for (int i = 0; i < length; i++) {
+            int b = bytes[offset + i] & 0xff;
+            chars[2 * i] = DIGITS[b >>> 4];
+            chars[2 * i + 1] = DIGITS[b & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    // Writes the lowercase hexadecimal ASCII representation of bytes into target, without any allocation
+    public static void encode(byte[] bytes, int offset, int length, byte[] target, int targetOffset) {
+        for (int i = 0; i < length; i++) {
+            int b = bytes[offset + i] & 0xff;
+            target[targetOffset + 2 * i] = ASCII_DIGITS[b >>> 4];
+            target[targetOffset + 2 * i + 1] = ASCII_DIGITS[b & 0x0f];
+        }
+    }
+
+    public static byte[] decode(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Hexadecimal string must have an even length");
+        }
+
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid hexadecimal character in " + hex);
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
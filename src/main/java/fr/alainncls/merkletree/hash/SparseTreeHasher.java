@@ -0,0 +1,76 @@
+package fr.alainncls.merkletree.hash;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+/**
+ * Hashes the nodes of sparse Merkle trees of depth 256, where the leaf of a key is found by following its bits from
+ * the most significant one, 0 going left.
+ * <p>
+ * Empty leaves are 32 zero bytes, so that every empty subtree of a given height has the same default hash. These are
+ * computed once per {@link TreeHasher} and shared by all trees.
+ */
+public final class SparseTreeHasher {
+
+    public static final int DEPTH = 256;
+    public static final int KEY_LENGTH = DEPTH / 8;
+
+    private static final Map<TreeHasher, SparseTreeHasher> HASHERS = new ConcurrentHashMap<>();
+
+    private final TreeHasher treeHasher;
+    // Default hash of an empty subtree, by height
+    private final byte[][] defaultHashes = new byte[DEPTH + 1][];
+
+    private SparseTreeHasher(TreeHasher treeHasher) {
+        this.treeHasher = treeHasher;
+        defaultHashes[0] = new byte[HASH_LENGTH];
+        for (int height = 1; height <= DEPTH; height++) {
+            defaultHashes[height] = treeHasher.hashChildren(defaultHashes[height - 1], defaultHashes[height - 1]);
+        }
+    }
+
+    public static SparseTreeHasher of(TreeHasher treeHasher) {
+        return HASHERS.computeIfAbsent(treeHasher, SparseTreeHasher::new);
+    }
+
+    public TreeHasher getTreeHasher() {
+        return treeHasher;
+    }
+
+    // Not copied, it must not be modified
+    public byte[] defaultHash(int height) {
+        return defaultHashes[height];
+    }
+
+    // Hash of the parent of a node at the given depth along the key, given the node and its sibling
+    public byte[] hashParent(byte[] key, int depth, byte[] node, byte[] sibling) {
+        return bit(key, depth) == 0 ? treeHasher.hashChildren(node, sibling) : treeHasher.hashChildren(sibling, node);
+    }
+
+    // Hash of the subtree at the given depth along the key, when it holds no other key
+    public byte[] hashSubtree(byte[] key, byte[] leaf, int depth) {
+        byte[] hash = leaf;
+        for (int d = DEPTH; d > depth; d--) {
+            hash = hashParent(key, d, hash, defaultHashes[DEPTH - d]);
+        }
+        return hash;
+    }
+
+    // Bit of the key choosing between the two nodes at the given depth, from 1 to 256
+    public static int bit(byte[] key, int depth) {
+        return (key[(depth - 1) / 8] >>> (7 - (depth - 1) % 8)) & 1;
+    }
+
+    // First depth at which the paths of two different keys split
+    public static int divergence(byte[] key, byte[] otherKey) {
+        for (int i = 0; i < KEY_LENGTH; i++) {
+            int diff = (key[i] ^ otherKey[i]) & 0xff;
+            if (diff != 0) {
+                return 8 * i + Integer.numberOfLeadingZeros(diff) - 23;
+            }
+        }
+        throw new IllegalArgumentException("Keys are equal");
+    }
+}
@@ -0,0 +1,132 @@
+package fr.alainncls.merkletree.hash;
+
+import fr.alainncls.merkletree.exception.HashException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+/**
+ * Hashes leaves and internal nodes directly into a hash array.
+ * <p>
+ * Each thread reuses its own {@link MessageDigest} and scratch buffer, so hashing a node allocates nothing.
+ */
+public final class TreeHasher {
+
+    // Items longer than this are not copied into the scratch buffer, to keep it small
+    private static final int MAX_SCRATCH_ITEM_LENGTH = 4096;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[4 * HASH_LENGTH]);
+
+    private static final Map<HashAlgorithm, Map<HashMode, TreeHasher>> HASHERS = new EnumMap<>(HashAlgorithm.class);
+
+    static {
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            Map<HashMode, TreeHasher> hashers = new EnumMap<>(HashMode.class);
+            for (HashMode mode : HashMode.values()) {
+                hashers.put(mode, new TreeHasher(algorithm, mode));
+            }
+            HASHERS.put(algorithm, hashers);
+        }
+    }
+
+    private final HashFunction hashFunction;
+    private final HashMode mode;
+    private final ThreadLocal<MessageDigest> digest;
+
+    public TreeHasher(HashFunction hashFunction, HashMode mode) {
+        this.hashFunction = hashFunction;
+        this.mode = mode;
+        this.digest = ThreadLocal.withInitial(hashFunction::newDigest);
+    }
+
+    public static TreeHasher of(HashAlgorithm algorithm, HashMode mode) {
+        return HASHERS.get(algorithm).get(mode);
+    }
+
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    public HashMode getMode() {
+        return mode;
+    }
+
+    public byte[] hashLeaf(String item) {
+        byte[] hash = new byte[HASH_LENGTH];
+        hashLeaf(item, hash, 0);
+        return hash;
+    }
+
+    public void hashLeaf(String item, byte[] target, int targetOffset) {
+        MessageDigest messageDigest = digest.get();
+        int length = item.length();
+
+        if (length <= MAX_SCRATCH_ITEM_LENGTH && isAscii(item)) {
+            byte[] scratch = scratch(length);
+            for (int i = 0; i < length; i++) {
+                scratch[i] = (byte) item.charAt(i);
+            }
+            messageDigest.update(scratch, 0, length);
+        } else {
+            messageDigest.update(item.getBytes(StandardCharsets.UTF_8));
+        }
+
+        digest(messageDigest, target, targetOffset);
+    }
+
+    // Hashes the two adjacent child hashes starting at childrenOffset
+    public void hashChildren(byte[] hashes, int childrenOffset, byte[] target, int targetOffset) {
+        MessageDigest messageDigest = digest.get();
+
+        if (mode == HashMode.HEX_CONCATENATION) {
+            byte[] scratch = scratch(4 * HASH_LENGTH);
+            Hex.encode(hashes, childrenOffset, 2 * HASH_LENGTH, scratch, 0);
+            messageDigest.update(scratch, 0, 4 * HASH_LENGTH);
+        } else {
+            messageDigest.update(hashes, childrenOffset, 2 * HASH_LENGTH);
+        }
+
+        digest(messageDigest, target, targetOffset);
+    }
+
+    public byte[] hashChildren(byte[] left, byte[] right) {
+        byte[] children = new byte[2 * HASH_LENGTH];
+        System.arraycopy(left, 0, children, 0, HASH_LENGTH);
+        System.arraycopy(right, 0, children, HASH_LENGTH, HASH_LENGTH);
+
+        byte[] hash = new byte[HASH_LENGTH];
+        hashChildren(children, 0, hash, 0);
+        return hash;
+    }
+
+    private void digest(MessageDigest messageDigest, byte[] target, int targetOffset) {
+        try {
+            messageDigest.digest(target, targetOffset, HASH_LENGTH);
+        } catch (DigestException e) {
+            throw new HashException("Can't write " + hashFunction.getName() + " digest: " + e.getMessage());
+        }
+    }
+
+    private static boolean isAscii(String item) {
+        for (int i = 0; i < item.length(); i++) {
+            if (item.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] scratch(int length) {
+        byte[] scratch = SCRATCH.get();
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, 2 * scratch.length)];
+            SCRATCH.set(scratch);
+        }
+        return scratch;
+    }
+}
@@ -0,0 +1,19 @@
+package fr.alainncls.merkletree.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Outcome of one tree of a bulk request, either its ID and root or the reason it was not created
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkMerkleTreeResult {
+
+    private String id;
+    private String root;
+    private String error;
+
+}
@@ -0,0 +1,38 @@
+package fr.alainncls.merkletree.model;
+
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.Hex;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Consecutive hashes stored once, whatever the number of trees and positions holding them.
+ * <p>
+ * Its ID is the digest of its hashes, so that identical chunks of different trees are the same document. It is
+ * referenced by {@link MerkleTreeChunkRef} documents and deleted when the last of them is.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Document("merkleTreeContentChunk")
+public class ContentChunk {
+
+    @Id
+    private String id;
+    private byte[] hashes;
+    // Number of chunk references pointing at this content
+    private long references;
+
+    public static ContentChunk of(byte[] hashes) {
+        return ContentChunk.builder()
+                .id(Hex.encode(HashAlgorithm.SHA_256.newDigest().digest(hashes)))
+                .hashes(hashes)
+                .build();
+    }
+
+}
@@ -0,0 +1,16 @@
+package fr.alainncls.merkletree.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class InputItem {
+
+    private String item;
+
+}
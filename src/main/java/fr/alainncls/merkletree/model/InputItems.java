@@ -1,5 +1,7 @@
 package fr.alainncls.merkletree.model;
 
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -14,5 +16,7 @@ import java.util.List;
 public class InputItems {
 
     private List<String> items;
+    private HashAlgorithm algorithm;
+    private HashMode hashMode;
 
 }
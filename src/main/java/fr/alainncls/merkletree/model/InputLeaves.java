@@ -0,0 +1,18 @@
+package fr.alainncls.merkletree.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class InputLeaves {
+
+    private List<Integer> leafIndices;
+
+}
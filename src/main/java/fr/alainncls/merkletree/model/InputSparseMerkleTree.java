@@ -0,0 +1,19 @@
+package fr.alainncls.merkletree.model;
+
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class InputSparseMerkleTree {
+
+    private HashAlgorithm algorithm;
+    private HashMode hashMode;
+
+}
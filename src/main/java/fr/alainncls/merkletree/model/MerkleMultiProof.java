@@ -0,0 +1,28 @@
+package fr.alainncls.merkletree.model;
+
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MerkleMultiProof {
+
+    private String root;
+    private int leafCount;
+    // Sorted, without duplicates, leaves are in the same order
+    private List<Integer> leafIndices;
+    private List<String> leaves;
+    private HashAlgorithm algorithm;
+    private HashMode hashMode;
+    // Sibling hashes that can't be computed from the leaves, level by level from the leaves up, each one only once
+    private List<String> proof;
+
+}
@@ -0,0 +1,26 @@
+package fr.alainncls.merkletree.model;
+
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MerkleProof {
+
+    private String root;
+    private int leafIndex;
+    private String leaf;
+    private HashAlgorithm algorithm;
+    private HashMode hashMode;
+    // Siblings from the leaf up to the root, levels where a node was promoted have no sibling
+    private List<ProofStep> siblings;
+
+}
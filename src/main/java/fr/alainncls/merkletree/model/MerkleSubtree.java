@@ -0,0 +1,21 @@
+package fr.alainncls.merkletree.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MerkleSubtree {
+
+    private int level;
+    private long index;
+    // The node itself, then its descendants level by level
+    private List<List<String>> levels;
+
+}
@@ -1,19 +1,63 @@
 package fr.alainncls.merkletree.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.hash.Hex;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class MerkleTree {
 
     @Id
     private String id;
-    private Node children;
+    private int leafCount;
+    private int height;
+    private HashAlgorithm algorithm;
+    private HashMode hashMode;
+    private String root;
+    private Instant createdAt;
+
+    // Level-ordered hashes, leaves first, see TreeLayout; stored separately as chunks, only loaded for whole trees
+    @JsonIgnore
+    @Transient
+    private byte[] hashes;
+
+    public List<String> getLevel(int level) {
+        int offset = Math.toIntExact(TreeLayout.levelOffset(leafCount, level));
+        int width = Math.toIntExact(TreeLayout.levelWidth(leafCount, level));
+
+        List<String> levelHashes = new ArrayList<>(width);
+        for (int i = 0; i < width; i++) {
+            levelHashes.add(Hex.encode(hashes, (offset + i) * HASH_LENGTH, HASH_LENGTH));
+        }
+        return levelHashes;
+    }
+
+    public List<List<String>> getLevels() {
+        if (hashes == null) {
+            return List.of();
+        }
 
+        int height = TreeLayout.height(leafCount);
+        List<List<String>> levels = new ArrayList<>(height);
+        for (int level = 0; level < height; level++) {
+            levels.add(getLevel(level));
+        }
+        return levels;
+    }
 }
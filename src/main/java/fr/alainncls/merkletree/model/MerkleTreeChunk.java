@@ -0,0 +1,128 @@
+package fr.alainncls.merkletree.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+/**
+ * Consecutive hashes of one level of a tree, levels being numbered bottom-up.
+ * <p>
+ * Chunk {@code index} of a level holds the nodes from {@code index * chunkSize}, its ID is derived from its position
+ * so that any node can be read, written or deleted by ID, without a secondary index.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Document("merkleTreeChunk")
+public class MerkleTreeChunk {
+
+    @Id
+    private String id;
+    private String treeId;
+    private int level;
+    private long index;
+    private byte[] hashes;
+
+    public static String id(String treeId, int level, long index) {
+        return treeId + ":" + level + ":" + index;
+    }
+
+    // IDs of all the chunks of a tree, to delete them without reading them
+    public static List<String> idsOfTree(String treeId, long leafCount, int chunkSize) {
+        List<String> ids = new ArrayList<>();
+        for (int level = 0; level < TreeLayout.height(leafCount); level++) {
+            long lastChunk = (TreeLayout.bottomUpWidth(leafCount, level) - 1) / chunkSize;
+            for (long chunkIndex = 0; chunkIndex <= lastChunk; chunkIndex++) {
+                ids.add(id(treeId, level, chunkIndex));
+            }
+        }
+        return ids;
+    }
+
+    // IDs of the chunks holding count nodes of a level from index, count being positive
+    public static List<String> idsOfRange(String treeId, int level, long index, int count, int chunkSize) {
+        List<String> ids = new ArrayList<>();
+        for (long chunkIndex = index / chunkSize; chunkIndex <= (index + count - 1) / chunkSize; chunkIndex++) {
+            ids.add(id(treeId, level, chunkIndex));
+        }
+        return ids;
+    }
+
+    // Only the first and last chunks of a range can be partially overwritten, their other hashes must be kept
+    public static Set<String> partialIdsOfRange(String treeId, int level, long index, int count, int chunkSize) {
+        Set<String> ids = new LinkedHashSet<>();
+        if (index % chunkSize != 0) {
+            ids.add(id(treeId, level, index / chunkSize));
+        }
+        if ((index + count) % chunkSize != 0) {
+            ids.add(id(treeId, level, (index + count - 1) / chunkSize));
+        }
+        return ids;
+    }
+
+    // Copies the part of count hashes from index that falls in a chunk at its place in the chunk
+    public static byte[] patchRange(byte[] chunkHashes, long chunkIndex, int chunkSize, long index, byte[] hashes, int offset, int count) {
+        long chunkStart = chunkIndex * chunkSize;
+        long from = Math.max(index, chunkStart);
+        long to = Math.min(index + count, chunkStart + chunkSize);
+        return patch(chunkHashes, (int) (from - chunkStart), hashes, offset + (int) (from - index) * HASH_LENGTH, (int) (to - from));
+    }
+
+    // Copies the part of a chunk that falls in count nodes from index at its place in the target
+    public static void copyRange(byte[] chunkHashes, long chunkIndex, int chunkSize, long index, int count, byte[] target) {
+        long chunkStart = chunkIndex * chunkSize;
+        long from = Math.max(index, chunkStart);
+        long to = Math.min(index + count, chunkStart + chunkSize);
+        copy(chunkHashes, (int) (from - chunkStart) * HASH_LENGTH, target, (int) (from - index) * HASH_LENGTH, (int) (to - from));
+    }
+
+    // Copies count hashes at the given node index of a chunk, growing it when needed
+    public static byte[] patch(byte[] chunkHashes, int nodeIndex, byte[] hashes, int offset, int count) {
+        int end = (nodeIndex + count) * HASH_LENGTH;
+        byte[] patched = end > chunkHashes.length ? Arrays.copyOf(chunkHashes, end) : chunkHashes;
+        System.arraycopy(hashes, offset, patched, nodeIndex * HASH_LENGTH, count * HASH_LENGTH);
+        return patched;
+    }
+
+    public static void copy(byte[] chunkHashes, int chunkOffset, byte[] target, int targetOffset, int count) {
+        if (chunkOffset + count * HASH_LENGTH > chunkHashes.length) {
+            throw new IllegalStateException("Chunk is shorter than its level");
+        }
+        System.arraycopy(chunkHashes, chunkOffset, target, targetOffset, count * HASH_LENGTH);
+    }
+
+    // Splits the level-ordered hashes of a whole tree into the chunks of each of its levels
+    public static List<MerkleTreeChunk> ofTree(String treeId, long leafCount, byte[] hashes, int chunkSize) {
+        List<MerkleTreeChunk> chunks = new ArrayList<>();
+        long offset = 0;
+        for (int level = 0; level < TreeLayout.height(leafCount); level++) {
+            long width = TreeLayout.bottomUpWidth(leafCount, level);
+            for (long chunkIndex = 0; chunkIndex * chunkSize < width; chunkIndex++) {
+                long from = offset + chunkIndex * chunkSize;
+                long to = offset + Math.min(width, (chunkIndex + 1) * chunkSize);
+                chunks.add(MerkleTreeChunk.builder()
+                        .id(id(treeId, level, chunkIndex))
+                        .treeId(treeId)
+                        .level(level)
+                        .index(chunkIndex)
+                        .hashes(Arrays.copyOfRange(hashes, Math.toIntExact(from * HASH_LENGTH), Math.toIntExact(to * HASH_LENGTH)))
+                        .build());
+            }
+            offset += width;
+        }
+        return chunks;
+    }
+
+}
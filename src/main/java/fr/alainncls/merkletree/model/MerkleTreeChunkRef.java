@@ -0,0 +1,38 @@
+package fr.alainncls.merkletree.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * A chunk of a level of a tree, pointing at the {@link ContentChunk} holding its hashes. Its ID is the one the chunk
+ * would have as a {@link MerkleTreeChunk}.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Document("merkleTreeChunkRef")
+public class MerkleTreeChunkRef {
+
+    @Id
+    private String id;
+    private String treeId;
+    private int level;
+    private long index;
+    private String contentId;
+
+    public static MerkleTreeChunkRef of(String treeId, int level, long index, String contentId) {
+        return MerkleTreeChunkRef.builder()
+                .id(MerkleTreeChunk.id(treeId, level, index))
+                .treeId(treeId)
+                .level(level)
+                .index(index)
+                .contentId(contentId)
+                .build();
+    }
+
+}
@@ -0,0 +1,36 @@
+package fr.alainncls.merkletree.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class MerkleTreeJob {
+
+    private String id;
+    private Status status;
+    private int leafCount;
+    private long leavesHashed;
+    // A tree of height h is built by reducing h - 1 levels
+    private int levelCount;
+    private int levelsReduced;
+    // Only set once the job is done
+    private String treeId;
+    // Only set if the job failed
+    private String error;
+    private Instant createdAt;
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+}
@@ -0,0 +1,40 @@
+package fr.alainncls.merkletree.model;
+
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Projection of a {@link MerkleTree} header on the values computed once at build time, read without its hashes.
+ */
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class MerkleTreeMetadata {
+
+    private String id;
+    private int leafCount;
+    private int height;
+    private String root;
+    private HashAlgorithm algorithm;
+    private HashMode hashMode;
+    private Instant createdAt;
+
+    public static MerkleTreeMetadata of(MerkleTree merkleTree) {
+        return MerkleTreeMetadata.builder()
+                .id(merkleTree.getId())
+                .leafCount(merkleTree.getLeafCount())
+                .height(merkleTree.getHeight())
+                .root(merkleTree.getRoot())
+                .algorithm(merkleTree.getAlgorithm())
+                .hashMode(merkleTree.getHashMode())
+                .createdAt(merkleTree.getCreatedAt())
+                .build();
+    }
+}
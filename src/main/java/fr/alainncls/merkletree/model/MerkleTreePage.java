@@ -0,0 +1,20 @@
+package fr.alainncls.merkletree.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MerkleTreePage {
+
+    private List<MerkleTreeMetadata> trees;
+    // ID to pass as "after" to get the next page, null on the last page
+    private String next;
+
+}
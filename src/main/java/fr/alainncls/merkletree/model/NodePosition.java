@@ -0,0 +1,18 @@
+package fr.alainncls.merkletree.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Position of a node in a tree, levels being numbered bottom-up: the leaves are on level 0.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NodePosition {
+
+    private int level;
+    private long index;
+
+}
@@ -1,6 +1,5 @@
 package fr.alainncls.merkletree.model;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -10,11 +9,14 @@ import lombok.NoArgsConstructor;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-@JsonInclude(JsonInclude.Include.NON_NULL)
-public class Node {
+public class ProofStep {
 
-    private Node rightNode;
-    private Node leftNode;
     private String hash;
+    private Position position;
+
+    public enum Position {
+        LEFT,
+        RIGHT
+    }
 
 }
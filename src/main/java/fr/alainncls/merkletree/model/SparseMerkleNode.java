@@ -0,0 +1,48 @@
+package fr.alainncls.merkletree.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * A populated subtree of a sparse Merkle tree, at the given depth under the root and holding the keys starting with
+ * its prefix.
+ * <p>
+ * Subtrees holding a single key are stored as one node at the highest such depth, with the key and its leaf, instead
+ * of the whole path down to the leaf: all other nodes of that path have an empty sibling. Empty subtrees are never
+ * stored. Its ID is derived from its position, so that the nodes along a key can be read in a single query.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Document("sparseMerkleNode")
+public class SparseMerkleNode {
+
+    @Id
+    private String id;
+    private int depth;
+    private byte[] hash;
+    // Only set for subtrees holding a single key
+    private byte[] key;
+    private byte[] leaf;
+
+    public boolean isLeaf() {
+        return key != null;
+    }
+
+    // The prefix is the depth first bits of the key, its remaining bits are ignored
+    public static String id(String treeId, byte[] key, int depth) {
+        StringBuilder id = new StringBuilder(treeId).append(':').append(depth).append(':');
+        for (int i = 0; i < (depth + 7) / 8; i++) {
+            int bits = Math.min(8, depth - 8 * i);
+            int b = key[i] & (0xff << (8 - bits)) & 0xff;
+            id.append(Character.forDigit(b >>> 4, 16)).append(Character.forDigit(b & 0x0f, 16));
+        }
+        return id.toString();
+    }
+
+}
@@ -0,0 +1,27 @@
+package fr.alainncls.merkletree.model;
+
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class SparseMerkleProof {
+
+    private String root;
+    private String key;
+    // Hash of the value of the key, null when the key is absent
+    private String leaf;
+    private HashAlgorithm algorithm;
+    private HashMode hashMode;
+    // Non-empty siblings from the leaf up to the root, the others are the default hashes of their height
+    private List<SparseProofStep> siblings;
+
+}
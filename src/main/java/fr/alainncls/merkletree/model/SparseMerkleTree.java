@@ -0,0 +1,33 @@
+package fr.alainncls.merkletree.model;
+
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+
+import java.time.Instant;
+
+/**
+ * Header of a sparse Merkle tree, whose {@code 2^256} leaves are addressed by 256-bit keys.
+ * <p>
+ * Its nodes are stored separately as {@link SparseMerkleNode} documents, only for the populated part of the tree.
+ */
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class SparseMerkleTree {
+
+    @Id
+    private String id;
+    // Number of populated keys
+    private long size;
+    private HashAlgorithm algorithm;
+    private HashMode hashMode;
+    private String root;
+    private Instant createdAt;
+
+}
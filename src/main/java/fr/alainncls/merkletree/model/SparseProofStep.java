@@ -0,0 +1,18 @@
+package fr.alainncls.merkletree.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SparseProofStep {
+
+    // Height of the sibling subtree, 0 for a leaf
+    private int height;
+    private String hash;
+
+}
@@ -0,0 +1,79 @@
+package fr.alainncls.merkletree.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Index arithmetic for a Merkle tree stored as one contiguous array of hashes.
+ * <p>
+ * Levels are stored bottom-up: the leaves first, then each parent level, the root being the last hash.
+ * A level of width {@code w} has {@code ceil(w / 2)} parents; the children of node {@code i} are the nodes
+ * {@code 2i} and {@code 2i + 1} of the level below, the latter being absent when an odd node is promoted.
+ * <p>
+ * Public levels are numbered from the root (level 0) down to the leaves (level {@code height - 1}).
+ */
+public final class TreeLayout {
+
+    public static final int HASH_LENGTH = 32;
+
+    private TreeLayout() {
+    }
+
+    public static int height(long leafCount) {
+        if (leafCount <= 0) {
+            return 0;
+        }
+        return 65 - Long.numberOfLeadingZeros(leafCount - 1);
+    }
+
+    public static long levelWidth(long leafCount, int level) {
+        return bottomUpWidth(leafCount, height(leafCount) - 1 - level);
+    }
+
+    public static long levelOffset(long leafCount, int level) {
+        return bottomUpOffset(leafCount, height(leafCount) - 1 - level);
+    }
+
+    public static long nodeCount(long leafCount) {
+        return bottomUpOffset(leafCount, height(leafCount));
+    }
+
+    // Siblings of the ancestors of a leaf, from the leaf level up; promoted nodes have no sibling and are skipped
+    public static List<NodePosition> siblings(long leafCount, long leafIndex) {
+        int height = height(leafCount);
+        List<NodePosition> siblings = new ArrayList<>(height);
+
+        long index = leafIndex;
+        for (int level = 0; level < height - 1; level++) {
+            long sibling = index ^ 1;
+            if (sibling < bottomUpWidth(leafCount, level)) {
+                siblings.add(new NodePosition(level, sibling));
+            }
+            index /= 2;
+        }
+        return siblings;
+    }
+
+    // A leaf and its ancestors, from the leaf up to the root
+    public static List<NodePosition> path(long leafCount, long leafIndex) {
+        int height = height(leafCount);
+        List<NodePosition> path = new ArrayList<>(height);
+
+        for (int level = 0; level < height; level++) {
+            path.add(new NodePosition(level, leafIndex >> level));
+        }
+        return path;
+    }
+
+    public static long bottomUpWidth(long leafCount, int bottomUpLevel) {
+        return ((leafCount - 1) >> bottomUpLevel) + 1;
+    }
+
+    private static long bottomUpOffset(long leafCount, int bottomUpLevel) {
+        long offset = 0;
+        for (int i = 0; i < bottomUpLevel; i++) {
+            offset += bottomUpWidth(leafCount, i);
+        }
+        return offset;
+    }
+}
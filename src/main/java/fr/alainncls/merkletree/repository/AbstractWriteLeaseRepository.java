@@ -0,0 +1,54 @@
+package fr.alainncls.merkletree.repository;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * The lease is a field of the header, only set while a tree is being written: taking it and releasing it are single
+ * document updates, atomic without transactions. A writer that dies holding it blocks the tree until it expires.
+ */
+abstract class AbstractWriteLeaseRepository<T> {
+
+    private static final String LEASE = "writeLease";
+
+    private final MongoOperations mongoOperations;
+    private final Class<T> type;
+
+    AbstractWriteLeaseRepository(MongoOperations mongoOperations, Class<T> type) {
+        this.mongoOperations = mongoOperations;
+        this.type = type;
+    }
+
+    public Optional<T> acquireWriteLease(String id, String lease, Duration duration) {
+        Instant now = Instant.now();
+        Update update = new Update().set(LEASE, new Document("token", lease).append("expiresAt", Date.from(now.plus(duration))));
+
+        return Optional.ofNullable(mongoOperations.findAndModify(
+                query(where("_id").is(id).orOperator(where(LEASE).exists(false), where(LEASE + ".expiresAt").lte(Date.from(now)))),
+                update, FindAndModifyOptions.options().returnNew(true), type));
+    }
+
+    public void abandonWriteLease(String id, String lease) {
+        mongoOperations.updateFirst(query(where("_id").is(id).and(LEASE + ".token").is(lease)), new Update().unset(LEASE), type);
+    }
+
+    public boolean deleteWithWriteLease(String id, String lease) {
+        return mongoOperations.remove(query(where("_id").is(id).and(LEASE + ".token").is(lease)), type).getDeletedCount() == 1;
+    }
+
+    // Applies the update and ends the lease, unless the lease expired and was taken over
+    boolean commitWriteLease(String id, String lease, Update update) {
+        return mongoOperations.updateFirst(query(where("_id").is(id).and(LEASE + ".token").is(lease)), update.unset(LEASE), type)
+                .getMatchedCount() == 1;
+    }
+}
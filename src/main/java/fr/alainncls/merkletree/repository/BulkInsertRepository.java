@@ -0,0 +1,15 @@
+package fr.alainncls.merkletree.repository;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Repository fragment inserting many new documents in as few round trips as possible.
+ */
+public interface BulkInsertRepository<T> {
+
+    // Inserts with an unordered bulk write, returns the positions of the documents that could not be inserted.
+    // Any other error is thrown, any of the documents may then have been inserted
+    Set<Integer> insertUnordered(List<T> documents);
+
+}
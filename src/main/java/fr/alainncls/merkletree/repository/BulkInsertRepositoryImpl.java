@@ -0,0 +1,39 @@
+package fr.alainncls.merkletree.repository;
+
+import com.mongodb.bulk.BulkWriteError;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Unordered bulk writes are split by the driver into batches as large as the server accepts, and a failing document
+ * doesn't stop the ones after it.
+ */
+public class BulkInsertRepositoryImpl<T> implements BulkInsertRepository<T> {
+
+    private final MongoOperations mongoOperations;
+
+    public BulkInsertRepositoryImpl(MongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public Set<Integer> insertUnordered(List<T> documents) {
+        if (documents.isEmpty()) {
+            return Set.of();
+        }
+
+        try {
+            mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, documents.get(0).getClass())
+                    .insert(documents)
+                    .execute();
+            return Set.of();
+        } catch (BulkOperationException e) {
+            return e.getErrors().stream().map(BulkWriteError::getIndex).collect(Collectors.toSet());
+        }
+    }
+}
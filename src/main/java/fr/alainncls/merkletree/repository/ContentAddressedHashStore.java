@@ -0,0 +1,242 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.model.ContentChunk;
+import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.model.MerkleTreeChunk;
+import fr.alainncls.merkletree.model.MerkleTreeChunkRef;
+import fr.alainncls.merkletree.model.NodePosition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+/**
+ * Stores each distinct chunk of hashes once, as a {@link ContentChunk} keyed by its digest, each tree only owning a
+ * small {@link MerkleTreeChunkRef} per chunk position.
+ * <p>
+ * Trees sharing aligned runs of items, such as successive snapshots of a dataset, share the chunks of these runs at
+ * every level: a new tree only stores the chunks that differ. An item inserted in the middle of a list shifts all the
+ * chunks after it, which are then stored again.
+ * <p>
+ * Chunks are copied on write and reference counted. They are retained before the references pointing at them are
+ * written and released once these references are replaced or deleted, so a reader never follows a dangling reference.
+ */
+@Repository
+@ConditionalOnProperty(name = "merkletree.storage.type", havingValue = "CONTENT_ADDRESSED")
+public class ContentAddressedHashStore implements HashStore {
+
+    private final MerkleTreeChunkRefRepository merkleTreeChunkRefRepository;
+    private final ContentChunkRepository contentChunkRepository;
+    private final int chunkSize;
+
+    public ContentAddressedHashStore(MerkleTreeChunkRefRepository merkleTreeChunkRefRepository, ContentChunkRepository contentChunkRepository,
+                                     MerkleTreeProperties properties) {
+        this.merkleTreeChunkRefRepository = merkleTreeChunkRefRepository;
+        this.contentChunkRepository = contentChunkRepository;
+        this.chunkSize = properties.getStorage().getChunkSize();
+    }
+
+    @Override
+    public void write(String treeId, int level, long index, byte[] hashes, int offset, int count) {
+        if (count == 0) {
+            return;
+        }
+
+        Map<String, MerkleTreeChunkRef> refs = findRefs(MerkleTreeChunk.idsOfRange(treeId, level, index, count, chunkSize));
+        Set<String> partialIds = MerkleTreeChunk.partialIdsOfRange(treeId, level, index, count, chunkSize);
+        partialIds.retainAll(refs.keySet());
+        Map<String, byte[]> existing = readChunks(partialIds.stream().map(refs::get).collect(Collectors.toList()));
+
+        ChunkChanges changes = new ChunkChanges();
+        for (long chunkIndex = index / chunkSize; chunkIndex <= (index + count - 1) / chunkSize; chunkIndex++) {
+            String id = MerkleTreeChunk.id(treeId, level, chunkIndex);
+            // Contents are shared, they are patched on a copy
+            byte[] chunkHashes = MerkleTreeChunk.patchRange(existing.getOrDefault(id, new byte[0]).clone(), chunkIndex, chunkSize, index, hashes, offset, count);
+            changes.replace(refs.get(id), treeId, level, chunkIndex, chunkHashes);
+        }
+
+        save(changes);
+    }
+
+    @Override
+    public byte[] read(String treeId, int level, long index, int count) {
+        byte[] hashes = new byte[count * HASH_LENGTH];
+        if (count == 0) {
+            return hashes;
+        }
+
+        Map<String, byte[]> chunks = readChunks(findRefs(MerkleTreeChunk.idsOfRange(treeId, level, index, count, chunkSize)).values());
+        for (long chunkIndex = index / chunkSize; chunkIndex <= (index + count - 1) / chunkSize; chunkIndex++) {
+            MerkleTreeChunk.copyRange(getChunk(chunks, treeId, level, chunkIndex), chunkIndex, chunkSize, index, count, hashes);
+        }
+        return hashes;
+    }
+
+    @Override
+    public byte[] readNodes(String treeId, List<NodePosition> positions) {
+        Map<String, byte[]> chunks = readChunks(findRefs(chunkIds(treeId, positions)).values());
+
+        byte[] hashes = new byte[positions.size() * HASH_LENGTH];
+        for (int i = 0; i < positions.size(); i++) {
+            NodePosition position = positions.get(i);
+            byte[] chunkHashes = getChunk(chunks, treeId, position.getLevel(), position.getIndex() / chunkSize);
+            MerkleTreeChunk.copy(chunkHashes, (int) (position.getIndex() % chunkSize) * HASH_LENGTH, hashes, i * HASH_LENGTH, 1);
+        }
+        return hashes;
+    }
+
+    @Override
+    public void writeNodes(String treeId, List<NodePosition> positions, byte[] hashes) {
+        Map<String, MerkleTreeChunkRef> refs = findRefs(chunkIds(treeId, positions));
+        // Contents are shared, they are patched on copies
+        Map<String, byte[]> chunks = new LinkedHashMap<>();
+        readChunks(refs.values()).forEach((id, chunkHashes) -> chunks.put(id, chunkHashes.clone()));
+
+        for (int i = 0; i < positions.size(); i++) {
+            NodePosition position = positions.get(i);
+            String id = MerkleTreeChunk.id(treeId, position.getLevel(), position.getIndex() / chunkSize);
+            chunks.put(id, MerkleTreeChunk.patch(chunks.getOrDefault(id, new byte[0]), (int) (position.getIndex() % chunkSize), hashes, i * HASH_LENGTH, 1));
+        }
+
+        ChunkChanges changes = new ChunkChanges();
+        for (NodePosition position : positions) {
+            long chunkIndex = position.getIndex() / chunkSize;
+            String id = MerkleTreeChunk.id(treeId, position.getLevel(), chunkIndex);
+            // Positions of a same chunk are all applied by the first one
+            byte[] chunkHashes = chunks.remove(id);
+            if (chunkHashes != null) {
+                changes.replace(refs.get(id), treeId, position.getLevel(), chunkIndex, chunkHashes);
+            }
+        }
+
+        save(changes);
+    }
+
+    @Override
+    public void delete(String treeId, long leafCount) {
+        List<String> ids = MerkleTreeChunk.idsOfTree(treeId, leafCount, chunkSize);
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        Collection<MerkleTreeChunkRef> refs = findRefs(ids).values();
+        merkleTreeChunkRefRepository.deleteAllById(ids);
+        contentChunkRepository.release(refs.stream().map(MerkleTreeChunkRef::getContentId).collect(Collectors.toList()));
+    }
+
+    // New trees have no reference to read or replace, all of them are inserted at once
+    @Override
+    public void writeTree(String treeId, long leafCount, byte[] hashes) {
+        if (!insertChunks(MerkleTreeChunk.ofTree(treeId, leafCount, hashes, chunkSize)).isEmpty()) {
+            throw new IllegalStateException("Could not write the chunks of tree " + treeId);
+        }
+    }
+
+    @Override
+    public Set<String> writeTrees(List<MerkleTree> merkleTrees) {
+        List<MerkleTreeChunk> chunks = new ArrayList<>();
+        for (MerkleTree merkleTree : merkleTrees) {
+            chunks.addAll(MerkleTreeChunk.ofTree(merkleTree.getId(), merkleTree.getLeafCount(), merkleTree.getHashes(), chunkSize));
+        }
+        return insertChunks(chunks);
+    }
+
+    // Returns the IDs of the trees some chunks of which could not be inserted
+    private Set<String> insertChunks(List<MerkleTreeChunk> chunks) {
+        List<ContentChunk> contents = new ArrayList<>(chunks.size());
+        List<MerkleTreeChunkRef> refs = new ArrayList<>(chunks.size());
+        for (MerkleTreeChunk chunk : chunks) {
+            ContentChunk content = ContentChunk.of(chunk.getHashes());
+            contents.add(content);
+            refs.add(MerkleTreeChunkRef.of(chunk.getTreeId(), chunk.getLevel(), chunk.getIndex(), content.getId()));
+        }
+
+        contentChunkRepository.retain(contents);
+        Set<Integer> failed = merkleTreeChunkRefRepository.insertUnordered(refs);
+        // Contents retained for references that don't exist would never be released
+        contentChunkRepository.release(failed.stream().map(index -> refs.get(index).getContentId()).collect(Collectors.toList()));
+
+        return failed.stream().map(index -> refs.get(index).getTreeId()).collect(Collectors.toSet());
+    }
+
+    private void save(ChunkChanges changes) {
+        contentChunkRepository.retain(changes.retained);
+        merkleTreeChunkRefRepository.saveAll(changes.refs);
+        contentChunkRepository.release(changes.released);
+    }
+
+    private Set<String> chunkIds(String treeId, List<NodePosition> positions) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (NodePosition position : positions) {
+            ids.add(MerkleTreeChunk.id(treeId, position.getLevel(), position.getIndex() / chunkSize));
+        }
+        return ids;
+    }
+
+    private Map<String, MerkleTreeChunkRef> findRefs(Collection<String> ids) {
+        Map<String, MerkleTreeChunkRef> refs = new HashMap<>();
+        if (!ids.isEmpty()) {
+            merkleTreeChunkRefRepository.findAllById(ids).forEach(ref -> refs.put(ref.getId(), ref));
+        }
+        return refs;
+    }
+
+    // Hashes of each referenced chunk, by reference ID
+    private Map<String, byte[]> readChunks(Collection<MerkleTreeChunkRef> refs) {
+        Map<String, byte[]> chunks = new HashMap<>();
+        if (refs.isEmpty()) {
+            return chunks;
+        }
+
+        Map<String, byte[]> contents = new HashMap<>();
+        contentChunkRepository.findAllById(refs.stream().map(MerkleTreeChunkRef::getContentId).collect(Collectors.toSet()))
+                .forEach(content -> contents.put(content.getId(), content.getHashes()));
+        for (MerkleTreeChunkRef ref : refs) {
+            byte[] hashes = contents.get(ref.getContentId());
+            if (hashes != null) {
+                chunks.put(ref.getId(), hashes);
+            }
+        }
+        return chunks;
+    }
+
+    private static byte[] getChunk(Map<String, byte[]> chunks, String treeId, int level, long chunkIndex) {
+        byte[] chunk = chunks.get(MerkleTreeChunk.id(treeId, level, chunkIndex));
+        if (chunk == null) {
+            throw new IllegalStateException("Missing chunk " + chunkIndex + " of level " + level + " of tree " + treeId);
+        }
+        return chunk;
+    }
+
+    // Contents to retain, references to save and contents to release once a set of chunks has been rewritten
+    private static final class ChunkChanges {
+
+        private final List<ContentChunk> retained = new ArrayList<>();
+        private final List<MerkleTreeChunkRef> refs = new ArrayList<>();
+        private final List<String> released = new ArrayList<>();
+
+        private void replace(MerkleTreeChunkRef previous, String treeId, int level, long chunkIndex, byte[] hashes) {
+            ContentChunk content = ContentChunk.of(hashes);
+            if (previous != null && previous.getContentId().equals(content.getId())) {
+                return;
+            }
+
+            retained.add(content);
+            refs.add(MerkleTreeChunkRef.of(treeId, level, chunkIndex, content.getId()));
+            if (previous != null) {
+                released.add(previous.getContentId());
+            }
+        }
+    }
+}
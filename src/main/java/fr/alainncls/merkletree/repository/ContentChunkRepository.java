@@ -0,0 +1,10 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.model.ContentChunk;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ContentChunkRepository extends MongoRepository<ContentChunk, String>, ReferenceCountRepository {
+
+}
@@ -0,0 +1,72 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.model.NodePosition;
+import fr.alainncls.merkletree.model.TreeLayout;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+/**
+ * Storage of the node hashes of trees, separate from their {@link MerkleTree} header.
+ * <p>
+ * Levels are numbered bottom-up, the leaves being level 0, so that the position of a node never changes when items
+ * are appended.
+ */
+public interface HashStore {
+
+    // Writes count consecutive hashes of a level, starting at the given node index
+    void write(String treeId, int level, long index, byte[] hashes, int offset, int count);
+
+    byte[] read(String treeId, int level, long index, int count);
+
+    // Same as read, stores able to expose their hashes without copying them return a view
+    default ByteBuffer readBuffer(String treeId, int level, long index, int count) {
+        return ByteBuffer.wrap(read(treeId, level, index, count));
+    }
+
+    // Reads scattered nodes at once, their hashes are returned in the same order
+    byte[] readNodes(String treeId, List<NodePosition> positions);
+
+    void writeNodes(String treeId, List<NodePosition> positions, byte[] hashes);
+
+    // Deletes the levels of a tree of at most leafCount leaves
+    void delete(String treeId, long leafCount);
+
+    default void writeTree(String treeId, long leafCount, byte[] hashes) {
+        int offset = 0;
+        for (int level = 0; level < TreeLayout.height(leafCount); level++) {
+            int width = Math.toIntExact(TreeLayout.bottomUpWidth(leafCount, level));
+            write(treeId, level, 0, hashes, offset, width);
+            offset += width * HASH_LENGTH;
+        }
+    }
+
+    // Writes the levels of new trees, returns the IDs of the trees that could not be written completely
+    default Set<String> writeTrees(List<MerkleTree> merkleTrees) {
+        Set<String> failed = new HashSet<>();
+        for (MerkleTree merkleTree : merkleTrees) {
+            try {
+                writeTree(merkleTree.getId(), merkleTree.getLeafCount(), merkleTree.getHashes());
+            } catch (RuntimeException e) {
+                failed.add(merkleTree.getId());
+            }
+        }
+        return failed;
+    }
+
+    default byte[] readTree(String treeId, long leafCount) {
+        byte[] hashes = new byte[Math.toIntExact(TreeLayout.nodeCount(leafCount) * HASH_LENGTH)];
+        int offset = 0;
+        for (int level = 0; level < TreeLayout.height(leafCount); level++) {
+            int width = Math.toIntExact(TreeLayout.bottomUpWidth(leafCount, level));
+            System.arraycopy(read(treeId, level, 0, width), 0, hashes, offset, width * HASH_LENGTH);
+            offset += width * HASH_LENGTH;
+        }
+        return hashes;
+    }
+}
@@ -0,0 +1,209 @@
+package fr.alainncls.merkletree.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.model.NodePosition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+/**
+ * Stores each level of a tree in its own file, node {@code i} at offset {@code 32 * i}, so that the size of a tree is
+ * bounded by the disk rather than by the heap.
+ * <p>
+ * Writes go through positional file writes, each level file being opened and synced once per call. Files are read
+ * through memory mappings of at most one segment each, a single mapping being limited to 2 GB. Read-only mappings are
+ * kept and shared by all reads: level ranges are returned as views of the mapping and proof siblings are copied
+ * straight out of it. Hashes are only available to the instance holding the files.
+ */
+@Repository
+@ConditionalOnProperty(name = "merkletree.storage.type", havingValue = "MAPPED_FILES")
+public class MappedFileHashStore implements HashStore {
+
+    // 2^25 hashes, chunk sizes must divide it so that pages never span two segments
+    private static final long SEGMENT_SIZE = 1L << 30;
+    // Mappings kept open, by tree, level and segment, they only take address space until their pages are read
+    private static final int MAX_MAPPINGS = 4096;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final Cache<String, MappedByteBuffer> mappings;
+
+    @Autowired
+    public MappedFileHashStore(MerkleTreeProperties properties) {
+        this(Path.of(properties.getStorage().getDirectory()), SEGMENT_SIZE);
+
+        int chunkSize = properties.getStorage().getChunkSize();
+        if (chunkSize <= 0 || SEGMENT_SIZE % ((long) chunkSize * HASH_LENGTH) != 0) {
+            throw new IllegalArgumentException("merkletree.storage.chunk-size must be a power of two up to " + SEGMENT_SIZE / HASH_LENGTH
+                    + " with MAPPED_FILES storage, not " + chunkSize);
+        }
+    }
+
+    MappedFileHashStore(Path directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.mappings = Caffeine.newBuilder().maximumSize(MAX_MAPPINGS).build();
+    }
+
+    @Override
+    public void write(String treeId, int level, long index, byte[] hashes, int offset, int count) {
+        if (count == 0) {
+            return;
+        }
+
+        try (FileChannel channel = openLevel(treeId, level)) {
+            writeFully(channel, ByteBuffer.wrap(hashes, offset, count * HASH_LENGTH), index * HASH_LENGTH);
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public byte[] read(String treeId, int level, long index, int count) {
+        byte[] hashes = new byte[count * HASH_LENGTH];
+        readBuffer(treeId, level, index, count).get(hashes);
+        return hashes;
+    }
+
+    // A view of the mapping, unless the range spans two segments
+    @Override
+    public ByteBuffer readBuffer(String treeId, int level, long index, int count) {
+        long position = index * HASH_LENGTH;
+        long end = position + (long) count * HASH_LENGTH;
+        if (count == 0) {
+            return ByteBuffer.allocate(0);
+        }
+        if (end <= segmentEnd(position)) {
+            return slice(treeId, level, position, end);
+        }
+
+        ByteBuffer hashes = ByteBuffer.allocate(count * HASH_LENGTH);
+        for (long from = position; from < end; from = segmentEnd(from)) {
+            hashes.put(slice(treeId, level, from, Math.min(end, segmentEnd(from))));
+        }
+        return hashes.flip();
+    }
+
+    @Override
+    public byte[] readNodes(String treeId, List<NodePosition> positions) {
+        byte[] hashes = new byte[positions.size() * HASH_LENGTH];
+        for (int i = 0; i < positions.size(); i++) {
+            NodePosition position = positions.get(i);
+            long from = position.getIndex() * HASH_LENGTH;
+            slice(treeId, position.getLevel(), from, from + HASH_LENGTH).get(hashes, i * HASH_LENGTH, HASH_LENGTH);
+        }
+        return hashes;
+    }
+
+    // Nodes are grouped by level, so that each level file is opened and synced once whatever the number of nodes
+    @Override
+    public void writeNodes(String treeId, List<NodePosition> positions, byte[] hashes) {
+        Map<Integer, List<Integer>> nodesByLevel = IntStream.range(0, positions.size()).boxed()
+                .collect(Collectors.groupingBy(i -> positions.get(i).getLevel(), TreeMap::new, Collectors.toList()));
+
+        for (Map.Entry<Integer, List<Integer>> level : nodesByLevel.entrySet()) {
+            try (FileChannel channel = openLevel(treeId, level.getKey())) {
+                for (int i : level.getValue()) {
+                    writeFully(channel, ByteBuffer.wrap(hashes, i * HASH_LENGTH, HASH_LENGTH), positions.get(i).getIndex() * HASH_LENGTH);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // The files are deleted whatever the size of the tree, mapped pages are released once their mappings are collected
+    @Override
+    public void delete(String treeId, long leafCount) {
+        mappings.asMap().keySet().removeIf(key -> key.startsWith(treeId + ":"));
+
+        try (Stream<Path> files = Files.walk(directory.resolve(treeId))) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        } catch (NoSuchFileException e) {
+            // Nothing was written
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path levelFile(String treeId, int level) {
+        return directory.resolve(treeId).resolve(level + ".hashes");
+    }
+
+    private FileChannel openLevel(String treeId, int level) throws IOException {
+        Path file = levelFile(treeId, level);
+        try {
+            return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (NoSuchFileException e) {
+            // First write of the tree
+            Files.createDirectories(file.getParent());
+            return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+    }
+
+    // Writing past the end of the file extends it
+    private static void writeFully(FileChannel channel, ByteBuffer hashes, long position) throws IOException {
+        while (hashes.hasRemaining()) {
+            position += channel.write(hashes, position);
+        }
+    }
+
+    private long segmentEnd(long position) {
+        return (position / segmentSize + 1) * segmentSize;
+    }
+
+    // A read-only view of bytes from and to of a level, both within the same segment
+    private ByteBuffer slice(String treeId, int level, long from, long to) {
+        long segment = from / segmentSize;
+        String key = treeId + ":" + level + ":" + segment;
+        MappedByteBuffer mapping = mappings.get(key, k -> map(treeId, level, segment));
+
+        // The level grew since it was mapped
+        if (to - segment * segmentSize > mapping.capacity()) {
+            mapping = map(treeId, level, segment);
+            mappings.put(key, mapping);
+        }
+        if (to - segment * segmentSize > mapping.capacity()) {
+            throw new IllegalStateException("Missing hashes of level " + level + " of tree " + treeId);
+        }
+
+        int start = (int) (from - segment * segmentSize);
+        return mapping.duplicate().position(start).limit(start + (int) (to - from)).slice();
+    }
+
+    private MappedByteBuffer map(String treeId, int level, long segment) {
+        try (FileChannel channel = FileChannel.open(levelFile(treeId, level), StandardOpenOption.READ)) {
+            long start = segment * segmentSize;
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.max(0, Math.min(segmentSize, channel.size() - start)));
+        } catch (NoSuchFileException e) {
+            throw new IllegalStateException("Missing level " + level + " of tree " + treeId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.model.MerkleTreeChunkRef;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MerkleTreeChunkRefRepository extends MongoRepository<MerkleTreeChunkRef, String>, BulkInsertRepository<MerkleTreeChunkRef> {
+
+}
@@ -1,9 +1,27 @@
 package fr.alainncls.merkletree.repository;
 
 import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.model.MerkleTreeMetadata;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
-public interface MerkleTreeRepository extends MongoRepository<MerkleTree, String> {
+public interface MerkleTreeRepository extends MongoRepository<MerkleTree, String>, BulkInsertRepository<MerkleTree>, WriteLeaseRepository {
+
+    // Only fetches the fields of the projection
+    Optional<MerkleTreeMetadata> findMetadataById(String id);
+
+    List<MerkleTreeMetadata> findAllBy(Pageable pageable);
+
+    // Keyset pagination: the next page starts after the last ID of the previous one
+    List<MerkleTreeMetadata> findByIdGreaterThan(String id, Pageable pageable);
+
+    // Backed by a Mongo cursor, the stream must be closed
+    Stream<MerkleTreeMetadata> streamAllBy();
+
 }
@@ -0,0 +1,151 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.model.MerkleTreeChunk;
+import fr.alainncls.merkletree.model.NodePosition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+/**
+ * Stores each level of a tree as fixed-size {@link MerkleTreeChunk} documents, so that no document grows with the
+ * tree and a read or a write only touches the chunks holding the requested nodes.
+ */
+@Repository
+@ConditionalOnProperty(name = "merkletree.storage.type", havingValue = "CHUNKS", matchIfMissing = true)
+public class MongoHashStore implements HashStore {
+
+    private final MerkleTreeChunkRepository merkleTreeChunkRepository;
+    private final int chunkSize;
+
+    public MongoHashStore(MerkleTreeChunkRepository merkleTreeChunkRepository, MerkleTreeProperties properties) {
+        this.merkleTreeChunkRepository = merkleTreeChunkRepository;
+        this.chunkSize = properties.getStorage().getChunkSize();
+    }
+
+    @Override
+    public void write(String treeId, int level, long index, byte[] hashes, int offset, int count) {
+        if (count == 0) {
+            return;
+        }
+
+        Map<String, MerkleTreeChunk> existing = findAllById(MerkleTreeChunk.partialIdsOfRange(treeId, level, index, count, chunkSize));
+
+        List<MerkleTreeChunk> chunks = new ArrayList<>();
+        for (long chunkIndex = index / chunkSize; chunkIndex <= (index + count - 1) / chunkSize; chunkIndex++) {
+            MerkleTreeChunk chunk = existing.getOrDefault(MerkleTreeChunk.id(treeId, level, chunkIndex), newChunk(treeId, level, chunkIndex));
+            chunk.setHashes(MerkleTreeChunk.patchRange(chunk.getHashes(), chunkIndex, chunkSize, index, hashes, offset, count));
+            chunks.add(chunk);
+        }
+
+        merkleTreeChunkRepository.saveAll(chunks);
+    }
+
+    @Override
+    public byte[] read(String treeId, int level, long index, int count) {
+        byte[] hashes = new byte[count * HASH_LENGTH];
+        if (count == 0) {
+            return hashes;
+        }
+
+        Map<String, MerkleTreeChunk> chunks = findAllById(MerkleTreeChunk.idsOfRange(treeId, level, index, count, chunkSize));
+        for (long chunkIndex = index / chunkSize; chunkIndex <= (index + count - 1) / chunkSize; chunkIndex++) {
+            MerkleTreeChunk.copyRange(getChunk(chunks, treeId, level, chunkIndex).getHashes(), chunkIndex, chunkSize, index, count, hashes);
+        }
+        return hashes;
+    }
+
+    @Override
+    public byte[] readNodes(String treeId, List<NodePosition> positions) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (NodePosition position : positions) {
+            ids.add(MerkleTreeChunk.id(treeId, position.getLevel(), position.getIndex() / chunkSize));
+        }
+        Map<String, MerkleTreeChunk> chunks = findAllById(ids);
+
+        byte[] hashes = new byte[positions.size() * HASH_LENGTH];
+        for (int i = 0; i < positions.size(); i++) {
+            NodePosition position = positions.get(i);
+            byte[] chunkHashes = getChunk(chunks, treeId, position.getLevel(), position.getIndex() / chunkSize).getHashes();
+            MerkleTreeChunk.copy(chunkHashes, (int) (position.getIndex() % chunkSize) * HASH_LENGTH, hashes, i * HASH_LENGTH, 1);
+        }
+        return hashes;
+    }
+
+    @Override
+    public void writeNodes(String treeId, List<NodePosition> positions, byte[] hashes) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (NodePosition position : positions) {
+            ids.add(MerkleTreeChunk.id(treeId, position.getLevel(), position.getIndex() / chunkSize));
+        }
+        Map<String, MerkleTreeChunk> chunks = new LinkedHashMap<>(findAllById(ids));
+
+        for (int i = 0; i < positions.size(); i++) {
+            NodePosition position = positions.get(i);
+            long chunkIndex = position.getIndex() / chunkSize;
+            MerkleTreeChunk chunk = chunks.computeIfAbsent(MerkleTreeChunk.id(treeId, position.getLevel(), chunkIndex),
+                    id -> newChunk(treeId, position.getLevel(), chunkIndex));
+            chunk.setHashes(MerkleTreeChunk.patch(chunk.getHashes(), (int) (position.getIndex() % chunkSize), hashes, i * HASH_LENGTH, 1));
+        }
+
+        merkleTreeChunkRepository.saveAll(chunks.values());
+    }
+
+    // All chunks of all trees are inserted at once, a tree fails if any of its chunks does
+    @Override
+    public Set<String> writeTrees(List<MerkleTree> merkleTrees) {
+        List<MerkleTreeChunk> chunks = new ArrayList<>();
+        for (MerkleTree merkleTree : merkleTrees) {
+            chunks.addAll(MerkleTreeChunk.ofTree(merkleTree.getId(), merkleTree.getLeafCount(), merkleTree.getHashes(), chunkSize));
+        }
+
+        return merkleTreeChunkRepository.insertUnordered(chunks).stream()
+                .map(index -> chunks.get(index).getTreeId())
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public void delete(String treeId, long leafCount) {
+        List<String> ids = MerkleTreeChunk.idsOfTree(treeId, leafCount, chunkSize);
+        if (!ids.isEmpty()) {
+            merkleTreeChunkRepository.deleteAllById(ids);
+        }
+    }
+
+    private Map<String, MerkleTreeChunk> findAllById(Iterable<String> ids) {
+        Map<String, MerkleTreeChunk> chunks = new HashMap<>();
+        if (ids.iterator().hasNext()) {
+            merkleTreeChunkRepository.findAllById(ids).forEach(chunk -> chunks.put(chunk.getId(), chunk));
+        }
+        return chunks;
+    }
+
+    private static MerkleTreeChunk getChunk(Map<String, MerkleTreeChunk> chunks, String treeId, int level, long chunkIndex) {
+        MerkleTreeChunk chunk = chunks.get(MerkleTreeChunk.id(treeId, level, chunkIndex));
+        if (chunk == null) {
+            throw new IllegalStateException("Missing chunk " + chunkIndex + " of level " + level + " of tree " + treeId);
+        }
+        return chunk;
+    }
+
+    private static MerkleTreeChunk newChunk(String treeId, int level, long chunkIndex) {
+        return MerkleTreeChunk.builder()
+                .id(MerkleTreeChunk.id(treeId, level, chunkIndex))
+                .treeId(treeId)
+                .level(level)
+                .index(chunkIndex)
+                .hashes(new byte[0])
+                .build();
+    }
+}
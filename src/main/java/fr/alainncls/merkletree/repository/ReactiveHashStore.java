@@ -0,0 +1,106 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.model.MerkleTreeChunk;
+import fr.alainncls.merkletree.model.NodePosition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+/**
+ * Non-blocking access to the chunks written by {@link MongoHashStore}, with the same layout and the same IDs.
+ */
+@Repository
+@ConditionalOnProperty(name = "merkletree.storage.type", havingValue = "CHUNKS", matchIfMissing = true)
+public class ReactiveHashStore {
+
+    // Chunks read ahead of the one being emitted when streaming a level
+    private static final int PREFETCH = 4;
+
+    private final ReactiveMerkleTreeChunkRepository reactiveMerkleTreeChunkRepository;
+    private final int chunkSize;
+
+    public ReactiveHashStore(ReactiveMerkleTreeChunkRepository reactiveMerkleTreeChunkRepository, MerkleTreeProperties properties) {
+        this.reactiveMerkleTreeChunkRepository = reactiveMerkleTreeChunkRepository;
+        this.chunkSize = properties.getStorage().getChunkSize();
+    }
+
+    // Emits the count hashes from index of a bottom-up level, one page per chunk, in order
+    public Flux<byte[]> read(String treeId, int level, long index, long count) {
+        if (count == 0) {
+            return Flux.empty();
+        }
+
+        long firstChunk = index / chunkSize;
+        long lastChunk = (index + count - 1) / chunkSize;
+
+        return Flux.range(0, Math.toIntExact(lastChunk - firstChunk + 1))
+                .map(i -> firstChunk + i)
+                .flatMapSequential(chunkIndex -> reactiveMerkleTreeChunkRepository.findById(MerkleTreeChunk.id(treeId, level, chunkIndex))
+                        .switchIfEmpty(Mono.error(() -> missingChunk(treeId, level, chunkIndex)))
+                        .map(chunk -> {
+                            long chunkStart = chunkIndex * chunkSize;
+                            int from = (int) (Math.max(index, chunkStart) - chunkStart);
+                            int to = (int) (Math.min(index + count, chunkStart + chunkSize) - chunkStart);
+                            return slice(chunk.getHashes(), from, to);
+                        }), PREFETCH);
+    }
+
+    public Mono<byte[]> readNodes(String treeId, List<NodePosition> positions) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (NodePosition position : positions) {
+            ids.add(MerkleTreeChunk.id(treeId, position.getLevel(), position.getIndex() / chunkSize));
+        }
+
+        return reactiveMerkleTreeChunkRepository.findAllById(ids)
+                .collectMap(MerkleTreeChunk::getId)
+                .map(chunks -> {
+                    byte[] hashes = new byte[positions.size() * HASH_LENGTH];
+                    for (int i = 0; i < positions.size(); i++) {
+                        NodePosition position = positions.get(i);
+                        long chunkIndex = position.getIndex() / chunkSize;
+                        int nodeIndex = (int) (position.getIndex() % chunkSize);
+                        byte[] node = slice(getChunk(chunks, treeId, position.getLevel(), chunkIndex).getHashes(), nodeIndex, nodeIndex + 1);
+                        System.arraycopy(node, 0, hashes, i * HASH_LENGTH, HASH_LENGTH);
+                    }
+                    return hashes;
+                });
+    }
+
+    // Writes the chunks of a new tree, none of them exists yet so nothing has to be read first
+    public Mono<Void> writeTree(String treeId, long leafCount, byte[] hashes) {
+        return reactiveMerkleTreeChunkRepository.saveAll(MerkleTreeChunk.ofTree(treeId, leafCount, hashes, chunkSize)).then();
+    }
+
+    public Mono<Void> delete(String treeId, long leafCount) {
+        return reactiveMerkleTreeChunkRepository.deleteAllById(MerkleTreeChunk.idsOfTree(treeId, leafCount, chunkSize));
+    }
+
+    private static MerkleTreeChunk getChunk(Map<String, MerkleTreeChunk> chunks, String treeId, int level, long chunkIndex) {
+        MerkleTreeChunk chunk = chunks.get(MerkleTreeChunk.id(treeId, level, chunkIndex));
+        if (chunk == null) {
+            throw missingChunk(treeId, level, chunkIndex);
+        }
+        return chunk;
+    }
+
+    private static IllegalStateException missingChunk(String treeId, int level, long chunkIndex) {
+        return new IllegalStateException("Missing chunk " + chunkIndex + " of level " + level + " of tree " + treeId);
+    }
+
+    private static byte[] slice(byte[] chunkHashes, int from, int to) {
+        if (to * HASH_LENGTH > chunkHashes.length) {
+            throw new IllegalStateException("Chunk is shorter than its level");
+        }
+        return Arrays.copyOfRange(chunkHashes, from * HASH_LENGTH, to * HASH_LENGTH);
+    }
+}
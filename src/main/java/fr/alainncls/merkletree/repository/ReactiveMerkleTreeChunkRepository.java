@@ -0,0 +1,10 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.model.MerkleTreeChunk;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReactiveMerkleTreeChunkRepository extends ReactiveMongoRepository<MerkleTreeChunk, String> {
+
+}
@@ -0,0 +1,21 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.model.MerkleTreeMetadata;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Non-blocking counterpart of MerkleTreeRepository, used by the reactive API
+@Repository
+public interface ReactiveMerkleTreeRepository extends ReactiveMongoRepository<MerkleTree, String> {
+
+    Mono<MerkleTreeMetadata> findMetadataById(String id);
+
+    Flux<MerkleTreeMetadata> findAllBy(Pageable pageable);
+
+    Flux<MerkleTreeMetadata> findByIdGreaterThan(String id, Pageable pageable);
+
+}
@@ -0,0 +1,18 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.model.ContentChunk;
+
+import java.util.List;
+
+/**
+ * Repository fragment counting the references to content chunks, a chunk listed several times gets as many.
+ */
+public interface ReferenceCountRepository {
+
+    // Adds a reference to each chunk, inserting the ones not stored yet
+    void retain(List<ContentChunk> chunks);
+
+    // Removes a reference from each chunk, deleting the ones no longer referenced
+    void release(List<String> ids);
+
+}
@@ -0,0 +1,62 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.model.ContentChunk;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Counts are updated with one unordered bulk write. The hashes of a chunk are only written when it is inserted, a
+ * chunk already stored only gets its count incremented.
+ */
+public class ReferenceCountRepositoryImpl implements ReferenceCountRepository {
+
+    private final MongoOperations mongoOperations;
+
+    public ReferenceCountRepositoryImpl(MongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public void retain(List<ContentChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+
+        Map<String, ContentChunk> distinct = new LinkedHashMap<>();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (ContentChunk chunk : chunks) {
+            distinct.putIfAbsent(chunk.getId(), chunk);
+            counts.merge(chunk.getId(), 1, Integer::sum);
+        }
+
+        BulkOperations bulkOperations = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, ContentChunk.class);
+        counts.forEach((id, count) -> bulkOperations.upsert(query(where("_id").is(id)),
+                new Update().inc("references", count).setOnInsert("hashes", distinct.get(id).getHashes())));
+        bulkOperations.execute();
+    }
+
+    @Override
+    public void release(List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        ids.forEach(id -> counts.merge(id, 1, Integer::sum));
+
+        BulkOperations bulkOperations = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, ContentChunk.class);
+        counts.forEach((id, count) -> bulkOperations.updateOne(query(where("_id").is(id)), new Update().inc("references", -count)));
+        bulkOperations.execute();
+
+        // A chunk retained again in between is kept, one retained afterwards is inserted again with its hashes
+        mongoOperations.remove(query(where("_id").in(counts.keySet()).and("references").lte(0)), ContentChunk.class);
+    }
+}
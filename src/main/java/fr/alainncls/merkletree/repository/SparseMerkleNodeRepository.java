@@ -0,0 +1,15 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.model.SparseMerkleNode;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SparseMerkleNodeRepository extends MongoRepository<SparseMerkleNode, String> {
+
+    // Node IDs start with the ID of their tree, an anchored regex is answered by the _id index
+    @Query(value = "{ '_id': { $regex: ?0 } }", delete = true)
+    void deleteByIdMatching(String regex);
+
+}
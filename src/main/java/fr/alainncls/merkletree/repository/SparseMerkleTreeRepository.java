@@ -0,0 +1,10 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.model.SparseMerkleTree;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SparseMerkleTreeRepository extends MongoRepository<SparseMerkleTree, String>, SparseWriteLeaseRepository {
+
+}
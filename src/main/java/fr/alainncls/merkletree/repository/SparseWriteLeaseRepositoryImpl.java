@@ -0,0 +1,19 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.model.SparseMerkleTree;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Update;
+
+public class SparseWriteLeaseRepositoryImpl extends AbstractWriteLeaseRepository<SparseMerkleTree> implements SparseWriteLeaseRepository {
+
+    public SparseWriteLeaseRepositoryImpl(MongoOperations mongoOperations) {
+        super(mongoOperations, SparseMerkleTree.class);
+    }
+
+    @Override
+    public boolean commitWriteLease(SparseMerkleTree sparseMerkleTree, String lease) {
+        return commitWriteLease(sparseMerkleTree.getId(), lease, new Update()
+                .set("size", sparseMerkleTree.getSize())
+                .set("root", sparseMerkleTree.getRoot()));
+    }
+}
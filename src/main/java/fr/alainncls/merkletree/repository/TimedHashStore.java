@@ -0,0 +1,85 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.model.NodePosition;
+import io.micrometer.core.instrument.Timer;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Times every call to a {@link HashStore}, tagged with the store and the operation.
+ * <p>
+ * Whole trees are written and read by the methods of the store itself, each is timed once rather than level by level.
+ */
+public class TimedHashStore implements HashStore {
+
+    private final HashStore hashStore;
+    private final Timer writeTimer;
+    private final Timer readTimer;
+    private final Timer readNodesTimer;
+    private final Timer writeNodesTimer;
+    private final Timer deleteTimer;
+    private final Timer writeTreeTimer;
+    private final Timer writeTreesTimer;
+    private final Timer readTreeTimer;
+
+    public TimedHashStore(HashStore hashStore, String store, MerkleTreeMetrics metrics) {
+        this.hashStore = hashStore;
+        this.writeTimer = metrics.storageTimer(store, "write");
+        this.readTimer = metrics.storageTimer(store, "read");
+        this.readNodesTimer = metrics.storageTimer(store, "readNodes");
+        this.writeNodesTimer = metrics.storageTimer(store, "writeNodes");
+        this.deleteTimer = metrics.storageTimer(store, "delete");
+        this.writeTreeTimer = metrics.storageTimer(store, "writeTree");
+        this.writeTreesTimer = metrics.storageTimer(store, "writeTrees");
+        this.readTreeTimer = metrics.storageTimer(store, "readTree");
+    }
+
+    @Override
+    public void write(String treeId, int level, long index, byte[] hashes, int offset, int count) {
+        writeTimer.record(() -> hashStore.write(treeId, level, index, hashes, offset, count));
+    }
+
+    @Override
+    public byte[] read(String treeId, int level, long index, int count) {
+        return readTimer.record(() -> hashStore.read(treeId, level, index, count));
+    }
+
+    @Override
+    public ByteBuffer readBuffer(String treeId, int level, long index, int count) {
+        return readTimer.record(() -> hashStore.readBuffer(treeId, level, index, count));
+    }
+
+    @Override
+    public byte[] readNodes(String treeId, List<NodePosition> positions) {
+        return readNodesTimer.record(() -> hashStore.readNodes(treeId, positions));
+    }
+
+    @Override
+    public void writeNodes(String treeId, List<NodePosition> positions, byte[] hashes) {
+        writeNodesTimer.record(() -> hashStore.writeNodes(treeId, positions, hashes));
+    }
+
+    @Override
+    public void delete(String treeId, long leafCount) {
+        deleteTimer.record(() -> hashStore.delete(treeId, leafCount));
+    }
+
+    @Override
+    public void writeTree(String treeId, long leafCount, byte[] hashes) {
+        writeTreeTimer.record(() -> hashStore.writeTree(treeId, leafCount, hashes));
+    }
+
+    @Override
+    public Set<String> writeTrees(List<MerkleTree> merkleTrees) {
+        return writeTreesTimer.record(() -> hashStore.writeTrees(merkleTrees));
+    }
+
+    @Override
+    public byte[] readTree(String treeId, long leafCount) {
+        return readTreeTimer.record(() -> hashStore.readTree(treeId, leafCount));
+    }
+}
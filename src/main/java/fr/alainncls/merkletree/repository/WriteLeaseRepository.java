@@ -0,0 +1,25 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.model.MerkleTree;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Repository fragment letting a single writer at a time change the hashes of a tree, whichever instance it runs on.
+ */
+public interface WriteLeaseRepository {
+
+    // Leases the tree unless another writer holds an unexpired lease, returns its header as of the lease
+    Optional<MerkleTree> acquireWriteLease(String id, String lease, Duration duration);
+
+    // Saves the new size and root of the tree and ends the lease, returns false if the lease expired and was taken over
+    boolean commitWriteLease(MerkleTree merkleTree, String lease);
+
+    // Ends the lease without changing the header
+    void abandonWriteLease(String id, String lease);
+
+    // Deletes the header while holding the lease, returns false if the lease expired and was taken over
+    boolean deleteWithWriteLease(String id, String lease);
+
+}
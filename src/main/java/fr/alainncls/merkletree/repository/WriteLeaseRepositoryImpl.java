@@ -0,0 +1,20 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.model.MerkleTree;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Update;
+
+public class WriteLeaseRepositoryImpl extends AbstractWriteLeaseRepository<MerkleTree> implements WriteLeaseRepository {
+
+    public WriteLeaseRepositoryImpl(MongoOperations mongoOperations) {
+        super(mongoOperations, MerkleTree.class);
+    }
+
+    @Override
+    public boolean commitWriteLease(MerkleTree merkleTree, String lease) {
+        return commitWriteLease(merkleTree.getId(), lease, new Update()
+                .set("leafCount", merkleTree.getLeafCount())
+                .set("height", merkleTree.getHeight())
+                .set("root", merkleTree.getRoot()));
+    }
+}
@@ -0,0 +1,29 @@
+package fr.alainncls.merkletree.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters updated by {@link MerkleTreeBuilder} while it builds a tree, readable from any thread.
+ */
+public class BuildProgress {
+
+    private final AtomicLong leavesHashed = new AtomicLong();
+    private final AtomicInteger levelsReduced = new AtomicInteger();
+
+    public long getLeavesHashed() {
+        return leavesHashed.get();
+    }
+
+    public int getLevelsReduced() {
+        return levelsReduced.get();
+    }
+
+    void leavesHashed(int count) {
+        leavesHashed.addAndGet(count);
+    }
+
+    void levelReduced() {
+        levelsReduced.incrementAndGet();
+    }
+}
@@ -0,0 +1,237 @@
+package fr.alainncls.merkletree.service;
+
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.hash.TreeHasher;
+import fr.alainncls.merkletree.model.NodePosition;
+import fr.alainncls.merkletree.model.TreeLayout;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+/**
+ * Computes the level-ordered hashes of a Merkle tree, see {@link TreeLayout}.
+ * <p>
+ * Above the configured threshold, leaves and every level are hashed in chunks on a dedicated fork/join pool.
+ * Each parent only depends on its two children, so both modes produce exactly the same hashes.
+ */
+@Component
+public class MerkleTreeBuilder {
+
+    // Fork/join chunks hashed by each thread between two progress updates
+    private static final int PROGRESS_BATCHES = 8;
+
+    private final MerkleTreeProperties.Build properties;
+    private final ForkJoinPool forkJoinPool;
+    private final MerkleTreeMetrics metrics;
+
+    public MerkleTreeBuilder(MerkleTreeProperties properties, MerkleTreeMetrics metrics) {
+        this.properties = properties.getBuild();
+        this.forkJoinPool = new ForkJoinPool(this.properties.getParallelism());
+        this.metrics = metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        forkJoinPool.shutdown();
+    }
+
+    public byte[] build(List<String> items, TreeHasher treeHasher) {
+        return build(items, treeHasher, items.size() >= properties.getParallelThreshold());
+    }
+
+    public byte[] build(List<String> items, TreeHasher treeHasher, boolean parallel) {
+        return build(items, treeHasher, parallel, new BuildProgress());
+    }
+
+    public byte[] build(List<String> items, TreeHasher treeHasher, BuildProgress progress) {
+        return build(items, treeHasher, items.size() >= properties.getParallelThreshold(), progress);
+    }
+
+    byte[] build(List<String> items, TreeHasher treeHasher, boolean parallel, BuildProgress progress) {
+        int leafCount = items.size();
+        byte[] hashes = new byte[Math.toIntExact(TreeLayout.nodeCount(leafCount) * HASH_LENGTH)];
+
+        // Leaves are hashed in batches so that progress is reported along the way
+        int batchSize = parallel ? PROGRESS_BATCHES * properties.getChunkSize() * properties.getParallelism() : properties.getChunkSize();
+        long start = System.nanoTime();
+        for (int from = 0; from < leafCount; from += batchSize) {
+            int batchFrom = from;
+            int count = Math.min(batchSize, leafCount - from);
+            forEach(count, parallel, index -> treeHasher.hashLeaf(items.get(batchFrom + index), hashes, (batchFrom + index) * HASH_LENGTH));
+            progress.leavesHashed(count);
+        }
+        metrics.leavesHashed(leafCount, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        int levelOffset = 0;
+        int length = leafCount;
+
+        while (length != 1) {
+            int childOffset = levelOffset;
+            int childLength = length;
+            int parentOffset = levelOffset + length;
+
+            forEach((length + 1) / 2, parallel, index -> hashParent(treeHasher, hashes, childOffset, childLength, hashes, parentOffset, index));
+            progress.levelReduced();
+
+            levelOffset = parentOffset;
+            length = (length + 1) / 2;
+        }
+        metrics.levelsReduced(levelOffset + 1 - leafCount, System.nanoTime() - start);
+
+        return hashes;
+    }
+
+    // Runs one action per tree on the fork/join pool, so that many small trees are built at the same time
+    public void forEachTree(int treeCount, IntConsumer action) {
+        forkJoinPool.invoke(new RangeTask(0, treeCount, 1, action));
+    }
+
+    // Existing nodes needed to append leaves: the left sibling of the first new node of each level, if any
+    public static List<NodePosition> appendSiblings(long leafCount, long newLeafCount) {
+        int height = TreeLayout.height(leafCount);
+        int newHeight = TreeLayout.height(newLeafCount);
+        List<NodePosition> siblings = new ArrayList<>();
+
+        for (int level = 0; level < Math.min(height, newHeight - 1); level++) {
+            long first = leafCount >> level;
+            if (first % 2 == 1) {
+                siblings.add(new NodePosition(level, first - 1));
+            }
+        }
+        return siblings;
+    }
+
+    /**
+     * Hashes the nodes that change when items are appended to a tree of {@code leafCount} leaves, given the hashes
+     * of its {@link #appendSiblings}. Only the new leaves and their ancestors are hashed: the returned array holds,
+     * for each bottom-up level, its nodes from index {@code leafCount >> level} to the end of the level.
+     */
+    public byte[][] append(long leafCount, List<String> items, byte[] siblings, TreeHasher treeHasher) {
+        long newLeafCount = leafCount + items.size();
+        int newHeight = TreeLayout.height(newLeafCount);
+        boolean parallel = items.size() >= properties.getParallelThreshold();
+        byte[][] levels = new byte[newHeight][];
+
+        byte[] nodes = new byte[items.size() * HASH_LENGTH];
+        forEach(items.size(), parallel, index -> treeHasher.hashLeaf(items.get(index), nodes, index * HASH_LENGTH));
+        levels[0] = nodes;
+
+        int siblingOffset = 0;
+        for (int level = 0; level < newHeight - 1; level++) {
+            long first = leafCount >> level;
+            byte[] children = levels[level];
+
+            // Children are hashed by pairs, an odd first node is paired with its existing left sibling
+            if (first % 2 == 1) {
+                children = new byte[levels[level].length + HASH_LENGTH];
+                System.arraycopy(siblings, siblingOffset, children, 0, HASH_LENGTH);
+                System.arraycopy(levels[level], 0, children, HASH_LENGTH, levels[level].length);
+                siblingOffset += HASH_LENGTH;
+            }
+
+            int childLength = children.length / HASH_LENGTH;
+            int parentLength = (childLength + 1) / 2;
+            byte[] childHashes = children;
+            byte[] parents = new byte[parentLength * HASH_LENGTH];
+
+            forEach(parentLength, parallel, index -> hashParent(treeHasher, childHashes, 0, childLength, parents, 0, index));
+            levels[level + 1] = parents;
+        }
+        metrics.nodesHashed(TreeLayout.nodeCount(newLeafCount) - TreeLayout.nodeCount(leafCount));
+
+        return levels;
+    }
+
+    /**
+     * Hashes a replaced leaf and its ancestors, given the hashes of its {@link TreeLayout#siblings}.
+     * The returned array holds the new hashes of the {@link TreeLayout#path} of the leaf.
+     */
+    public byte[] update(long leafCount, long leafIndex, String item, byte[] siblings, TreeHasher treeHasher) {
+        int height = TreeLayout.height(leafCount);
+        byte[] path = new byte[height * HASH_LENGTH];
+        byte[] children = new byte[2 * HASH_LENGTH];
+        treeHasher.hashLeaf(item, path, 0);
+
+        int siblingOffset = 0;
+        long index = leafIndex;
+        for (int level = 0; level < height - 1; level++) {
+            long sibling = index ^ 1;
+            int node = level * HASH_LENGTH;
+            int parent = node + HASH_LENGTH;
+
+            if (sibling < TreeLayout.bottomUpWidth(leafCount, level)) {
+                int left = sibling < index ? 0 : HASH_LENGTH;
+                System.arraycopy(siblings, siblingOffset, children, left, HASH_LENGTH);
+                System.arraycopy(path, node, children, HASH_LENGTH - left, HASH_LENGTH);
+                treeHasher.hashChildren(children, 0, path, parent);
+                siblingOffset += HASH_LENGTH;
+            } else {
+                // If a node has only one child, its hash is the same as its child’s.
+                System.arraycopy(path, node, path, parent, HASH_LENGTH);
+            }
+            index /= 2;
+        }
+        metrics.nodesHashed(height);
+
+        return path;
+    }
+
+    private static void hashParent(TreeHasher treeHasher, byte[] children, int childOffset, int childLength, byte[] parents, int parentOffset, int index) {
+        int leftChild = childOffset + 2 * index;
+        int parent = parentOffset + index;
+
+        if ((2 * index + 1) < childLength) {
+            treeHasher.hashChildren(children, leftChild * HASH_LENGTH, parents, parent * HASH_LENGTH);
+        } else {
+            // If a node has only one child, its hash is the same as its child’s.
+            System.arraycopy(children, leftChild * HASH_LENGTH, parents, parent * HASH_LENGTH, HASH_LENGTH);
+        }
+    }
+
+    private void forEach(int count, boolean parallel, IntConsumer action) {
+        if (parallel && count > properties.getChunkSize()) {
+            forkJoinPool.invoke(new RangeTask(0, count, properties.getChunkSize(), action));
+        } else {
+            for (int index = 0; index < count; index++) {
+                action.accept(index);
+            }
+        }
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final transient IntConsumer action;
+
+        private RangeTask(int from, int to, int chunkSize, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                for (int index = from; index < to; index++) {
+                    action.accept(index);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, middle, chunkSize, action), new RangeTask(middle, to, chunkSize, action));
+        }
+    }
+}
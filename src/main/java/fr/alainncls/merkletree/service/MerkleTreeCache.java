@@ -0,0 +1,76 @@
+package fr.alainncls.merkletree.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.model.MerkleTree;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Function;
+
+/**
+ * Keeps the most used trees in memory with their level-ordered hashes, so they are served without reading MongoDB.
+ * <p>
+ * Entries are weighed by the size of their hashes: the cache is bounded in bytes, whatever the size of the trees.
+ * Changes only invalidate the cache of the instance that made them, so entries also expire a fixed time after being
+ * loaded: with several instances, a tree changed elsewhere is served stale for at most that time.
+ * Its hit, miss and eviction counts are published as the {@code cache.*} metrics of the {@value #NAME} cache.
+ */
+@Component
+public class MerkleTreeCache implements MeterBinder {
+
+    public static final String NAME = "merkleTrees";
+
+    // Approximate footprint of a tree besides its hashes
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final Cache<String, MerkleTree> cache;
+
+    @Autowired
+    public MerkleTreeCache(MerkleTreeProperties properties) {
+        this(properties, Ticker.systemTicker());
+    }
+
+    MerkleTreeCache(MerkleTreeProperties properties, Ticker ticker) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getCache().getMaximumWeight().toBytes())
+                .weigher(MerkleTreeCache::weigh)
+                .expireAfterWrite(properties.getCache().getExpireAfterWrite())
+                .ticker(ticker)
+                // Evicts on the calling thread, large trees are dropped before the next read
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+    }
+
+    public MerkleTree get(String id, Function<String, MerkleTree> loader) {
+        return cache.get(id, loader);
+    }
+
+    public MerkleTree getIfPresent(String id) {
+        return cache.getIfPresent(id);
+    }
+
+    public void put(MerkleTree merkleTree) {
+        cache.put(merkleTree.getId(), merkleTree);
+    }
+
+    public void invalidate(String id) {
+        cache.invalidate(id);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, NAME);
+    }
+
+    private static int weigh(String id, MerkleTree merkleTree) {
+        long weight = ENTRY_OVERHEAD + (merkleTree.getHashes() != null ? (long) merkleTree.getHashes().length : 0);
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+}
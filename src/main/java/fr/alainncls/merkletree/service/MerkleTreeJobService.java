@@ -0,0 +1,154 @@
+package fr.alainncls.merkletree.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.exception.InvalidItemsException;
+import fr.alainncls.merkletree.exception.JobQueueFullException;
+import fr.alainncls.merkletree.exception.MerkleTreeJobNotFoundException;
+import fr.alainncls.merkletree.model.InputItems;
+import fr.alainncls.merkletree.model.MerkleTreeJob;
+import fr.alainncls.merkletree.model.TreeLayout;
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds trees in the background, outside of the requests that submit them.
+ * <p>
+ * Jobs wait in a bounded queue for one of a fixed number of workers, a full queue rejects new jobs instead of
+ * piling up their items in memory. Jobs are only known to the instance that runs them, finished ones are forgotten
+ * after the configured retention.
+ */
+@Service
+public class MerkleTreeJobService {
+
+    private final MerkleTreeService merkleTreeService;
+    private final ThreadPoolExecutor executor;
+    private final Cache<String, Job> jobs;
+
+    public MerkleTreeJobService(MerkleTreeService merkleTreeService, MerkleTreeProperties properties) {
+        MerkleTreeProperties.Jobs jobProperties = properties.getJobs();
+        AtomicInteger threadCount = new AtomicInteger();
+
+        this.merkleTreeService = merkleTreeService;
+        this.executor = new ThreadPoolExecutor(jobProperties.getConcurrency(), jobProperties.getConcurrency(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(jobProperties.getQueueCapacity()),
+                runnable -> new Thread(runnable, "merkle-tree-job-" + threadCount.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.jobs = Caffeine.newBuilder()
+                .expireAfter(new FinishedJobExpiry(jobProperties.getRetention()))
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public MerkleTreeJob submit(InputItems inputItems) {
+        if (inputItems.getItems() == null || inputItems.getItems().isEmpty()) {
+            throw new InvalidItemsException();
+        }
+
+        Job job = new Job(new ObjectId().toHexString(), inputItems.getItems().size());
+        jobs.put(job.id, job);
+
+        try {
+            executor.execute(() -> run(job, inputItems));
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(job.id);
+            throw new JobQueueFullException();
+        }
+        return job.toMerkleTreeJob();
+    }
+
+    public MerkleTreeJob getJob(String id) {
+        Job job = jobs.getIfPresent(id);
+        if (job == null) {
+            throw new MerkleTreeJobNotFoundException();
+        }
+        return job.toMerkleTreeJob();
+    }
+
+    private void run(Job job, InputItems inputItems) {
+        job.status = MerkleTreeJob.Status.RUNNING;
+        try {
+            job.treeId = merkleTreeService.generateMerkleTree(inputItems, job.progress).getId();
+            job.status = MerkleTreeJob.Status.DONE;
+        } catch (RuntimeException e) {
+            job.error = e.getMessage();
+            job.status = MerkleTreeJob.Status.FAILED;
+        }
+        // Starts the retention period
+        jobs.put(job.id, job);
+    }
+
+    private static final class Job {
+
+        private final String id;
+        private final int leafCount;
+        private final Instant createdAt = Instant.now();
+        private final BuildProgress progress = new BuildProgress();
+        private volatile MerkleTreeJob.Status status = MerkleTreeJob.Status.QUEUED;
+        private volatile String treeId;
+        private volatile String error;
+
+        private Job(String id, int leafCount) {
+            this.id = id;
+            this.leafCount = leafCount;
+        }
+
+        private boolean isFinished() {
+            return status == MerkleTreeJob.Status.DONE || status == MerkleTreeJob.Status.FAILED;
+        }
+
+        private MerkleTreeJob toMerkleTreeJob() {
+            return MerkleTreeJob.builder()
+                    .id(id)
+                    .status(status)
+                    .leafCount(leafCount)
+                    .leavesHashed(progress.getLeavesHashed())
+                    .levelCount(TreeLayout.height(leafCount) - 1)
+                    .levelsReduced(progress.getLevelsReduced())
+                    .treeId(treeId)
+                    .error(error)
+                    .createdAt(createdAt)
+                    .build();
+        }
+    }
+
+    // Queued and running jobs never expire, finished ones expire once the retention has elapsed
+    private static final class FinishedJobExpiry implements Expiry<String, Job> {
+
+        private final long retentionNanos;
+
+        private FinishedJobExpiry(Duration retention) {
+            this.retentionNanos = retention.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String id, Job job, long currentTime) {
+            return job.isFinished() ? retentionNanos : Long.MAX_VALUE;
+        }
+
+        @Override
+        public long expireAfterUpdate(String id, Job job, long currentTime, long currentDuration) {
+            return expireAfterCreate(id, job, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String id, Job job, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -1,165 +1,869 @@
 package fr.alainncls.merkletree.service;
 
-import fr.alainncls.merkletree.exception.HashException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.exception.InvalidBulkException;
+import fr.alainncls.merkletree.exception.InvalidItemsException;
+import fr.alainncls.merkletree.exception.InvalidPageException;
+import fr.alainncls.merkletree.exception.InvalidProofException;
+import fr.alainncls.merkletree.exception.InvalidRangeException;
+import fr.alainncls.merkletree.exception.MerkleTreeConflictException;
+import fr.alainncls.merkletree.exception.MerkleTreeDiffException;
+import fr.alainncls.merkletree.exception.MerkleTreeLeafException;
 import fr.alainncls.merkletree.exception.MerkleTreeLevelException;
+import fr.alainncls.merkletree.exception.MerkleTreeNodeException;
 import fr.alainncls.merkletree.exception.MerkleTreeNotFoundException;
+import fr.alainncls.merkletree.exception.MerkleTreeTooLargeException;
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.hash.Hex;
+import fr.alainncls.merkletree.hash.TreeHasher;
+import fr.alainncls.merkletree.model.BulkMerkleTreeResult;
+import fr.alainncls.merkletree.model.InputItem;
 import fr.alainncls.merkletree.model.InputItems;
+import fr.alainncls.merkletree.model.InputLeaves;
+import fr.alainncls.merkletree.model.MerkleMultiProof;
+import fr.alainncls.merkletree.model.MerkleProof;
+import fr.alainncls.merkletree.model.MerkleSubtree;
 import fr.alainncls.merkletree.model.MerkleTree;
-import fr.alainncls.merkletree.model.Node;
+import fr.alainncls.merkletree.model.MerkleTreeMetadata;
+import fr.alainncls.merkletree.model.MerkleTreePage;
+import fr.alainncls.merkletree.model.NodePosition;
+import fr.alainncls.merkletree.model.ProofStep;
+import fr.alainncls.merkletree.model.TreeLayout;
+import fr.alainncls.merkletree.repository.HashStore;
 import fr.alainncls.merkletree.repository.MerkleTreeRepository;
 import lombok.AllArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
 
 @Service
 @AllArgsConstructor
 public class MerkleTreeService {
 
-    private static final String HASH_ALGORITHM = "SHA-256";
+    public static final int MAX_PAGE_SIZE = 1000;
+    // A subtree of depth 10 has at most 2047 nodes
+    public static final int MAX_SUBTREE_DEPTH = 10;
+    // Trees are diffed by subtrees of 2^16 leaves, which bounds the number of nodes compared at once
+    private static final int DIFF_WINDOW_LEVEL = 16;
+    // Trees written at the same time on an instance share one of these locks
+    private static final int WRITE_LOCKS = 64;
 
-    private final MerkleTreeRepository merkleTreeRepository;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
 
-    private static String bytesToHex(byte[] hash) {
-        StringBuilder hexString = new StringBuilder(2 * hash.length);
-        for (byte b : hash) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
-            }
-            hexString.append(hex);
+    private final MerkleTreeRepository merkleTreeRepository;
+    private final HashStore hashStore;
+    private final MerkleTreeCache merkleTreeCache;
+    private final MerkleTreeBuilder merkleTreeBuilder;
+    private final MerkleTreeProperties merkleTreeProperties;
+    private final MerkleTreeMetrics merkleTreeMetrics;
+    // Appends and updates of the same tree on this instance wait for each other rather than conflict
+    private final Lock[] writeLocks = IntStream.range(0, WRITE_LOCKS).mapToObj(i -> new ReentrantLock()).toArray(Lock[]::new);
+
+    public MerkleTreePage getMerkleTrees(String after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidPageException(MAX_PAGE_SIZE);
         }
-        return hexString.toString();
+
+        Pageable pageable = PageRequest.of(0, limit, Sort.by("id"));
+        List<MerkleTreeMetadata> merkleTrees = after == null
+                ? merkleTreeRepository.findAllBy(pageable)
+                : merkleTreeRepository.findByIdGreaterThan(after, pageable);
+
+        return MerkleTreePage.builder()
+                .trees(merkleTrees)
+                .next(merkleTrees.size() == limit ? merkleTrees.get(limit - 1).getId() : null)
+                .build();
     }
 
-    public List<MerkleTree> getAllMerkleTrees() {
-        return merkleTreeRepository.findAll();
+    // Reads the trees from a Mongo cursor, the stream must be closed
+    public Stream<MerkleTreeMetadata> streamMerkleTrees() {
+        return merkleTreeRepository.streamAllBy();
     }
 
+    // Whole trees are built in a single array, larger ones are rejected before any hash is read
     public MerkleTree getMerkleTree(String id) {
-        return merkleTreeRepository.findById(id).orElseThrow(MerkleTreeNotFoundException::new);
+        MerkleTree merkleTree = merkleTreeCache.get(id, this::loadMerkleTree);
+        checkWholeTreeSize(merkleTree.getLeafCount());
+        return merkleTree;
     }
 
     public MerkleTree generateMerkleTree(InputItems inputItems) {
-        MerkleTree merkleTree = new MerkleTree();
-        List<Node> leafNodes = inputItems.getItems().stream().map(item -> Node.builder().hash(hashItem(item)).build()).collect(Collectors.toList());
-        List<Node> parents = new ArrayList<>();
+        return generateMerkleTree(inputItems, new BuildProgress());
+    }
+
+    public MerkleTree generateMerkleTree(InputItems inputItems, BuildProgress progress) {
+        MerkleTree merkleTree = buildMerkleTree(inputItems, progress);
+        // Chunks are written before the header, a tree is only visible once complete
+        hashStore.writeTree(merkleTree.getId(), merkleTree.getLeafCount(), merkleTree.getHashes());
+
+        try {
+            merkleTreeRepository.save(merkleTree);
+        } catch (RuntimeException e) {
+            hashStore.delete(merkleTree.getId(), merkleTree.getLeafCount());
+            throw e;
+        }
+        merkleTreeCache.put(merkleTree);
+        merkleTreeMetrics.treeStored(merkleTree.getLeafCount());
+        return merkleTree;
+    }
+
+    /**
+     * Builds many trees at once, several at a time, then stores all their chunks and all their headers with one bulk
+     * insert each. A tree that cannot be built or stored gets an error, the others are created anyway.
+     * <p>
+     * The trees are not cached, a batch of many small trees would evict the most read ones.
+     */
+    public List<BulkMerkleTreeResult> generateMerkleTrees(List<InputItems> inputItemsList) {
+        int maxBulkSize = merkleTreeProperties.getBuild().getMaxBulkSize();
+        if (inputItemsList == null || inputItemsList.isEmpty() || inputItemsList.size() > maxBulkSize) {
+            throw new InvalidBulkException(maxBulkSize);
+        }
 
-        while (leafNodes.size() != 1) {
-            int index = 0;
-            int length = leafNodes.size();
+        MerkleTree[] merkleTrees = new MerkleTree[inputItemsList.size()];
+        String[] errors = new String[inputItemsList.size()];
+        merkleTreeBuilder.forEachTree(inputItemsList.size(), index -> {
+            try {
+                merkleTrees[index] = buildMerkleTree(inputItemsList.get(index), new BuildProgress());
+            } catch (RuntimeException e) {
+                errors[index] = e.getMessage();
+            }
+        });
+
+        List<MerkleTree> built = Arrays.stream(merkleTrees).filter(Objects::nonNull).collect(Collectors.toList());
+        Set<String> failed = new HashSet<>();
+        try {
+            failed.addAll(hashStore.writeTrees(built));
+        } catch (RuntimeException e) {
+            // Any of the trees may have been partly written
+            built.forEach(merkleTree -> failed.add(merkleTree.getId()));
+        }
 
-            while (index < length) {
-                Node leftChild = leafNodes.get(index);
-                Node rightChild = null;
+        // Chunks are written before the headers, a tree is only visible once complete
+        List<MerkleTree> written = built.stream().filter(merkleTree -> !failed.contains(merkleTree.getId())).collect(Collectors.toList());
+        Set<String> kept = new HashSet<>();
+        try {
+            merkleTreeRepository.insertUnordered(written).forEach(index -> failed.add(written.get(index).getId()));
+        } catch (RuntimeException e) {
+            // Any of the headers may have been inserted, their chunks are only deleted once they are gone
+            written.forEach(merkleTree -> failed.add(merkleTree.getId()));
+            try {
+                merkleTreeRepository.deleteAllById(written.stream().map(MerkleTree::getId).collect(Collectors.toList()));
+            } catch (RuntimeException deleteException) {
+                written.forEach(merkleTree -> kept.add(merkleTree.getId()));
+            }
+        }
 
-                if ((index + 1) < length) {
-                    rightChild = leafNodes.get(index + 1);
+        for (MerkleTree merkleTree : built) {
+            if (failed.contains(merkleTree.getId()) && !kept.contains(merkleTree.getId())) {
+                try {
+                    hashStore.delete(merkleTree.getId(), merkleTree.getLeafCount());
+                } catch (RuntimeException e) {
+                    // The tree is reported as failed anyway, its unreachable chunks are left behind
                 }
+            }
+        }
 
-                // If a node has only one child, its hash is the same as its child’s.
-                String newHash = rightChild != null ? hashItem(leftChild.getHash() + rightChild.getHash()) : leftChild.getHash();
-                Node newNode = Node.builder().hash(newHash).leftNode(leftChild).rightNode(rightChild).build();
+        List<BulkMerkleTreeResult> results = new ArrayList<>(merkleTrees.length);
+        for (int i = 0; i < merkleTrees.length; i++) {
+            if (merkleTrees[i] == null) {
+                results.add(BulkMerkleTreeResult.builder().error(errors[i]).build());
+            } else if (failed.contains(merkleTrees[i].getId())) {
+                results.add(BulkMerkleTreeResult.builder().error("The tree could not be stored").build());
+            } else {
+                merkleTreeMetrics.treeStored(merkleTrees[i].getLeafCount());
+                results.add(BulkMerkleTreeResult.builder().id(merkleTrees[i].getId()).root(merkleTrees[i].getRoot()).build());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Builds a tree from a JSON array of items, or from one item per line (raw for text/plain, JSON strings for
+     * NDJSON), hashing items as they are read instead of loading them all first.
+     */
+    public MerkleTree generateMerkleTree(InputStream inputStream, MediaType mediaType, HashAlgorithm algorithm, HashMode hashMode) throws IOException {
+        String id = new ObjectId().toHexString();
+        StreamingTreeBuilder streamingTreeBuilder = new StreamingTreeBuilder(getTreeHasher(algorithm, hashMode), hashStore, id,
+                merkleTreeProperties.getStorage().getChunkSize());
+        byte[] root;
+
+        try {
+            if (MediaType.APPLICATION_JSON.isCompatibleWith(mediaType)) {
+                readJsonArray(inputStream, streamingTreeBuilder);
+            } else {
+                readLines(inputStream, MediaType.APPLICATION_NDJSON.isCompatibleWith(mediaType), streamingTreeBuilder);
+            }
 
-                parents.add(newNode);
-                index += 2;
+            if (streamingTreeBuilder.getLeafCount() == 0) {
+                throw new InvalidItemsException();
             }
 
-            leafNodes = parents;
-            parents = new ArrayList<>();
+            root = streamingTreeBuilder.finish();
+        } catch (IOException | RuntimeException e) {
+            // Drops the chunks already written for an incomplete tree
+            hashStore.delete(id, streamingTreeBuilder.getLeafCount());
+            throw e;
+        }
+
+        // Streamed leaves are not built in memory, their hashes are only counted
+        merkleTreeMetrics.nodesHashed(TreeLayout.nodeCount(streamingTreeBuilder.getLeafCount()));
+        merkleTreeMetrics.treeStored(streamingTreeBuilder.getLeafCount());
+
+        MerkleTreeProperties.Hash hashProperties = merkleTreeProperties.getHash();
+        return merkleTreeRepository.save(MerkleTree.builder()
+                .id(id)
+                .leafCount(streamingTreeBuilder.getLeafCount())
+                .height(TreeLayout.height(streamingTreeBuilder.getLeafCount()))
+                .algorithm(algorithm != null ? algorithm : hashProperties.getAlgorithm())
+                .hashMode(hashMode != null ? hashMode : hashProperties.getMode())
+                .root(Hex.encode(root))
+                .createdAt(Instant.now())
+                .build());
+    }
+
+    public MerkleTree appendItems(String id, InputItems inputItems) {
+        List<String> items = inputItems.getItems();
+        if (items == null || items.isEmpty()) {
+            throw new InvalidItemsException();
         }
 
-        merkleTree.setChildren(leafNodes.get(0));
+        return writeMerkleTree(id, merkleTree -> {
+            TreeHasher treeHasher = TreeHasher.of(merkleTree.getAlgorithm(), merkleTree.getHashMode());
+            int leafCount = merkleTree.getLeafCount();
+            int newLeafCount = leafCount + items.size();
+
+            byte[] siblings = hashStore.readNodes(id, MerkleTreeBuilder.appendSiblings(leafCount, newLeafCount));
+            byte[][] levels = merkleTreeBuilder.append(leafCount, items, siblings, treeHasher);
 
-        return merkleTreeRepository.save(merkleTree);
+            // Only the new nodes and the right edge of the existing levels are written
+            for (int level = 0; level < levels.length; level++) {
+                hashStore.write(id, level, leafCount >> level, levels[level], 0, levels[level].length / HASH_LENGTH);
+            }
+
+            merkleTree.setLeafCount(newLeafCount);
+            merkleTree.setHeight(levels.length);
+            merkleTree.setRoot(Hex.encode(levels[levels.length - 1]));
+            merkleTreeMetrics.treeStored(newLeafCount);
+            return merkleTree;
+        });
     }
 
+    public MerkleTree updateItem(String id, int leafIndex, InputItem inputItem) {
+        if (inputItem.getItem() == null) {
+            throw new InvalidItemsException();
+        }
+
+        return writeMerkleTree(id, merkleTree -> {
+            int leafCount = merkleTree.getLeafCount();
+            if (leafIndex < 0 || leafIndex >= leafCount) {
+                throw new MerkleTreeLeafException();
+            }
+
+            TreeHasher treeHasher = TreeHasher.of(merkleTree.getAlgorithm(), merkleTree.getHashMode());
+            byte[] siblings = hashStore.readNodes(id, TreeLayout.siblings(leafCount, leafIndex));
+            byte[] path = merkleTreeBuilder.update(leafCount, leafIndex, inputItem.getItem(), siblings, treeHasher);
+            hashStore.writeNodes(id, TreeLayout.path(leafCount, leafIndex), path);
+
+            merkleTree.setRoot(Hex.encode(path, path.length - HASH_LENGTH, HASH_LENGTH));
+            return merkleTree;
+        });
+    }
+
+    /**
+     * Deletes a tree while holding its write lease, so that no append or update is writing chunks past the size used
+     * to find them. A tree being changed by another instance is rejected with a conflict, a missing tree succeeds.
+     */
     public void deleteMerkleTree(String id) {
-        merkleTreeRepository.deleteById(id);
+        Lock lock = writeLock(id);
+        lock.lock();
+        try {
+            String lease = UUID.randomUUID().toString();
+            Optional<MerkleTree> leased = merkleTreeRepository.acquireWriteLease(id, lease, merkleTreeProperties.getStorage().getWriteLease());
+            if (leased.isEmpty()) {
+                if (merkleTreeRepository.existsById(id)) {
+                    throw new MerkleTreeConflictException();
+                }
+                return;
+            }
+
+            if (!merkleTreeRepository.deleteWithWriteLease(id, lease)) {
+                throw new MerkleTreeConflictException();
+            }
+            hashStore.delete(id, leased.get().getLeafCount());
+        } finally {
+            merkleTreeCache.invalidate(id);
+            lock.unlock();
+        }
+    }
+
+    public MerkleTreeMetadata getMerkleTreeMetadata(String id) {
+        return findMetadata(id, merkleTreeCache.getIfPresent(id));
     }
 
     public String getMerkleTreeRoot(String id) {
-        MerkleTree merkleTree = merkleTreeRepository.findById(id).orElseThrow(MerkleTreeNotFoundException::new);
-        return merkleTree.getChildren().getHash();
+        MerkleTree cached = merkleTreeCache.getIfPresent(id);
+        MerkleTreeMetadata metadata = findMetadata(id, cached);
+        return metadata.getRoot();
     }
 
     public int getMerkleTreeHeight(String id) {
-        MerkleTree merkleTree = merkleTreeRepository.findById(id).orElseThrow(MerkleTreeNotFoundException::new);
-        return getMerkleTreeHeight(merkleTree.getChildren());
+        MerkleTree cached = merkleTreeCache.getIfPresent(id);
+        MerkleTreeMetadata metadata = findMetadata(id, cached);
+        return metadata.getHeight();
     }
 
-    public List<String> getMerkleTreeLevel(String id, int level) {
-        MerkleTree merkleTree = merkleTreeRepository.findById(id).orElseThrow(MerkleTreeNotFoundException::new);
-        int height = getMerkleTreeHeight(merkleTree.getChildren());
+    /**
+     * Returns the hashes of a level from {@code offset}, at most {@code limit} of them or all the following ones if
+     * null. The tree and the range are checked immediately, hashes are then read one chunk at a time as the stream
+     * is consumed.
+     */
+    public Stream<String> getMerkleTreeLevel(String id, int level, long offset, Long limit) {
+        return getMerkleTreeLevelHashes(id, level, offset, limit).flatMap(page -> toHexList(page).stream());
+    }
+
+    // Same as getMerkleTreeLevel, as pages of raw hashes laid out one after the other, views of the store if possible
+    public Stream<ByteBuffer> getMerkleTreeLevelHashes(String id, int level, long offset, Long limit) {
+        if (offset < 0 || (limit != null && limit < 0)) {
+            throw new InvalidRangeException("Offset and limit must be positive");
+        }
 
-        if (level >= height) {
+        MerkleTree cached = merkleTreeCache.getIfPresent(id);
+        MerkleTreeMetadata metadata = findMetadata(id, cached);
+        int height = metadata.getHeight();
+
+        if (level < 0 || level >= height) {
             throw new MerkleTreeLevelException();
         }
 
-        return getNodesOnLevel(merkleTree.getChildren(), level, new ArrayList<>());
+        long width = TreeLayout.levelWidth(metadata.getLeafCount(), level);
+        long from = Math.min(offset, width);
+        long to = limit == null || limit >= width - from ? width : from + limit;
+        int pageSize = merkleTreeProperties.getStorage().getChunkSize();
+
+        return LongStream.iterate(from, start -> start < to, start -> start + pageSize)
+                .mapToObj(start -> readLevelBuffer(id, cached, height - 1 - level, start, (int) Math.min(pageSize, to - start)));
     }
 
-    private String hashItem(String item) {
-        try {
-            MessageDigest messageDigest = MessageDigest.getInstance(HASH_ALGORITHM);
-            return bytesToHex(messageDigest.digest(item.getBytes(StandardCharsets.UTF_8)));
-        } catch (NoSuchAlgorithmException e) {
-            throw new HashException(HASH_ALGORITHM + " algorithm not found, can't hash anything");
+    // A node and its descendants down to depth levels below it, only their ranges of each level are read
+    public MerkleSubtree getMerkleSubtree(String id, int level, long index, int depth) {
+        if (depth < 0 || depth > MAX_SUBTREE_DEPTH) {
+            throw new InvalidRangeException("The depth must be between 0 and " + MAX_SUBTREE_DEPTH);
+        }
+
+        MerkleTree cached = merkleTreeCache.getIfPresent(id);
+        MerkleTreeMetadata metadata = findMetadata(id, cached);
+        int height = metadata.getHeight();
+
+        if (level < 0 || level >= height) {
+            throw new MerkleTreeLevelException();
+        }
+        if (index < 0 || index >= TreeLayout.levelWidth(metadata.getLeafCount(), level)) {
+            throw new MerkleTreeNodeException();
+        }
+
+        List<List<String>> levels = new ArrayList<>();
+        for (int descendantLevel = level; descendantLevel <= Math.min(height - 1, level + depth); descendantLevel++) {
+            int distance = descendantLevel - level;
+            long from = index << distance;
+            long to = Math.min((index + 1) << distance, TreeLayout.levelWidth(metadata.getLeafCount(), descendantLevel));
+            levels.add(toHexList(readLevel(id, cached, height - 1 - descendantLevel, from, (int) (to - from))));
+        }
+
+        return MerkleSubtree.builder()
+                .level(level)
+                .index(index)
+                .levels(levels)
+                .build();
+    }
+
+    /**
+     * Indices of the leaves that differ between two trees, in ascending order, including the leaves only one of them has.
+     * <p>
+     * Both trees are walked top-down one level at a time and subtrees whose hashes match are skipped, so that the nodes
+     * read grow with the number of changed leaves times the height rather than with the size of the trees. The leaves
+     * are found under one window subtree at a time, as the stream is consumed.
+     */
+    public LongStream diffMerkleTrees(String id, String otherId) {
+        MerkleTree cached = merkleTreeCache.getIfPresent(id);
+        MerkleTree otherCached = merkleTreeCache.getIfPresent(otherId);
+        MerkleTreeMetadata metadata = findMetadata(id, cached);
+        MerkleTreeMetadata otherMetadata = findMetadata(otherId, otherCached);
+
+        if (metadata.getAlgorithm() != otherMetadata.getAlgorithm() || metadata.getHashMode() != otherMetadata.getHashMode()) {
+            throw new MerkleTreeDiffException();
+        }
+
+        // Nodes of the smaller tree cover the same leaves as the nodes at the same position in the larger one
+        long leafCount = Math.min(metadata.getLeafCount(), otherMetadata.getLeafCount());
+        long otherLeafCount = Math.max(metadata.getLeafCount(), otherMetadata.getLeafCount());
+        Function<List<NodePosition>, byte[]> nodes = positions -> readNodes(id, cached, positions);
+        Function<List<NodePosition>, byte[]> otherNodes = positions -> readNodes(otherId, otherCached, positions);
+
+        int rootLevel = TreeLayout.height(leafCount) - 1;
+        int windowLevel = Math.min(rootLevel, DIFF_WINDOW_LEVEL);
+        long[] windows = diffNodes(nodes, otherNodes, leafCount, rootLevel, new long[]{0}, windowLevel);
+
+        // Window roots are already known to differ, only their children are compared
+        LongStream changedLeaves = windowLevel == 0 ? Arrays.stream(windows) : Arrays.stream(windows)
+                .flatMap(window -> Arrays.stream(diffNodes(nodes, otherNodes, leafCount, windowLevel - 1, children(new long[]{window}, leafCount, windowLevel), 0)));
+        return LongStream.concat(changedLeaves, LongStream.range(leafCount, otherLeafCount));
+    }
+
+    public MerkleProof getMerkleProof(String id, int leafIndex) {
+        MerkleTree cached = merkleTreeCache.getIfPresent(id);
+        MerkleTreeMetadata metadata = findMetadata(id, cached);
+
+        if (leafIndex < 0 || leafIndex >= metadata.getLeafCount()) {
+            throw new MerkleTreeLeafException();
+        }
+
+        return buildMerkleProof(metadata, cached, leafIndex);
+    }
+
+    public MerkleProof getMerkleProof(String id, String item) {
+        MerkleTree cached = merkleTreeCache.getIfPresent(id);
+        MerkleTreeMetadata metadata = findMetadata(id, cached);
+        byte[] leaf = TreeHasher.of(metadata.getAlgorithm(), metadata.getHashMode()).hashLeaf(item);
+        int pageSize = merkleTreeProperties.getStorage().getChunkSize();
+
+        // Leaves are scanned one chunk at a time
+        for (int from = 0; from < metadata.getLeafCount(); from += pageSize) {
+            int count = Math.min(pageSize, metadata.getLeafCount() - from);
+            byte[] leaves = readLevel(id, cached, 0, from, count);
+
+            for (int i = 0; i < count; i++) {
+                int offset = i * HASH_LENGTH;
+                if (Arrays.equals(leaves, offset, offset + HASH_LENGTH, leaf, 0, HASH_LENGTH)) {
+                    return buildMerkleProof(metadata, cached, from + i);
+                }
+            }
+        }
+
+        throw new MerkleTreeLeafException();
+    }
+
+    public boolean verifyMerkleProof(MerkleProof merkleProof) {
+        TreeHasher treeHasher = getTreeHasher(merkleProof.getAlgorithm(), merkleProof.getHashMode());
+
+        byte[] hash = decodeHash(merkleProof.getLeaf());
+        List<ProofStep> siblings = merkleProof.getSiblings() != null ? merkleProof.getSiblings() : List.of();
+
+        for (ProofStep sibling : siblings) {
+            byte[] siblingHash = decodeHash(sibling.getHash());
+            hash = sibling.getPosition() == ProofStep.Position.LEFT
+                    ? treeHasher.hashChildren(siblingHash, hash)
+                    : treeHasher.hashChildren(hash, siblingHash);
+        }
+
+        return Arrays.equals(hash, decodeHash(merkleProof.getRoot()));
+    }
+
+    public MerkleMultiProof getMerkleMultiProof(String id, InputLeaves inputLeaves) {
+        List<Integer> leafIndices = inputLeaves.getLeafIndices();
+        if (leafIndices == null || leafIndices.isEmpty()) {
+            throw new InvalidProofException("At least one leaf index is required");
         }
+
+        MerkleTree cached = merkleTreeCache.getIfPresent(id);
+        MerkleTreeMetadata metadata = findMetadata(id, cached);
+        int[] indices = leafIndices.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+
+        if (indices[0] < 0 || indices[indices.length - 1] >= metadata.getLeafCount()) {
+            throw new MerkleTreeLeafException();
+        }
+
+        // The positions of the proof only depend on the indices, all its nodes are then read at once
+        List<NodePosition> positions = Arrays.stream(indices).mapToObj(index -> new NodePosition(0, index)).collect(Collectors.toList());
+
+        int level = 0;
+        int length = metadata.getLeafCount();
+        int[] known = indices;
+
+        while (length != 1) {
+            int[] parents = new int[known.length];
+            int parentCount = 0;
+
+            for (int i = 0; i < known.length; i++) {
+                int sibling = known[i] ^ 1;
+
+                if (i + 1 < known.length && known[i + 1] == sibling) {
+                    // Both children are known, the sibling is not needed
+                    i++;
+                } else if (sibling < length) {
+                    positions.add(new NodePosition(level, sibling));
+                }
+                parents[parentCount++] = known[i] / 2;
+            }
+
+            known = Arrays.copyOf(parents, parentCount);
+            level++;
+            length = (length + 1) / 2;
+        }
+
+        List<String> hashes = toHexList(readNodes(id, cached, positions));
+        List<String> leaves = new ArrayList<>(hashes.subList(0, indices.length));
+        List<String> proof = new ArrayList<>(hashes.subList(indices.length, hashes.size()));
+
+        return MerkleMultiProof.builder()
+                .root(metadata.getRoot())
+                .leafCount(metadata.getLeafCount())
+                .leafIndices(Arrays.stream(indices).boxed().collect(Collectors.toList()))
+                .leaves(leaves)
+                .algorithm(metadata.getAlgorithm())
+                .hashMode(metadata.getHashMode())
+                .proof(proof)
+                .build();
     }
 
-    private int getMerkleTreeHeight(Node node) {
-        if (node == null) {
-            return 0;
+    public boolean verifyMerkleMultiProof(MerkleMultiProof merkleMultiProof) {
+        List<Integer> leafIndices = merkleMultiProof.getLeafIndices();
+        List<String> leaves = merkleMultiProof.getLeaves();
+        List<String> proof = merkleMultiProof.getProof() != null ? merkleMultiProof.getProof() : List.of();
+
+        if (leafIndices == null || leaves == null || leafIndices.isEmpty() || leafIndices.size() != leaves.size()) {
+            throw new InvalidProofException("Each leaf index needs exactly one leaf hash");
+        }
+
+        int[] known = leafIndices.stream().mapToInt(Integer::intValue).toArray();
+        for (int i = 0; i < known.length; i++) {
+            if (known[i] < 0 || known[i] >= merkleMultiProof.getLeafCount() || (i > 0 && known[i] <= known[i - 1])) {
+                throw new InvalidProofException("Leaf indices must be sorted, unique and lower than the leaf count");
+            }
         }
 
-        int height = 0;
-        Queue<Node> queue = new LinkedList<>();
-        queue.add(node);
+        TreeHasher treeHasher = getTreeHasher(merkleMultiProof.getAlgorithm(), merkleMultiProof.getHashMode());
+        byte[][] knownHashes = leaves.stream().map(MerkleTreeService::decodeHash).toArray(byte[][]::new);
+        int proofIndex = 0;
+        int length = merkleMultiProof.getLeafCount();
+
+        while (length != 1) {
+            int[] parents = new int[known.length];
+            byte[][] parentHashes = new byte[known.length][];
+            int parentCount = 0;
+
+            for (int i = 0; i < known.length; i++) {
+                int sibling = known[i] ^ 1;
+                byte[] hash = knownHashes[i];
+
+                if (i + 1 < known.length && known[i + 1] == sibling) {
+                    hash = treeHasher.hashChildren(hash, knownHashes[i + 1]);
+                    i++;
+                } else if (sibling < length) {
+                    if (proofIndex == proof.size()) {
+                        return false;
+                    }
+                    byte[] siblingHash = decodeHash(proof.get(proofIndex++));
+                    hash = sibling < known[i] ? treeHasher.hashChildren(siblingHash, hash) : treeHasher.hashChildren(hash, siblingHash);
+                }
+                parents[parentCount] = known[i] / 2;
+                parentHashes[parentCount++] = hash;
+            }
+
+            known = Arrays.copyOf(parents, parentCount);
+            knownHashes = Arrays.copyOf(parentHashes, parentCount);
+            length = (length + 1) / 2;
+        }
 
-        while (true) {
-            int nodeCount = queue.size();
+        return proofIndex == proof.size() && Arrays.equals(knownHashes[0], decodeHash(merkleMultiProof.getRoot()));
+    }
 
-            if (nodeCount == 0) {
-                return height;
+    // Follows the given nodes of a bottom-up level down to level to, through the children of those that differ
+    private static long[] diffNodes(Function<List<NodePosition>, byte[]> nodes, Function<List<NodePosition>, byte[]> otherNodes,
+                                    long leafCount, int from, long[] indices, int to) {
+        for (int level = from; ; level--) {
+            List<NodePosition> positions = new ArrayList<>(indices.length);
+            for (long index : indices) {
+                positions.add(new NodePosition(level, index));
+            }
+            byte[] hashes = nodes.apply(positions);
+            byte[] otherHashes = otherNodes.apply(positions);
+
+            LongStream.Builder changed = LongStream.builder();
+            for (int i = 0; i < indices.length; i++) {
+                int offset = i * HASH_LENGTH;
+                if (!Arrays.equals(hashes, offset, offset + HASH_LENGTH, otherHashes, offset, offset + HASH_LENGTH)) {
+                    changed.add(indices[i]);
+                }
             }
+            if (level == to) {
+                return changed.build().toArray();
+            }
+
+            indices = children(changed.build().toArray(), leafCount, level);
+            if (indices.length == 0) {
+                return indices;
+            }
+        }
+    }
+
+    // Children of the given nodes of a bottom-up level, a promoted node only has one
+    private static long[] children(long[] indices, long leafCount, int level) {
+        long childWidth = TreeLayout.bottomUpWidth(leafCount, level - 1);
+        return Arrays.stream(indices)
+                .flatMap(index -> LongStream.of(2 * index, 2 * index + 1))
+                .filter(child -> child < childWidth)
+                .toArray();
+    }
+
+    // Hashes the items of a new tree, without storing it
+    private MerkleTree buildMerkleTree(InputItems inputItems, BuildProgress progress) {
+        List<String> items = inputItems == null ? null : inputItems.getItems();
+        if (items == null || items.isEmpty()) {
+            throw new InvalidItemsException();
+        }
 
-            height++;
+        MerkleTreeProperties.Hash hashProperties = merkleTreeProperties.getHash();
+        HashAlgorithm algorithm = inputItems.getAlgorithm() != null ? inputItems.getAlgorithm() : hashProperties.getAlgorithm();
+        HashMode hashMode = inputItems.getHashMode() != null ? inputItems.getHashMode() : hashProperties.getMode();
+        byte[] hashes = merkleTreeBuilder.build(items, TreeHasher.of(algorithm, hashMode), progress);
+
+        return MerkleTree.builder()
+                .id(new ObjectId().toHexString())
+                .leafCount(items.size())
+                .height(TreeLayout.height(items.size()))
+                .algorithm(algorithm)
+                .hashMode(hashMode)
+                .root(Hex.encode(hashes, hashes.length - HASH_LENGTH, HASH_LENGTH))
+                .createdAt(Instant.now())
+                .hashes(hashes)
+                .build();
+    }
 
-            while (nodeCount > 0) {
-                // Remove all nodes of current level from the queue
-                Node newNode = queue.peek();
-                queue.remove();
+    private MerkleTree findMerkleTree(String id) {
+        return merkleTreeRepository.findById(id).orElseThrow(MerkleTreeNotFoundException::new);
+    }
 
-                // Add all nodes of next level to queue
-                if (newNode != null && newNode.getLeftNode() != null) {
-                    queue.add(newNode.getLeftNode());
+    private MerkleTreeMetadata findMetadata(String id) {
+        return merkleTreeRepository.findMetadataById(id).orElseThrow(MerkleTreeNotFoundException::new);
+    }
+
+    private MerkleTreeMetadata findMetadata(String id, MerkleTree cached) {
+        return cached != null ? MerkleTreeMetadata.of(cached) : findMetadata(id);
+    }
+
+    private MerkleTree loadMerkleTree(String id) {
+        MerkleTree merkleTree = findMerkleTree(id);
+        checkWholeTreeSize(merkleTree.getLeafCount());
+        merkleTree.setHashes(hashStore.readTree(id, merkleTree.getLeafCount()));
+        return merkleTree;
+    }
+
+    private void checkWholeTreeSize(long leafCount) {
+        long maxSize = Math.min(merkleTreeProperties.getStorage().getMaxWholeTreeSize().toBytes(), Integer.MAX_VALUE);
+        if (TreeLayout.nodeCount(leafCount) * HASH_LENGTH > maxSize) {
+            throw new MerkleTreeTooLargeException(maxSize);
+        }
+    }
+
+    /**
+     * Changes the hashes of a tree while holding its write lease, so that two appends or updates never read the same
+     * header nor write the same chunks. Writers of this instance wait for each other, a tree leased by another instance
+     * is rejected with a conflict.
+     */
+    private MerkleTree writeMerkleTree(String id, UnaryOperator<MerkleTree> write) {
+        Lock lock = writeLock(id);
+        lock.lock();
+        try {
+            String lease = UUID.randomUUID().toString();
+            MerkleTree merkleTree = merkleTreeRepository.acquireWriteLease(id, lease, merkleTreeProperties.getStorage().getWriteLease())
+                    .orElseThrow(() -> merkleTreeRepository.existsById(id) ? new MerkleTreeConflictException() : new MerkleTreeNotFoundException());
+
+            boolean committed = false;
+            try {
+                MerkleTree written = write.apply(merkleTree);
+                committed = merkleTreeRepository.commitWriteLease(written, lease);
+                if (!committed) {
+                    // The lease expired and another writer took the tree over, it may have overwritten these hashes
+                    throw new MerkleTreeConflictException();
                 }
-                if (newNode != null && newNode.getRightNode() != null) {
-                    queue.add(newNode.getRightNode());
+                return written;
+            } finally {
+                if (!committed) {
+                    merkleTreeRepository.abandonWriteLease(id, lease);
                 }
+                // Also drops the entries loaded while the tree was being written
+                merkleTreeCache.invalidate(id);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Lock writeLock(String id) {
+        return writeLocks[Math.floorMod(id.hashCode(), writeLocks.length)];
+    }
+
+    // Reads count nodes of a bottom-up level, from the cached tree if any
+    private byte[] readLevel(String id, MerkleTree cached, int level, long from, int count) {
+        return cached == null ? hashStore.read(id, level, from, count) : copyLevel(cached, level, from, count);
+    }
+
+    private ByteBuffer readLevelBuffer(String id, MerkleTree cached, int level, long from, int count) {
+        if (cached == null) {
+            return hashStore.readBuffer(id, level, from, count);
+        }
+
+        long offset = TreeLayout.levelOffset(cached.getLeafCount(), cached.getHeight() - 1 - level) + from;
+        return ByteBuffer.wrap(cached.getHashes(), Math.toIntExact(offset * HASH_LENGTH), count * HASH_LENGTH).slice().asReadOnlyBuffer();
+    }
+
+    private byte[] readNodes(String id, MerkleTree cached, List<NodePosition> positions) {
+        return cached == null ? hashStore.readNodes(id, positions) : copyNodes(cached, positions);
+    }
+
+    // Copies count nodes of a bottom-up level out of a cached tree
+    static byte[] copyLevel(MerkleTree cached, int level, long from, int count) {
+        long offset = TreeLayout.levelOffset(cached.getLeafCount(), cached.getHeight() - 1 - level) + from;
+        return Arrays.copyOfRange(cached.getHashes(), Math.toIntExact(offset * HASH_LENGTH), Math.toIntExact((offset + count) * HASH_LENGTH));
+    }
+
+    static byte[] copyNodes(MerkleTree cached, List<NodePosition> positions) {
+        byte[] nodes = new byte[positions.size() * HASH_LENGTH];
+        for (int i = 0; i < positions.size(); i++) {
+            NodePosition position = positions.get(i);
+            long offset = TreeLayout.levelOffset(cached.getLeafCount(), cached.getHeight() - 1 - position.getLevel()) + position.getIndex();
+            System.arraycopy(cached.getHashes(), Math.toIntExact(offset * HASH_LENGTH), nodes, i * HASH_LENGTH, HASH_LENGTH);
+        }
+        return nodes;
+    }
+
+    private MerkleProof buildMerkleProof(MerkleTreeMetadata metadata, MerkleTree cached, int leafIndex) {
+        List<NodePosition> positions = proofPositions(metadata.getLeafCount(), leafIndex);
+        return toMerkleProof(metadata, leafIndex, positions, readNodes(metadata.getId(), cached, positions));
+    }
+
+    // The leaf followed by its siblings, a promoted node has no sibling on its level and is skipped
+    static List<NodePosition> proofPositions(long leafCount, int leafIndex) {
+        List<NodePosition> positions = new ArrayList<>();
+        positions.add(new NodePosition(0, leafIndex));
+        positions.addAll(TreeLayout.siblings(leafCount, leafIndex));
+        return positions;
+    }
+
+    static MerkleProof toMerkleProof(MerkleTreeMetadata metadata, int leafIndex, List<NodePosition> positions, byte[] hashes) {
+        List<ProofStep> siblings = new ArrayList<>(metadata.getHeight());
+
+        for (int i = 1; i < positions.size(); i++) {
+            // A left sibling always has an even index
+            siblings.add(ProofStep.builder()
+                    .hash(Hex.encode(hashes, i * HASH_LENGTH, HASH_LENGTH))
+                    .position(positions.get(i).getIndex() % 2 == 0 ? ProofStep.Position.LEFT : ProofStep.Position.RIGHT)
+                    .build());
+        }
+
+        return MerkleProof.builder()
+                .root(metadata.getRoot())
+                .leafIndex(leafIndex)
+                .leaf(Hex.encode(hashes, 0, HASH_LENGTH))
+                .algorithm(metadata.getAlgorithm())
+                .hashMode(metadata.getHashMode())
+                .siblings(siblings)
+                .build();
+    }
+
+    private static void readJsonArray(InputStream inputStream, StreamingTreeBuilder streamingTreeBuilder) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new InvalidItemsException("Items must be sent as a JSON array of strings");
+            }
+
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.VALUE_STRING) {
+                streamingTreeBuilder.add(parser.getText());
+            }
 
-                nodeCount--;
+            if (token != JsonToken.END_ARRAY) {
+                throw new InvalidItemsException("Items must be sent as a JSON array of strings");
             }
         }
     }
 
-    private List<String> getNodesOnLevel(Node node, int level, List<String> list) {
-        if (node == null) {
-            return Collections.emptyList();
+    private static void readLines(InputStream inputStream, boolean json, StreamingTreeBuilder streamingTreeBuilder) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                streamingTreeBuilder.add(json ? parseJsonString(line) : line);
+            }
         }
+    }
 
-        if (level == 0) {
-            list.add(node.getHash());
-        } else {
-            getNodesOnLevel(node.getLeftNode(), level - 1, list);
-            getNodesOnLevel(node.getRightNode(), level - 1, list);
+    private static String parseJsonString(String line) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(line)) {
+            if (parser.nextToken() != JsonToken.VALUE_STRING) {
+                throw new InvalidItemsException("Each NDJSON line must be a JSON string");
+            }
+            return parser.getText();
         }
+    }
 
-        return list;
+    private TreeHasher getTreeHasher(HashAlgorithm algorithm, HashMode hashMode) {
+        MerkleTreeProperties.Hash hashProperties = merkleTreeProperties.getHash();
+        return TreeHasher.of(
+                algorithm != null ? algorithm : hashProperties.getAlgorithm(),
+                hashMode != null ? hashMode : hashProperties.getMode());
+    }
+
+    static List<String> toHexList(byte[] hashes) {
+        List<String> hexHashes = new ArrayList<>(hashes.length / HASH_LENGTH);
+        for (int offset = 0; offset < hashes.length; offset += HASH_LENGTH) {
+            hexHashes.add(Hex.encode(hashes, offset, HASH_LENGTH));
+        }
+        return hexHashes;
+    }
+
+    static List<String> toHexList(ByteBuffer hashes) {
+        List<String> hexHashes = new ArrayList<>(hashes.remaining() / HASH_LENGTH);
+        byte[] hash = new byte[HASH_LENGTH];
+        while (hashes.remaining() >= HASH_LENGTH) {
+            hashes.get(hash);
+            hexHashes.add(Hex.encode(hash));
+        }
+        return hexHashes;
+    }
+
+    static byte[] decodeHash(String hash) {
+        if (hash == null || hash.length() != 2 * HASH_LENGTH) {
+            throw new InvalidProofException("Hashes must be " + 2 * HASH_LENGTH + " hexadecimal characters long");
+        }
+
+        try {
+            return Hex.decode(hash);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidProofException(e.getMessage());
+        }
     }
 }
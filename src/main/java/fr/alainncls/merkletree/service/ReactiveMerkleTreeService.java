@@ -0,0 +1,164 @@
+package fr.alainncls.merkletree.service;
+
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.exception.InvalidItemsException;
+import fr.alainncls.merkletree.exception.InvalidPageException;
+import fr.alainncls.merkletree.exception.InvalidRangeException;
+import fr.alainncls.merkletree.exception.MerkleTreeLeafException;
+import fr.alainncls.merkletree.exception.MerkleTreeLevelException;
+import fr.alainncls.merkletree.exception.MerkleTreeNotFoundException;
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.hash.Hex;
+import fr.alainncls.merkletree.hash.TreeHasher;
+import fr.alainncls.merkletree.model.InputItems;
+import fr.alainncls.merkletree.model.MerkleProof;
+import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.model.MerkleTreeMetadata;
+import fr.alainncls.merkletree.model.NodePosition;
+import fr.alainncls.merkletree.model.TreeLayout;
+import fr.alainncls.merkletree.repository.ReactiveHashStore;
+import fr.alainncls.merkletree.repository.ReactiveMerkleTreeRepository;
+import lombok.AllArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Instant;
+import java.util.List;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+/**
+ * Non-blocking variant of the read, verification and creation paths of {@link MerkleTreeService}: Mongo is accessed
+ * through the reactive driver and hashing runs on the bounded hash scheduler, so no request thread waits on either.
+ */
+@Service
+@ConditionalOnProperty(name = "merkletree.storage.type", havingValue = "CHUNKS", matchIfMissing = true)
+@AllArgsConstructor
+public class ReactiveMerkleTreeService {
+
+    private final ReactiveMerkleTreeRepository reactiveMerkleTreeRepository;
+    private final ReactiveHashStore reactiveHashStore;
+    private final MerkleTreeCache merkleTreeCache;
+    private final MerkleTreeBuilder merkleTreeBuilder;
+    private final MerkleTreeService merkleTreeService;
+    private final MerkleTreeProperties merkleTreeProperties;
+    private final MerkleTreeMetrics merkleTreeMetrics;
+    private final Scheduler hashScheduler;
+
+    public Flux<MerkleTreeMetadata> getMerkleTrees(String after, int limit) {
+        if (limit < 1 || limit > MerkleTreeService.MAX_PAGE_SIZE) {
+            return Flux.error(new InvalidPageException(MerkleTreeService.MAX_PAGE_SIZE));
+        }
+
+        Pageable pageable = PageRequest.of(0, limit, Sort.by("id"));
+        return after == null
+                ? reactiveMerkleTreeRepository.findAllBy(pageable)
+                : reactiveMerkleTreeRepository.findByIdGreaterThan(after, pageable);
+    }
+
+    public Mono<MerkleTreeMetadata> getMerkleTreeMetadata(String id) {
+        MerkleTree cached = merkleTreeCache.getIfPresent(id);
+        if (cached != null) {
+            return Mono.just(MerkleTreeMetadata.of(cached));
+        }
+
+        return reactiveMerkleTreeRepository.findMetadataById(id)
+                .switchIfEmpty(Mono.error(MerkleTreeNotFoundException::new));
+    }
+
+    public Mono<String> getMerkleTreeRoot(String id) {
+        return getMerkleTreeMetadata(id).map(MerkleTreeMetadata::getRoot);
+    }
+
+    public Mono<Integer> getMerkleTreeHeight(String id) {
+        return getMerkleTreeMetadata(id).map(MerkleTreeMetadata::getHeight);
+    }
+
+    // Same range rules as MerkleTreeService.getMerkleTreeLevel, hashes are emitted as their chunks are read
+    public Flux<String> getMerkleTreeLevel(String id, int level, long offset, Long limit) {
+        if (offset < 0 || (limit != null && limit < 0)) {
+            return Flux.error(new InvalidRangeException("Offset and limit must be positive"));
+        }
+
+        return getMerkleTreeMetadata(id).flatMapMany(metadata -> {
+            int height = metadata.getHeight();
+            if (level < 0 || level >= height) {
+                return Flux.error(new MerkleTreeLevelException());
+            }
+
+            long width = TreeLayout.levelWidth(metadata.getLeafCount(), level);
+            long from = Math.min(offset, width);
+            long to = limit == null || limit >= width - from ? width : from + limit;
+
+            MerkleTree cached = merkleTreeCache.getIfPresent(id);
+            Flux<byte[]> pages = cached != null
+                    ? Flux.just(MerkleTreeService.copyLevel(cached, height - 1 - level, from, Math.toIntExact(to - from)))
+                    : reactiveHashStore.read(id, height - 1 - level, from, to - from);
+            return pages.flatMapIterable(MerkleTreeService::toHexList);
+        });
+    }
+
+    public Mono<MerkleProof> getMerkleProof(String id, int leafIndex) {
+        return getMerkleTreeMetadata(id).flatMap(metadata -> {
+            if (leafIndex < 0 || leafIndex >= metadata.getLeafCount()) {
+                return Mono.error(new MerkleTreeLeafException());
+            }
+
+            List<NodePosition> positions = MerkleTreeService.proofPositions(metadata.getLeafCount(), leafIndex);
+            MerkleTree cached = merkleTreeCache.getIfPresent(id);
+            Mono<byte[]> hashes = cached != null
+                    ? Mono.just(MerkleTreeService.copyNodes(cached, positions))
+                    : reactiveHashStore.readNodes(id, positions);
+            return hashes.map(nodes -> MerkleTreeService.toMerkleProof(metadata, leafIndex, positions, nodes));
+        });
+    }
+
+    public Mono<Boolean> verifyMerkleProof(MerkleProof merkleProof) {
+        return Mono.fromCallable(() -> merkleTreeService.verifyMerkleProof(merkleProof)).subscribeOn(hashScheduler);
+    }
+
+    // The tree is hashed on the hash scheduler, its chunks then its header are written without blocking
+    public Mono<MerkleTree> generateMerkleTree(InputItems inputItems) {
+        List<String> items = inputItems.getItems();
+        if (items == null || items.isEmpty()) {
+            return Mono.error(new InvalidItemsException());
+        }
+
+        MerkleTreeProperties.Hash hashProperties = merkleTreeProperties.getHash();
+        HashAlgorithm algorithm = inputItems.getAlgorithm() != null ? inputItems.getAlgorithm() : hashProperties.getAlgorithm();
+        HashMode hashMode = inputItems.getHashMode() != null ? inputItems.getHashMode() : hashProperties.getMode();
+        String id = new ObjectId().toHexString();
+
+        return Mono.fromCallable(() -> merkleTreeBuilder.build(items, TreeHasher.of(algorithm, hashMode)))
+                .subscribeOn(hashScheduler)
+                .flatMap(hashes -> reactiveHashStore.writeTree(id, items.size(), hashes)
+                        .then(reactiveMerkleTreeRepository.save(MerkleTree.builder()
+                                .id(id)
+                                .leafCount(items.size())
+                                .height(TreeLayout.height(items.size()))
+                                .algorithm(algorithm)
+                                .hashMode(hashMode)
+                                .root(Hex.encode(hashes, hashes.length - HASH_LENGTH, HASH_LENGTH))
+                                .createdAt(Instant.now())
+                                .build()))
+                        // Without its header a tree is never read, its chunks would only take space
+                        .onErrorResume(e -> reactiveHashStore.delete(id, items.size())
+                                .onErrorResume(ignored -> Mono.empty())
+                                .then(Mono.error(e)))
+                        .map(merkleTree -> {
+                            merkleTree.setHashes(hashes);
+                            merkleTreeCache.put(merkleTree);
+                            merkleTreeMetrics.treeStored(merkleTree.getLeafCount());
+                            return merkleTree;
+                        }));
+    }
+}
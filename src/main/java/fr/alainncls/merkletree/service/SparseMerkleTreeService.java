@@ -0,0 +1,227 @@
+package fr.alainncls.merkletree.service;
+
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.exception.InvalidItemsException;
+import fr.alainncls.merkletree.exception.InvalidSparseKeyException;
+import fr.alainncls.merkletree.exception.MerkleTreeConflictException;
+import fr.alainncls.merkletree.exception.SparseMerkleTreeNotFoundException;
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.hash.Hex;
+import fr.alainncls.merkletree.hash.SparseTreeHasher;
+import fr.alainncls.merkletree.hash.TreeHasher;
+import fr.alainncls.merkletree.model.InputItem;
+import fr.alainncls.merkletree.model.InputSparseMerkleTree;
+import fr.alainncls.merkletree.model.SparseMerkleProof;
+import fr.alainncls.merkletree.model.SparseMerkleTree;
+import fr.alainncls.merkletree.model.SparseProofStep;
+import fr.alainncls.merkletree.repository.SparseMerkleNodeRepository;
+import fr.alainncls.merkletree.repository.SparseMerkleTreeRepository;
+import lombok.AllArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+import static fr.alainncls.merkletree.hash.SparseTreeHasher.DEPTH;
+import static fr.alainncls.merkletree.hash.SparseTreeHasher.KEY_LENGTH;
+
+/**
+ * Key-value sparse Merkle trees, whose size grows with the number of keys rather than with the 2^256 possible ones.
+ * <p>
+ * Any lookup, proof or update reads the nodes along a single key in one query, and hashes at most 256 nodes. Adding a
+ * key to a subtree holding another one hashes up to 511: both keys are hashed up from their leaves to where they split.
+ * <p>
+ * Changes of a tree hold its write lease, as appends and updates of Merkle trees do: a tree being changed on another
+ * instance is rejected with a conflict.
+ */
+@Service
+@AllArgsConstructor
+public class SparseMerkleTreeService {
+
+    // Trees written at the same time on an instance share one of these locks
+    private static final int WRITE_LOCKS = 64;
+
+    private final SparseMerkleTreeRepository sparseMerkleTreeRepository;
+    private final SparseMerkleNodeRepository sparseMerkleNodeRepository;
+    private final MerkleTreeProperties merkleTreeProperties;
+    // Changes of the same tree on this instance wait for each other rather than conflict
+    private final Lock[] writeLocks = IntStream.range(0, WRITE_LOCKS).mapToObj(i -> new ReentrantLock()).toArray(Lock[]::new);
+
+    public SparseMerkleTree createSparseMerkleTree(InputSparseMerkleTree inputSparseMerkleTree) {
+        MerkleTreeProperties.Hash hashProperties = merkleTreeProperties.getHash();
+        HashAlgorithm algorithm = inputSparseMerkleTree != null && inputSparseMerkleTree.getAlgorithm() != null ? inputSparseMerkleTree.getAlgorithm() : hashProperties.getAlgorithm();
+        HashMode hashMode = inputSparseMerkleTree != null && inputSparseMerkleTree.getHashMode() != null ? inputSparseMerkleTree.getHashMode() : hashProperties.getMode();
+
+        SparseMerkleTree sparseMerkleTree = SparseMerkleTree.builder()
+                .id(new ObjectId().toHexString())
+                .size(0)
+                .algorithm(algorithm)
+                .hashMode(hashMode)
+                .root(Hex.encode(SparseTreeHasher.of(TreeHasher.of(algorithm, hashMode)).defaultHash(DEPTH)))
+                .createdAt(Instant.now())
+                .build();
+        return sparseMerkleTreeRepository.save(sparseMerkleTree);
+    }
+
+    public SparseMerkleTree getSparseMerkleTree(String id) {
+        return sparseMerkleTreeRepository.findById(id).orElseThrow(SparseMerkleTreeNotFoundException::new);
+    }
+
+    public SparseMerkleTree putEntry(String id, String key, InputItem inputItem) {
+        if (inputItem == null || inputItem.getItem() == null) {
+            throw new InvalidItemsException("A value is required");
+        }
+
+        byte[] decodedKey = decodeKey(key);
+        return writeSparseMerkleTree(id, sparseMerkleTree -> {
+            SparseTreeHasher sparseTreeHasher = getSparseTreeHasher(sparseMerkleTree);
+            SparsePath path = readPath(sparseMerkleTree, decodedKey, sparseTreeHasher);
+
+            boolean added = path.put(sparseTreeHasher.getTreeHasher().hashLeaf(inputItem.getItem()));
+            return save(sparseMerkleTree, path, added ? 1 : 0);
+        });
+    }
+
+    public SparseMerkleTree removeEntry(String id, String key) {
+        byte[] decodedKey = decodeKey(key);
+        return writeSparseMerkleTree(id, sparseMerkleTree -> {
+            SparsePath path = readPath(sparseMerkleTree, decodedKey, getSparseTreeHasher(sparseMerkleTree));
+
+            return path.remove() ? save(sparseMerkleTree, path, -1) : sparseMerkleTree;
+        });
+    }
+
+    // Proves either the value of the key or, with no leaf, that the key is absent
+    public SparseMerkleProof getSparseMerkleProof(String id, String key) {
+        SparseMerkleTree sparseMerkleTree = getSparseMerkleTree(id);
+        SparsePath path = readPath(sparseMerkleTree, decodeKey(key), getSparseTreeHasher(sparseMerkleTree));
+        byte[] leaf = path.leaf();
+
+        return SparseMerkleProof.builder()
+                .root(Hex.encode(path.root()))
+                .key(key.toLowerCase())
+                .leaf(leaf != null ? Hex.encode(leaf) : null)
+                .algorithm(sparseMerkleTree.getAlgorithm())
+                .hashMode(sparseMerkleTree.getHashMode())
+                .siblings(path.proof())
+                .build();
+    }
+
+    public boolean verifySparseMerkleProof(SparseMerkleProof sparseMerkleProof) {
+        MerkleTreeProperties.Hash hashProperties = merkleTreeProperties.getHash();
+        SparseTreeHasher sparseTreeHasher = SparseTreeHasher.of(TreeHasher.of(
+                sparseMerkleProof.getAlgorithm() != null ? sparseMerkleProof.getAlgorithm() : hashProperties.getAlgorithm(),
+                sparseMerkleProof.getHashMode() != null ? sparseMerkleProof.getHashMode() : hashProperties.getMode()));
+
+        byte[] key = decodeKey(sparseMerkleProof.getKey());
+        byte[] hash = sparseMerkleProof.getLeaf() != null ? MerkleTreeService.decodeHash(sparseMerkleProof.getLeaf()) : sparseTreeHasher.defaultHash(0);
+        List<SparseProofStep> siblings = sparseMerkleProof.getSiblings() != null ? sparseMerkleProof.getSiblings() : List.of();
+
+        // Siblings must be ordered by height, the missing ones are empty subtrees
+        int next = 0;
+        for (int height = 0; height < DEPTH; height++) {
+            byte[] sibling = next < siblings.size() && siblings.get(next).getHeight() == height
+                    ? MerkleTreeService.decodeHash(siblings.get(next++).getHash())
+                    : sparseTreeHasher.defaultHash(height);
+            hash = sparseTreeHasher.hashParent(key, DEPTH - height, hash, sibling);
+        }
+
+        return next == siblings.size() && Arrays.equals(hash, MerkleTreeService.decodeHash(sparseMerkleProof.getRoot()));
+    }
+
+    // The header is deleted while holding the lease, so that no change is writing nodes at the same time
+    public void deleteSparseMerkleTree(String id) {
+        Lock lock = writeLock(id);
+        lock.lock();
+        try {
+            String lease = UUID.randomUUID().toString();
+            acquireWriteLease(id, lease);
+            if (!sparseMerkleTreeRepository.deleteWithWriteLease(id, lease)) {
+                throw new MerkleTreeConflictException();
+            }
+            sparseMerkleNodeRepository.deleteByIdMatching("^" + id + ":");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Applies a change to the tree while holding its write lease, the lease is released whatever the outcome
+    private SparseMerkleTree writeSparseMerkleTree(String id, UnaryOperator<SparseMerkleTree> write) {
+        Lock lock = writeLock(id);
+        lock.lock();
+        try {
+            String lease = UUID.randomUUID().toString();
+            SparseMerkleTree sparseMerkleTree = acquireWriteLease(id, lease);
+            boolean committed = false;
+            try {
+                SparseMerkleTree written = write.apply(sparseMerkleTree);
+                committed = sparseMerkleTreeRepository.commitWriteLease(written, lease);
+                if (!committed) {
+                    // The lease expired and another writer took the tree over, it may have overwritten these nodes
+                    throw new MerkleTreeConflictException();
+                }
+                return written;
+            } finally {
+                if (!committed) {
+                    sparseMerkleTreeRepository.abandonWriteLease(id, lease);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private SparseMerkleTree acquireWriteLease(String id, String lease) {
+        return sparseMerkleTreeRepository.acquireWriteLease(id, lease, merkleTreeProperties.getStorage().getWriteLease())
+                .orElseThrow(() -> sparseMerkleTreeRepository.existsById(id) ? new MerkleTreeConflictException() : new SparseMerkleTreeNotFoundException());
+    }
+
+    private Lock writeLock(String id) {
+        return writeLocks[Math.floorMod(id.hashCode(), writeLocks.length)];
+    }
+
+    private SparsePath readPath(SparseMerkleTree sparseMerkleTree, byte[] key, SparseTreeHasher sparseTreeHasher) {
+        SparsePath path = new SparsePath(sparseMerkleTree.getId(), key, sparseTreeHasher);
+        path.load(sparseMerkleNodeRepository.findAllById(path.ids()));
+        return path;
+    }
+
+    // Nodes are written before the header is committed, so that its root is never ahead of them
+    private SparseMerkleTree save(SparseMerkleTree sparseMerkleTree, SparsePath path, long sizeChange) {
+        if (!path.getDeleted().isEmpty()) {
+            sparseMerkleNodeRepository.deleteAllById(path.getDeleted());
+        }
+        if (!path.getSaved().isEmpty()) {
+            sparseMerkleNodeRepository.saveAll(path.getSaved());
+        }
+
+        return sparseMerkleTree.toBuilder()
+                .size(sparseMerkleTree.getSize() + sizeChange)
+                .root(Hex.encode(path.root()))
+                .build();
+    }
+
+    private static SparseTreeHasher getSparseTreeHasher(SparseMerkleTree sparseMerkleTree) {
+        return SparseTreeHasher.of(TreeHasher.of(sparseMerkleTree.getAlgorithm(), sparseMerkleTree.getHashMode()));
+    }
+
+    private static byte[] decodeKey(String key) {
+        if (key == null || key.length() != 2 * KEY_LENGTH) {
+            throw new InvalidSparseKeyException();
+        }
+
+        try {
+            return Hex.decode(key);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidSparseKeyException();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package fr.alainncls.merkletree.service;
+
+import fr.alainncls.merkletree.hash.Hex;
+import fr.alainncls.merkletree.hash.SparseTreeHasher;
+import fr.alainncls.merkletree.model.SparseMerkleNode;
+import fr.alainncls.merkletree.model.SparseProofStep;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static fr.alainncls.merkletree.hash.SparseTreeHasher.DEPTH;
+
+/**
+ * The nodes of a sparse Merkle tree along the path of a key, with their siblings, which are all it takes to look up,
+ * prove, insert or remove that key.
+ * <p>
+ * The nodes are read at once by ID, changes are applied in place and collected so that they are written back in bulk.
+ * The path goes down through internal nodes until it reaches the leaf subtree holding a single key, or an empty one.
+ */
+class SparsePath {
+
+    private final byte[] key;
+    private final SparseTreeHasher sparseTreeHasher;
+
+    // Nodes at each depth along the key and their siblings, null when empty, the root has no sibling
+    private final String[] pathIds = new String[DEPTH + 1];
+    private final String[] siblingIds = new String[DEPTH + 1];
+    private final SparseMerkleNode[] path = new SparseMerkleNode[DEPTH + 1];
+    private final SparseMerkleNode[] siblings = new SparseMerkleNode[DEPTH + 1];
+
+    private final Map<String, SparseMerkleNode> saved = new LinkedHashMap<>();
+    private final Set<String> deleted = new LinkedHashSet<>();
+
+    SparsePath(String treeId, byte[] key, SparseTreeHasher sparseTreeHasher) {
+        this.key = key;
+        this.sparseTreeHasher = sparseTreeHasher;
+
+        byte[] siblingKey = key.clone();
+        for (int depth = 0; depth <= DEPTH; depth++) {
+            pathIds[depth] = SparseMerkleNode.id(treeId, key, depth);
+            if (depth > 0) {
+                flip(siblingKey, depth);
+                siblingIds[depth] = SparseMerkleNode.id(treeId, siblingKey, depth);
+                flip(siblingKey, depth);
+            }
+        }
+    }
+
+    List<String> ids() {
+        List<String> ids = new ArrayList<>(Arrays.asList(pathIds));
+        ids.addAll(Arrays.asList(siblingIds).subList(1, DEPTH + 1));
+        return ids;
+    }
+
+    void load(Iterable<SparseMerkleNode> nodes) {
+        Map<String, SparseMerkleNode> byId = new LinkedHashMap<>();
+        nodes.forEach(node -> byId.put(node.getId(), node));
+        for (int depth = 0; depth <= DEPTH; depth++) {
+            path[depth] = byId.get(pathIds[depth]);
+            siblings[depth] = depth > 0 ? byId.get(siblingIds[depth]) : null;
+        }
+    }
+
+    byte[] root() {
+        return hash(path[0], 0);
+    }
+
+    // Hash of the value of the key, null when it is absent
+    byte[] leaf() {
+        SparseMerkleNode node = path[end()];
+        return node != null && Arrays.equals(node.getKey(), key) ? node.getLeaf() : null;
+    }
+
+    // Non-empty siblings from the leaf up to the root
+    List<SparseProofStep> proof() {
+        int end = end();
+        List<SparseProofStep> steps = new ArrayList<>();
+
+        // Another key holds the subtree, the path down to the key is empty but for the sibling where they split
+        SparseMerkleNode node = path[end];
+        if (node != null && !Arrays.equals(node.getKey(), key)) {
+            int divergence = SparseTreeHasher.divergence(key, node.getKey());
+            steps.add(step(DEPTH - divergence, sparseTreeHasher.hashSubtree(node.getKey(), node.getLeaf(), divergence)));
+        }
+
+        for (int depth = end; depth > 0; depth--) {
+            if (siblings[depth] != null) {
+                steps.add(step(DEPTH - depth, siblings[depth].getHash()));
+            }
+        }
+        return steps;
+    }
+
+    // Returns whether the key was added rather than replaced
+    boolean put(byte[] leaf) {
+        int end = end();
+        SparseMerkleNode node = path[end];
+
+        if (node == null || Arrays.equals(node.getKey(), key)) {
+            setPath(end, leafNode(pathIds[end], end, key, leaf));
+            rehash(end);
+            return node == null;
+        }
+
+        // Both keys are pushed down to where their paths split, the internal nodes above are rebuilt by rehash. Only
+        // the hash of the other subtree at its former depth is stored, the one at the split is hashed again from its leaf
+        int divergence = SparseTreeHasher.divergence(key, node.getKey());
+        setSibling(divergence, leafNode(siblingIds[divergence], divergence, node.getKey(), node.getLeaf()));
+        setPath(divergence, leafNode(pathIds[divergence], divergence, key, leaf));
+        rehash(divergence);
+        return true;
+    }
+
+    // Returns whether the key was present
+    boolean remove() {
+        int depth = end();
+        SparseMerkleNode node = path[depth];
+        if (node == null || !Arrays.equals(node.getKey(), key)) {
+            return false;
+        }
+        clearPath(depth);
+
+        // A parent left with a single key becomes the leaf subtree of that key, and so on up to the root
+        SparseMerkleNode remaining = null;
+        while (depth > 0) {
+            SparseMerkleNode sibling = siblings[depth];
+            if (remaining == null && sibling != null && sibling.isLeaf()) {
+                remaining = sibling;
+                clearSibling(depth);
+            } else if (sibling != null) {
+                break;
+            }
+
+            clearPath(depth);
+            if (remaining != null) {
+                byte[] hash = sparseTreeHasher.hashParent(remaining.getKey(), depth, remaining.getHash(), sparseTreeHasher.defaultHash(DEPTH - depth));
+                remaining = leafNode(pathIds[depth - 1], depth - 1, remaining.getKey(), remaining.getLeaf(), hash);
+            }
+            depth--;
+        }
+
+        if (remaining != null) {
+            setPath(depth, remaining);
+        } else {
+            clearPath(depth);
+        }
+        rehash(depth);
+        return true;
+    }
+
+    Collection<SparseMerkleNode> getSaved() {
+        return saved.values();
+    }
+
+    Set<String> getDeleted() {
+        return deleted;
+    }
+
+    // Depth of the leaf subtree holding the key, if any
+    private int end() {
+        int depth = 0;
+        while (path[depth] != null && !path[depth].isLeaf()) {
+            depth++;
+        }
+        return depth;
+    }
+
+    // Recomputes the internal nodes above the given depth
+    private void rehash(int bottom) {
+        for (int depth = bottom - 1; depth >= 0; depth--) {
+            byte[] hash = sparseTreeHasher.hashParent(key, depth + 1, hash(path[depth + 1], depth + 1), hash(siblings[depth + 1], depth + 1));
+            setPath(depth, SparseMerkleNode.builder().id(pathIds[depth]).depth(depth).hash(hash).build());
+        }
+    }
+
+    private byte[] hash(SparseMerkleNode node, int depth) {
+        return node != null ? node.getHash() : sparseTreeHasher.defaultHash(DEPTH - depth);
+    }
+
+    private SparseMerkleNode leafNode(String id, int depth, byte[] nodeKey, byte[] leaf) {
+        return leafNode(id, depth, nodeKey, leaf, sparseTreeHasher.hashSubtree(nodeKey, leaf, depth));
+    }
+
+    private static SparseMerkleNode leafNode(String id, int depth, byte[] nodeKey, byte[] leaf, byte[] hash) {
+        return SparseMerkleNode.builder().id(id).depth(depth).hash(hash).key(nodeKey).leaf(leaf).build();
+    }
+
+    private void setPath(int depth, SparseMerkleNode node) {
+        path[depth] = node;
+        save(node);
+    }
+
+    private void setSibling(int depth, SparseMerkleNode node) {
+        siblings[depth] = node;
+        save(node);
+    }
+
+    private void clearPath(int depth) {
+        path[depth] = null;
+        delete(pathIds[depth]);
+    }
+
+    private void clearSibling(int depth) {
+        siblings[depth] = null;
+        delete(siblingIds[depth]);
+    }
+
+    private void save(SparseMerkleNode node) {
+        deleted.remove(node.getId());
+        saved.put(node.getId(), node);
+    }
+
+    private void delete(String id) {
+        saved.remove(id);
+        deleted.add(id);
+    }
+
+    private static SparseProofStep step(int height, byte[] hash) {
+        return SparseProofStep.builder().height(height).hash(Hex.encode(hash)).build();
+    }
+
+    private static void flip(byte[] key, int depth) {
+        key[(depth - 1) / 8] ^= (byte) (0x80 >>> ((depth - 1) % 8));
+    }
+}
@@ -0,0 +1,139 @@
+package fr.alainncls.merkletree.service;
+
+import fr.alainncls.merkletree.hash.TreeHasher;
+import fr.alainncls.merkletree.model.TreeLayout;
+import fr.alainncls.merkletree.repository.HashStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+/**
+ * Builds a Merkle tree from items received one at a time, without knowing their number in advance.
+ * <p>
+ * Leaves are folded as soon as they arrive: only one pending left node per level is kept, so O(log n) hashes wait
+ * for their sibling. Every completed node is appended to its level, in order, and each level is written to the
+ * {@link HashStore} as soon as a buffer of nodes is full, so memory does not grow with the number of items.
+ * The stored hashes are the same as {@link MerkleTreeBuilder#build}.
+ */
+public class StreamingTreeBuilder {
+
+    private final TreeHasher treeHasher;
+    private final HashStore hashStore;
+    private final String treeId;
+    private final int bufferSize;
+    // Pending left nodes by bottom-up level, null when the level has an even number of nodes
+    private final List<byte[]> pending = new ArrayList<>();
+    private final List<Level> levels = new ArrayList<>();
+    private final byte[] children = new byte[2 * HASH_LENGTH];
+    private int leafCount;
+
+    public StreamingTreeBuilder(TreeHasher treeHasher, HashStore hashStore, String treeId, int bufferSize) {
+        this.treeHasher = treeHasher;
+        this.hashStore = hashStore;
+        this.treeId = treeId;
+        this.bufferSize = bufferSize;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public void add(String item) {
+        byte[] node = new byte[HASH_LENGTH];
+        treeHasher.hashLeaf(item, node, 0);
+        leafCount++;
+
+        int level = 0;
+        while (true) {
+            emit(level, node);
+
+            if (pending.size() == level) {
+                pending.add(null);
+            }
+
+            byte[] left = pending.get(level);
+            if (left == null) {
+                pending.set(level, node);
+                return;
+            }
+
+            pending.set(level, null);
+            node = hashChildren(left, node);
+            level++;
+        }
+    }
+
+    // Promotes or hashes the nodes left without a sibling, writes the remaining nodes and returns the root hash
+    public byte[] finish() {
+        int height = TreeLayout.height(leafCount);
+        byte[] carry = null;
+
+        for (int level = 0; level < height - 1; level++) {
+            byte[] left = pending.get(level);
+
+            if (carry == null && left == null) {
+                continue;
+            }
+
+            if (carry == null) {
+                // If a node has only one child, its hash is the same as its child’s.
+                carry = left;
+            } else if (left != null) {
+                carry = hashChildren(left, carry);
+            }
+
+            emit(level + 1, carry);
+        }
+
+        for (int level = 0; level < height; level++) {
+            levels.get(level).flush(level);
+        }
+
+        return carry != null ? carry : pending.get(height - 1);
+    }
+
+    private byte[] hashChildren(byte[] left, byte[] right) {
+        System.arraycopy(left, 0, children, 0, HASH_LENGTH);
+        System.arraycopy(right, 0, children, HASH_LENGTH, HASH_LENGTH);
+
+        byte[] parent = new byte[HASH_LENGTH];
+        treeHasher.hashChildren(children, 0, parent, 0);
+        return parent;
+    }
+
+    private void emit(int level, byte[] node) {
+        if (levels.size() == level) {
+            levels.add(new Level(bufferSize));
+        }
+
+        Level hashLevel = levels.get(level);
+        hashLevel.append(node);
+        if (hashLevel.length == bufferSize) {
+            hashLevel.flush(level);
+        }
+    }
+
+    private final class Level {
+
+        private final byte[] hashes;
+        private int length;
+        private long written;
+
+        private Level(int bufferSize) {
+            this.hashes = new byte[bufferSize * HASH_LENGTH];
+        }
+
+        private void append(byte[] node) {
+            System.arraycopy(node, 0, hashes, length * HASH_LENGTH, HASH_LENGTH);
+            length++;
+        }
+
+        private void flush(int level) {
+            hashStore.write(treeId, level, written, hashes, 0, length);
+            written += length;
+            length = 0;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package fr.alainncls.merkletree.codec;
+
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.model.MerkleMultiProof;
+import fr.alainncls.merkletree.model.MerkleProof;
+import fr.alainncls.merkletree.model.MerkleSubtree;
+import fr.alainncls.merkletree.model.ProofStep;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryCodecTest {
+
+    private final String HASH_1 = "11".repeat(32);
+    private final String HASH_2 = "22".repeat(32);
+    private final String HASH_3_4 = "34".repeat(32);
+    private final String ROOT_HASH = "ff".repeat(32);
+
+    @Test
+    void merkleProof() throws IOException {
+        MerkleProof merkleProof = MerkleProof.builder()
+                .root(ROOT_HASH)
+                .leafIndex(0)
+                .leaf(HASH_1)
+                .algorithm(HashAlgorithm.KECCAK_256)
+                .hashMode(HashMode.HEX_CONCATENATION)
+                .siblings(List.of(
+                        ProofStep.builder().hash(HASH_2).position(ProofStep.Position.RIGHT).build(),
+                        ProofStep.builder().hash(HASH_3_4).position(ProofStep.Position.RIGHT).build()))
+                .build();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinaryCodec.writeMerkleProof(merkleProof, new DataOutputStream(output));
+
+        // root, index, leaf, 2 enums, count, then 2 siblings of a position and a hash
+        int enums = 2 + "KECCAK_256".length() + 2 + "HEX_CONCATENATION".length();
+        assertThat(output.size()).isEqualTo(HASH_LENGTH + 4 + HASH_LENGTH + enums + 4 + 2 * (1 + HASH_LENGTH));
+        assertThat(BinaryCodec.readMerkleProof(new DataInputStream(new ByteArrayInputStream(output.toByteArray())))).isEqualTo(merkleProof);
+    }
+
+    @Test
+    void merkleMultiProof() throws IOException {
+        MerkleMultiProof merkleMultiProof = MerkleMultiProof.builder()
+                .root(ROOT_HASH)
+                .leafCount(4)
+                .leafIndices(List.of(0, 1))
+                .leaves(List.of(HASH_1, HASH_2))
+                .proof(List.of(HASH_3_4))
+                .build();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinaryCodec.writeMerkleMultiProof(merkleMultiProof, new DataOutputStream(output));
+
+        assertThat(BinaryCodec.readMerkleMultiProof(new DataInputStream(new ByteArrayInputStream(output.toByteArray())))).isEqualTo(merkleMultiProof);
+    }
+
+    @Test
+    void merkleSubtree() throws IOException {
+        MerkleSubtree merkleSubtree = MerkleSubtree.builder().level(1).index(0).levels(List.of(List.of(HASH_3_4), List.of(HASH_1, HASH_2))).build();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinaryCodec.writeMerkleSubtree(merkleSubtree, new DataOutputStream(output));
+
+        assertThat(output.size()).isEqualTo(4 + 8 + 4 + (4 + HASH_LENGTH) + (4 + 2 * HASH_LENGTH));
+    }
+
+    @Test
+    void invalidHash() {
+        MerkleProof merkleProof = MerkleProof.builder().root("ff").leaf(HASH_1).build();
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.writeMerkleProof(merkleProof, new DataOutputStream(new ByteArrayOutputStream())));
+    }
+}
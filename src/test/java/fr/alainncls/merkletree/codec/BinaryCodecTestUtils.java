@@ -0,0 +1,57 @@
+package fr.alainncls.merkletree.codec;
+
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.hash.Hex;
+import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.model.TreeLayout;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.time.Instant;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+
+public class BinaryCodecTestUtils {
+
+    // Reads a tree written by BinaryCodec, the application itself never receives one
+    public static MerkleTree readMerkleTree(byte[] body) throws IOException {
+        DataInput input = new DataInputStream(new ByteArrayInputStream(body));
+        MerkleTree merkleTree = MerkleTree.builder()
+                .id(readString(input))
+                .leafCount(input.readInt())
+                .algorithm(readEnum(input, HashAlgorithm.class))
+                .hashMode(readEnum(input, HashMode.class))
+                .build();
+        long createdAt = input.readLong();
+        merkleTree.setCreatedAt(createdAt >= 0 ? Instant.ofEpochMilli(createdAt) : null);
+        byte[] root = new byte[HASH_LENGTH];
+        input.readFully(root);
+        merkleTree.setRoot(Hex.encode(root));
+
+        int height = input.readInt();
+        merkleTree.setHeight(height);
+        if (height > 0) {
+            byte[] hashes = new byte[Math.toIntExact(TreeLayout.nodeCount(merkleTree.getLeafCount()) * HASH_LENGTH)];
+            for (int level = 0; level < height; level++) {
+                int offset = Math.toIntExact(TreeLayout.levelOffset(merkleTree.getLeafCount(), level));
+                int width = input.readInt();
+                input.readFully(hashes, offset * HASH_LENGTH, width * HASH_LENGTH);
+            }
+            merkleTree.setHashes(hashes);
+        }
+        return merkleTree;
+    }
+
+    private static String readString(DataInput input) throws IOException {
+        String value = input.readUTF();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static <E extends Enum<E>> E readEnum(DataInput input, Class<E> type) throws IOException {
+        String value = readString(input);
+        return value != null ? Enum.valueOf(type, value) : null;
+    }
+}
@@ -0,0 +1,61 @@
+package fr.alainncls.merkletree.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class VirtualThreadsConfigTest {
+
+    private final WebApplicationContextRunner contextRunner = new WebApplicationContextRunner().withUserConfiguration(VirtualThreadsConfig.class);
+
+    @Test
+    void disabledByDefault() {
+        contextRunner.run(context -> assertThat(context).doesNotHaveBean(VirtualThreadsConfig.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void requestsRunOnVirtualThreads() {
+        contextRunner.withPropertyValues("merkletree.threads.virtual=true").run(context -> {
+            TomcatProtocolHandlerCustomizer<ProtocolHandler> customizer = context.getBean("virtualThreadsProtocolHandlerCustomizer", TomcatProtocolHandlerCustomizer.class);
+            ProtocolHandler protocolHandler = mock(ProtocolHandler.class);
+            customizer.customize(protocolHandler);
+
+            ArgumentCaptor<Executor> executor = ArgumentCaptor.forClass(Executor.class);
+            verify(protocolHandler).setExecutor(executor.capture());
+            CompletableFuture<Boolean> virtual = new CompletableFuture<>();
+            executor.getValue().execute(() -> virtual.complete(Thread.currentThread().isVirtual()));
+            assertThat(virtual.get()).isTrue();
+        });
+    }
+
+    @Test
+    void asyncResponsesRunOnVirtualThreads() {
+        contextRunner.withPropertyValues("merkletree.threads.virtual=true").run(context -> {
+            ExposedAsyncSupportConfigurer configurer = new ExposedAsyncSupportConfigurer();
+            context.getBean("virtualThreadsAsyncConfigurer", WebMvcConfigurer.class).configureAsyncSupport(configurer);
+
+            assertThat(configurer.getTaskExecutor().submit(() -> Thread.currentThread().isVirtual()).get()).isTrue();
+        });
+    }
+
+    private static class ExposedAsyncSupportConfigurer extends AsyncSupportConfigurer {
+
+        @Override
+        public AsyncTaskExecutor getTaskExecutor() {
+            return super.getTaskExecutor();
+        }
+    }
+}
@@ -1,51 +1,135 @@
 package fr.alainncls.merkletree.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.alainncls.merkletree.codec.BinaryCodec;
+import fr.alainncls.merkletree.codec.BinaryCodecTestUtils;
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import fr.alainncls.merkletree.exception.InvalidBulkException;
+import fr.alainncls.merkletree.exception.MerkleTreeConflictException;
+import fr.alainncls.merkletree.exception.MerkleTreeJobNotFoundException;
 import fr.alainncls.merkletree.exception.MerkleTreeNotFoundException;
+import fr.alainncls.merkletree.exception.MerkleTreeTooLargeException;
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.hash.Hex;
+import fr.alainncls.merkletree.model.BulkMerkleTreeResult;
+import fr.alainncls.merkletree.model.InputItem;
 import fr.alainncls.merkletree.model.InputItems;
+import fr.alainncls.merkletree.model.InputLeaves;
+import fr.alainncls.merkletree.model.MerkleMultiProof;
+import fr.alainncls.merkletree.model.MerkleProof;
+import fr.alainncls.merkletree.model.MerkleSubtree;
 import fr.alainncls.merkletree.model.MerkleTree;
-import fr.alainncls.merkletree.model.Node;
+import fr.alainncls.merkletree.model.MerkleTreeJob;
+import fr.alainncls.merkletree.model.MerkleTreeMetadata;
+import fr.alainncls.merkletree.model.MerkleTreePage;
+import fr.alainncls.merkletree.model.ProofStep;
+import fr.alainncls.merkletree.service.MerkleTreeJobService;
 import fr.alainncls.merkletree.service.MerkleTreeService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.restdocs.AutoConfigureRestDocs;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders;
+import org.springframework.restdocs.operation.preprocess.Preprocessors;
+import org.springframework.restdocs.payload.JsonFieldType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
 import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
+import static org.springframework.restdocs.operation.preprocess.Preprocessors.removeHeaders;
 import static org.springframework.restdocs.payload.PayloadDocumentation.*;
 import static org.springframework.restdocs.request.RequestDocumentation.parameterWithName;
 import static org.springframework.restdocs.request.RequestDocumentation.pathParameters;
+import static org.springframework.restdocs.request.RequestDocumentation.requestParameters;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(value = MerkleTreeController.class)
+@Import(MerkleTreeMetrics.class)
 @AutoConfigureRestDocs(outputDir = "target/generated-snippets")
 class MerkleTreeControllerTest {
 
-    private final String ROOT_HASH = "HASH_1_2_3_4";
-
-    private final Node node1 = Node.builder().hash("HASH_1").build();
-    private final Node node2 = Node.builder().hash("HASH_2").build();
-    private final Node node3 = Node.builder().hash("HASH_3").build();
-    private final Node node4 = Node.builder().hash("HASH_4").build();
-    private final Node node11 = Node.builder().hash("HASH_1_2").leftNode(node1).rightNode(node2).build();
-    private final Node node12 = Node.builder().hash("HASH_3_4").leftNode(node3).rightNode(node4).build();
-    private final Node nodeRoot = Node.builder().hash(ROOT_HASH).leftNode(node11).rightNode(node12).build();
-
-    private final MerkleTree merkleTree = MerkleTree.builder().id("ID_1").children(nodeRoot).build();
+    private final String HASH_1 = "11".repeat(32);
+    private final String HASH_2 = "22".repeat(32);
+    private final String HASH_3 = "33".repeat(32);
+    private final String HASH_4 = "44".repeat(32);
+    private final String HASH_1_2 = "12".repeat(32);
+    private final String HASH_3_4 = "34".repeat(32);
+    private final String ROOT_HASH = "ff".repeat(32);
+
+    private final MerkleTree merkleTree = MerkleTree.builder()
+            .id("ID_1")
+            .leafCount(4)
+            .height(3)
+            .algorithm(HashAlgorithm.SHA_256)
+            .hashMode(HashMode.RAW)
+            .hashes(Hex.decode(HASH_1 + HASH_2 + HASH_3 + HASH_4 + HASH_1_2 + HASH_3_4 + ROOT_HASH))
+            .root(ROOT_HASH)
+            .createdAt(Instant.parse("2021-12-01T10:00:00Z"))
+            .build();
+
+    private final MerkleTreeMetadata metadata = MerkleTreeMetadata.of(merkleTree);
+
+    private final MerkleProof merkleProof = MerkleProof.builder()
+            .root(ROOT_HASH)
+            .leafIndex(2)
+            .leaf(HASH_3)
+            .algorithm(HashAlgorithm.SHA_256)
+            .hashMode(HashMode.RAW)
+            .siblings(List.of(
+                    ProofStep.builder().hash(HASH_4).position(ProofStep.Position.RIGHT).build(),
+                    ProofStep.builder().hash(HASH_1_2).position(ProofStep.Position.LEFT).build()))
+            .build();
+
+    private final MerkleMultiProof merkleMultiProof = MerkleMultiProof.builder()
+            .root(ROOT_HASH)
+            .leafCount(4)
+            .leafIndices(List.of(0, 1))
+            .leaves(List.of(HASH_1, HASH_2))
+            .algorithm(HashAlgorithm.SHA_256)
+            .hashMode(HashMode.RAW)
+            .proof(List.of(HASH_3_4))
+            .build();
+
+    private final MerkleTreeJob merkleTreeJob = MerkleTreeJob.builder()
+            .id("JOB_1")
+            .status(MerkleTreeJob.Status.DONE)
+            .leafCount(4)
+            .leavesHashed(4)
+            .levelCount(2)
+            .levelsReduced(2)
+            .treeId("ID_1")
+            .createdAt(Instant.parse("2021-12-01T10:00:00Z"))
+            .build();
 
     @MockBean
     private MerkleTreeService merkleTreeService;
 
+    @MockBean
+    private MerkleTreeJobService merkleTreeJobService;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -53,30 +137,60 @@ class MerkleTreeControllerTest {
     private ObjectMapper objectMapper;
 
     @Test
-    void getAllMerkleTrees() throws Exception {
-        List<MerkleTree> expectedMerkleTrees = List.of(merkleTree);
+    void getMerkleTrees() throws Exception {
+        final String AFTER = "ID_0";
+        MerkleTreePage merkleTreePage = MerkleTreePage.builder().trees(List.of(metadata)).next(metadata.getId()).build();
 
-        when(merkleTreeService.getAllMerkleTrees()).thenReturn(expectedMerkleTrees);
+        when(merkleTreeService.getMerkleTrees(AFTER, 1)).thenReturn(merkleTreePage);
 
-        this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/"))
+        this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/")
+                        .param("after", AFTER)
+                        .param("limit", "1"))
                 .andExpect(handler().handlerType(MerkleTreeController.class))
-                .andExpect(handler().methodName("getAllMerkleTrees"))
+                .andExpect(handler().methodName("getMerkleTrees"))
                 .andDo(print())
                 .andExpect(status().isOk())
-                .andExpect(content().json(objectMapper.writeValueAsString(expectedMerkleTrees)))
+                .andExpect(content().json(objectMapper.writeValueAsString(merkleTreePage)))
                 .andDo(document(
-                        "getAllMerkleTrees",
+                        "getMerkleTrees",
                         ControllerTestUtils.preprocessRequest(),
                         ControllerTestUtils.preprocessResponse(),
+                        requestParameters(
+                                parameterWithName("after").description("Optional, the `next` value of the previous page").optional(),
+                                parameterWithName("limit").description("Optional, the maximum number of trees in the page, 100 by default and at most 1000").optional()),
                         responseFields(
-                                fieldWithPath("[]").description("The list of Merkle trees"),
-                                fieldWithPath("[].id").description("The Merkle tree unique ID"),
-                                fieldWithPath("[].children").description("First node of the tree"),
-                                fieldWithPath("[].children.hash").description("The Merkle tree root hash, the \"Merkle root\""),
-                                fieldWithPath("[].children.leftNode").description("Left node, containing itself a hash, a left and a right node, and so on"),
-                                fieldWithPath("[].children.rightNode").description("Right node, containing itself a hash, a left and a right node, and so on"),
-                                subsectionWithPath("[].children.leftNode").ignored(),
-                                subsectionWithPath("[].children.rightNode").ignored())));
+                                fieldWithPath("trees").description("The metadata of the Merkle trees, by ascending ID"),
+                                fieldWithPath("trees[].id").description("The Merkle tree unique ID"),
+                                fieldWithPath("trees[].leafCount").description("The number of items (leaves) in the tree"),
+                                fieldWithPath("trees[].height").description("The Merkle tree height"),
+                                fieldWithPath("trees[].root").description("The Merkle root"),
+                                fieldWithPath("trees[].algorithm").description("The hash function of the tree"),
+                                fieldWithPath("trees[].hashMode").description("How internal nodes are hashed"),
+                                fieldWithPath("trees[].createdAt").description("The date the Merkle tree was built"),
+                                fieldWithPath("next").description("The value of `after` to get the next page, null on the last page"))));
+    }
+
+    @Test
+    void streamMerkleTrees() throws Exception {
+        MerkleTreeMetadata otherMetadata = metadata.toBuilder().id("ID_2").build();
+
+        when(merkleTreeService.streamMerkleTrees()).thenReturn(Stream.of(metadata, otherMetadata));
+
+        MvcResult mvcResult = this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(handler().methodName("streamMerkleTrees"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(objectMapper.writeValueAsString(metadata) + "\n" + objectMapper.writeValueAsString(otherMetadata) + "\n"))
+                .andDo(document(
+                        "streamMerkleTrees",
+                        ControllerTestUtils.preprocessRequest(),
+                        Preprocessors.preprocessResponse(removeHeaders("Content-Length"))));
     }
 
     @Test
@@ -98,12 +212,36 @@ class MerkleTreeControllerTest {
                         pathParameters(parameterWithName("id").description("The requested Merkle tree ID")),
                         responseFields(
                                 fieldWithPath("id").description("The Merkle tree unique ID"),
-                                fieldWithPath("children").description("First node of the tree"),
-                                fieldWithPath("children.hash").description("The Merkle tree root hash, the \"Merkle root\""),
-                                fieldWithPath("children.leftNode").description("Left node, containing itself a hash, a left and a right node, and so on"),
-                                fieldWithPath("children.rightNode").description("Right node, containing itself a hash, a left and a right node, and so on"),
-                                subsectionWithPath("children.leftNode").ignored(),
-                                subsectionWithPath("children.rightNode").ignored())));
+                                fieldWithPath("leafCount").description("The number of items (leaves) in the tree"),
+                                fieldWithPath("algorithm").description("The hash function of the tree: `SHA_256`, `SHA_512_256` or `KECCAK_256`"),
+                                fieldWithPath("hashMode").description("How internal nodes are hashed: `RAW` child digests or legacy `HEX_CONCATENATION`"),
+                                fieldWithPath("height").description("The Merkle tree height"),
+                                fieldWithPath("root").description("The Merkle tree root hash, the \"Merkle root\""),
+                                fieldWithPath("createdAt").description("The date the Merkle tree was built"),
+                                subsectionWithPath("levels").description("The hashes of each level, from the root down to the leaves"))));
+    }
+
+    @Test
+    void getMerkleTreeBinary() throws Exception {
+        final String ID = "ID_1";
+
+        when(merkleTreeService.getMerkleTree(ID)).thenReturn(merkleTree);
+
+        MvcResult mvcResult = this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/{id}", ID)
+                        .accept(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("getMerkleTree"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andDo(document(
+                        "getMerkleTreeBinary",
+                        ControllerTestUtils.preprocessRequest(),
+                        pathParameters(parameterWithName("id").description("The requested Merkle tree ID"))))
+                .andReturn();
+
+        byte[] body = mvcResult.getResponse().getContentAsByteArray();
+        assertThat(BinaryCodecTestUtils.readMerkleTree(body)).isEqualTo(merkleTree);
+        assertThat(body.length).isLessThan(objectMapper.writeValueAsBytes(merkleTree).length / 2);
     }
 
     @Test
@@ -123,6 +261,50 @@ class MerkleTreeControllerTest {
                         ControllerTestUtils.preprocessResponse()));
     }
 
+    @Test
+    void getMerkleTreeTooLarge() throws Exception {
+        final String ID = "ID_1";
+
+        when(merkleTreeService.getMerkleTree(ID)).thenThrow(new MerkleTreeTooLargeException(268435456));
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/{id}", ID))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("getMerkleTree"))
+                .andDo(print())
+                .andExpect(status().isBadRequest())
+                .andDo(document(
+                        "getMerkleTreeTooLarge",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse()));
+    }
+
+    @Test
+    void getMerkleTreeMetadata() throws Exception {
+        final String ID = "ID_1";
+
+        when(merkleTreeService.getMerkleTreeMetadata(ID)).thenReturn(metadata);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/{id}/metadata", ID))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("getMerkleTreeMetadata"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(metadata)))
+                .andDo(document(
+                        "getMerkleTreeMetadata",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(parameterWithName("id").description("The requested Merkle tree ID")),
+                        responseFields(
+                                fieldWithPath("id").description("The Merkle tree unique ID"),
+                                fieldWithPath("leafCount").description("The number of items (leaves) in the tree"),
+                                fieldWithPath("height").description("The Merkle tree height"),
+                                fieldWithPath("root").description("The Merkle root"),
+                                fieldWithPath("algorithm").description("The hash function of the tree"),
+                                fieldWithPath("hashMode").description("How internal nodes are hashed"),
+                                fieldWithPath("createdAt").description("The date the Merkle tree was built"))));
+    }
+
     @Test
     void getMerkleTreeRoot() throws Exception {
         final String ID = "ID_1";
@@ -168,13 +350,19 @@ class MerkleTreeControllerTest {
     void getMerkleTreeLevel() throws Exception {
         final String ID = "ID_1";
         final int LEVEL = 2;
-        final List<String> expectedHashes = List.of("HASH_1_2", "HASH_3_4");
+        final List<String> expectedHashes = List.of(HASH_2, HASH_3);
 
-        when(merkleTreeService.getMerkleTreeLevel(ID, LEVEL)).thenReturn(expectedHashes);
+        when(merkleTreeService.getMerkleTreeLevel(ID, LEVEL, 1, 2L)).thenReturn(expectedHashes.stream());
 
-        this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/{id}/{level}", ID, LEVEL))
+        MvcResult mvcResult = this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/{id}/{level}", ID, LEVEL)
+                        .param("offset", "1")
+                        .param("limit", "2"))
                 .andExpect(handler().handlerType(MerkleTreeController.class))
                 .andExpect(handler().methodName("getMerkleTreeLevel"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(content().string(objectMapper.writeValueAsString(expectedHashes)))
@@ -185,12 +373,264 @@ class MerkleTreeControllerTest {
                         pathParameters(
                                 parameterWithName("id").description("The requested Merkle tree ID"),
                                 parameterWithName("level").description("The level in the requested Merkle tree")),
+                        requestParameters(
+                                parameterWithName("offset").description("Optional, the index of the first node to return, 0 by default").optional(),
+                                parameterWithName("limit").description("Optional, the maximum number of nodes to return, all the following ones by default").optional()),
                         responseFields(fieldWithPath("[]").description("The list of nodes' hash on this level"))));
     }
 
+    @Test
+    void diffMerkleTrees() throws Exception {
+        final String ID = "ID_1";
+        final String OTHER_ID = "ID_2";
+
+        when(merkleTreeService.diffMerkleTrees(ID, OTHER_ID)).thenReturn(LongStream.of(1, 3, 4));
+
+        MvcResult mvcResult = this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/{id}/diff/{otherId}", ID, OTHER_ID))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("diffMerkleTrees"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string("[1,3,4]"))
+                .andDo(document(
+                        "diffMerkleTrees",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(
+                                parameterWithName("id").description("The ID of the first Merkle tree"),
+                                parameterWithName("otherId").description("The ID of the Merkle tree to compare it with")),
+                        responseFields(fieldWithPath("[]").description("The ascending indices of the leaves that differ, or that only the larger tree has"))));
+    }
+
+    @Test
+    void diffMerkleTreesNotFound() throws Exception {
+        when(merkleTreeService.diffMerkleTrees("ID_1", "UNKNOWN")).thenThrow(new MerkleTreeNotFoundException());
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/{id}/diff/{otherId}", "ID_1", "UNKNOWN"))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("diffMerkleTrees"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getMerkleTreeLevelHashes() throws Exception {
+        final String ID = "ID_1";
+        final int LEVEL = 2;
+
+        when(merkleTreeService.getMerkleTreeLevelHashes(ID, LEVEL, 0, null))
+                .thenReturn(Stream.of(ByteBuffer.wrap(Hex.decode(HASH_1 + HASH_2)), ByteBuffer.wrap(Hex.decode(HASH_3 + HASH_4))));
+
+        MvcResult mvcResult = this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/{id}/{level}", ID, LEVEL)
+                        .accept(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("getMerkleTreeLevelHashes"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(content().bytes(Hex.decode(HASH_1 + HASH_2 + HASH_3 + HASH_4)));
+    }
+
+    @Test
+    void getMerkleSubtree() throws Exception {
+        final String ID = "ID_1";
+        MerkleSubtree merkleSubtree = MerkleSubtree.builder().level(1).index(1).levels(List.of(List.of(HASH_3_4), List.of(HASH_3, HASH_4))).build();
+
+        when(merkleTreeService.getMerkleSubtree(ID, 1, 1, 2)).thenReturn(merkleSubtree);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/{id}/nodes/{level}/{index}", ID, 1, 1)
+                        .param("depth", "2"))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("getMerkleSubtree"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(merkleSubtree)))
+                .andDo(document(
+                        "getMerkleSubtree",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(
+                                parameterWithName("id").description("The requested Merkle tree ID"),
+                                parameterWithName("level").description("The level of the subtree root, 0 being the tree root"),
+                                parameterWithName("index").description("The index of the subtree root on its level")),
+                        requestParameters(parameterWithName("depth").description("Optional, the number of levels returned below the node, 1 by default and at most 10").optional()),
+                        responseFields(
+                                fieldWithPath("level").description("The level of the subtree root"),
+                                fieldWithPath("index").description("The index of the subtree root on its level"),
+                                subsectionWithPath("levels").description("The hash of the node, then the hashes of its descendants level by level"))));
+    }
+
+    @Test
+    void getMerkleProof() throws Exception {
+        final String ID = "ID_1";
+        final int LEAF_INDEX = 2;
+
+        when(merkleTreeService.getMerkleProof(ID, LEAF_INDEX)).thenReturn(merkleProof);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/{id}/proof/{leafIndex}", ID, LEAF_INDEX))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("getMerkleProof"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(merkleProof)))
+                .andDo(document(
+                        "getMerkleProof",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(
+                                parameterWithName("id").description("The requested Merkle tree ID"),
+                                parameterWithName("leafIndex").description("The index of the leaf to prove")),
+                        responseFields(
+                                fieldWithPath("root").description("The Merkle root the proof leads to"),
+                                fieldWithPath("leafIndex").description("The index of the proven leaf"),
+                                fieldWithPath("leaf").description("The hash of the proven leaf"),
+                                fieldWithPath("algorithm").description("The hash function of the tree"),
+                                fieldWithPath("hashMode").description("How internal nodes of the tree are hashed"),
+                                fieldWithPath("siblings").description("The sibling hashes from the leaf up to the root, levels where the node was promoted have none"),
+                                fieldWithPath("siblings[].hash").description("The sibling hash"),
+                                fieldWithPath("siblings[].position").description("`LEFT` or `RIGHT`, the side of the sibling when hashing it with the current node"))));
+    }
+
+    @Test
+    void getMerkleProofByItem() throws Exception {
+        final String ID = "ID_1";
+        final String ITEM = "ITEM_3";
+
+        when(merkleTreeService.getMerkleProof(ID, ITEM)).thenReturn(merkleProof);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/{id}/proof", ID).param("item", ITEM))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("getMerkleProofByItem"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(merkleProof)))
+                .andDo(document(
+                        "getMerkleProofByItem",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(parameterWithName("id").description("The requested Merkle tree ID")),
+                        requestParameters(parameterWithName("item").description("The item to prove, its first occurrence is used"))));
+    }
+
+    @Test
+    void verifyMerkleProof() throws Exception {
+        when(merkleTreeService.verifyMerkleProof(merkleProof)).thenReturn(true);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.post("/merkletrees/verify")
+                        .content(objectMapper.writeValueAsString(merkleProof))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("verifyMerkleProof"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(Map.of("valid", true))))
+                .andDo(document(
+                        "verifyMerkleProof",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        requestFields(
+                                fieldWithPath("root").description("The expected Merkle root"),
+                                fieldWithPath("leafIndex").description("Optional, the index of the proven leaf").optional(),
+                                fieldWithPath("leaf").description("The hash of the proven leaf"),
+                                fieldWithPath("algorithm").description("Optional, the hash function of the tree, `SHA_256` by default").optional(),
+                                fieldWithPath("hashMode").description("Optional, how internal nodes of the tree are hashed, `RAW` by default").optional(),
+                                fieldWithPath("siblings").description("The sibling hashes from the leaf up to the root"),
+                                fieldWithPath("siblings[].hash").description("The sibling hash"),
+                                fieldWithPath("siblings[].position").description("`LEFT` or `RIGHT`, the side of the sibling")),
+                        responseFields(fieldWithPath("valid").description("Whether the proof leads to the given root"))));
+    }
+
+    @Test
+    void verifyMerkleProofBinary() throws Exception {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        BinaryCodec.writeMerkleProof(merkleProof, new DataOutputStream(content));
+
+        when(merkleTreeService.getMerkleProof("ID_1", 2)).thenReturn(merkleProof);
+        when(merkleTreeService.verifyMerkleProof(merkleProof)).thenReturn(true);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/{id}/proof/{leafIndex}", "ID_1", 2)
+                        .accept(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(content.toByteArray()));
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.post("/merkletrees/verify")
+                        .content(content.toByteArray())
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("verifyMerkleProof"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(Map.of("valid", true))));
+    }
+
+    @Test
+    void getMerkleMultiProof() throws Exception {
+        final String ID = "ID_1";
+        InputLeaves inputLeaves = InputLeaves.builder().leafIndices(List.of(0, 1)).build();
+
+        when(merkleTreeService.getMerkleMultiProof(ID, inputLeaves)).thenReturn(merkleMultiProof);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.post("/merkletrees/{id}/multiproof", ID)
+                        .content(objectMapper.writeValueAsString(inputLeaves))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("getMerkleMultiProof"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(merkleMultiProof)))
+                .andDo(document(
+                        "getMerkleMultiProof",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(parameterWithName("id").description("The requested Merkle tree ID")),
+                        requestFields(fieldWithPath("leafIndices").description("The indices of the leaves to prove")),
+                        responseFields(
+                                fieldWithPath("root").description("The Merkle root the proof leads to"),
+                                fieldWithPath("leafCount").description("The number of leaves in the tree"),
+                                fieldWithPath("leafIndices").description("The sorted and deduplicated indices of the proven leaves"),
+                                fieldWithPath("leaves").description("The hashes of the proven leaves, in the same order"),
+                                fieldWithPath("algorithm").description("The hash function of the tree"),
+                                fieldWithPath("hashMode").description("How internal nodes of the tree are hashed"),
+                                fieldWithPath("proof").description("The sibling hashes that can't be computed from the leaves, level by level from the leaves up, shared ones only once"))));
+    }
+
+    @Test
+    void verifyMerkleMultiProof() throws Exception {
+        when(merkleTreeService.verifyMerkleMultiProof(merkleMultiProof)).thenReturn(true);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.post("/merkletrees/verify/multiproof")
+                        .content(objectMapper.writeValueAsString(merkleMultiProof))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("verifyMerkleMultiProof"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(Map.of("valid", true))))
+                .andDo(document(
+                        "verifyMerkleMultiProof",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        requestFields(
+                                fieldWithPath("root").description("The expected Merkle root"),
+                                fieldWithPath("leafCount").description("The number of leaves in the tree"),
+                                fieldWithPath("leafIndices").description("The sorted and unique indices of the proven leaves"),
+                                fieldWithPath("leaves").description("The hashes of the proven leaves, in the same order"),
+                                fieldWithPath("algorithm").description("Optional, the hash function of the tree, `SHA_256` by default").optional(),
+                                fieldWithPath("hashMode").description("Optional, how internal nodes of the tree are hashed, `RAW` by default").optional(),
+                                fieldWithPath("proof").description("The sibling hashes, as returned with the multi-proof")),
+                        responseFields(fieldWithPath("valid").description("Whether the multi-proof leads to the given root"))));
+    }
+
     @Test
     void generateMerkleTree() throws Exception {
-        InputItems inputItems = InputItems.builder().items(List.of("ITEM_1", "ITEM_2", "ITEM_3", "ITEM_4")).build();
+        InputItems inputItems = InputItems.builder().items(List.of("ITEM_1", "ITEM_2", "ITEM_3", "ITEM_4")).algorithm(HashAlgorithm.SHA_256).hashMode(HashMode.RAW).build();
         when(merkleTreeService.generateMerkleTree(inputItems)).thenReturn(merkleTree);
 
         this.mockMvc.perform(RestDocumentationRequestBuilders.post("/merkletrees/")
@@ -204,15 +644,232 @@ class MerkleTreeControllerTest {
                         "generateMerkleTree",
                         ControllerTestUtils.preprocessRequest(),
                         ControllerTestUtils.preprocessResponse(),
-                        requestFields(fieldWithPath("items").description("The list of source items for the Merkle tree")),
+                        requestFields(
+                                fieldWithPath("items").description("The list of source items for the Merkle tree"),
+                                fieldWithPath("algorithm").description("Optional, the hash function of the tree: `SHA_256` (default), `SHA_512_256` or `KECCAK_256`"),
+                                fieldWithPath("hashMode").description("Optional, how internal nodes are hashed: `RAW` (default) or `HEX_CONCATENATION` to reproduce legacy roots")),
                         responseFields(
                                 fieldWithPath("id").description("The Merkle tree unique ID"),
-                                fieldWithPath("children").description("First node of the tree"),
-                                fieldWithPath("children.hash").description("The Merkle tree root hash, the \"Merkle root\""),
-                                fieldWithPath("children.leftNode").description("Left node, containing itself a hash, a left and a right node, and so on"),
-                                fieldWithPath("children.rightNode").description("Right node, containing itself a hash, a left and a right node, and so on"),
-                                subsectionWithPath("children.leftNode").ignored(),
-                                subsectionWithPath("children.rightNode").ignored())));
+                                fieldWithPath("leafCount").description("The number of items (leaves) in the tree"),
+                                fieldWithPath("algorithm").description("The hash function of the tree: `SHA_256`, `SHA_512_256` or `KECCAK_256`"),
+                                fieldWithPath("hashMode").description("How internal nodes are hashed: `RAW` child digests or legacy `HEX_CONCATENATION`"),
+                                fieldWithPath("height").description("The Merkle tree height"),
+                                fieldWithPath("root").description("The Merkle tree root hash, the \"Merkle root\""),
+                                fieldWithPath("createdAt").description("The date the Merkle tree was built"),
+                                subsectionWithPath("levels").description("The hashes of each level, from the root down to the leaves"))));
+    }
+
+    @Test
+    void generateMerkleTrees() throws Exception {
+        List<InputItems> inputItems = List.of(
+                InputItems.builder().items(List.of("ITEM_1", "ITEM_2", "ITEM_3", "ITEM_4")).build(),
+                InputItems.builder().items(List.of()).build());
+        List<BulkMerkleTreeResult> results = List.of(
+                BulkMerkleTreeResult.builder().id("ID_1").root(merkleTree.getRoot()).build(),
+                BulkMerkleTreeResult.builder().error("A Merkle tree needs at least one item").build());
+        when(merkleTreeService.generateMerkleTrees(inputItems)).thenReturn(results);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.post("/merkletrees/bulk")
+                        .content(objectMapper.writeValueAsString(inputItems))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("generateMerkleTrees"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(results)))
+                .andDo(document(
+                        "generateMerkleTrees",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        requestFields(
+                                fieldWithPath("[].items").description("The list of source items of each Merkle tree"),
+                                fieldWithPath("[].algorithm").description("Optional, the hash function of the tree").optional().type(JsonFieldType.STRING),
+                                fieldWithPath("[].hashMode").description("Optional, how internal nodes are hashed").optional().type(JsonFieldType.STRING)),
+                        responseFields(
+                                fieldWithPath("[].id").description("The Merkle tree unique ID, if it was created").optional().type(JsonFieldType.STRING),
+                                fieldWithPath("[].root").description("The Merkle tree root hash, if it was created").optional().type(JsonFieldType.STRING),
+                                fieldWithPath("[].error").description("Why the tree was not created, if it wasn't").optional().type(JsonFieldType.STRING))));
+    }
+
+    @Test
+    void generateMerkleTreesInvalidBulk() throws Exception {
+        when(merkleTreeService.generateMerkleTrees(List.of())).thenThrow(new InvalidBulkException(1000));
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.post("/merkletrees/bulk")
+                        .content("[]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(handler().methodName("generateMerkleTrees"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void generateMerkleTreeAsync() throws Exception {
+        InputItems inputItems = InputItems.builder().items(List.of("ITEM_1", "ITEM_2", "ITEM_3", "ITEM_4")).build();
+        MerkleTreeJob queuedJob = merkleTreeJob.toBuilder().status(MerkleTreeJob.Status.QUEUED).leavesHashed(0).levelsReduced(0).treeId(null).build();
+        when(merkleTreeJobService.submit(inputItems)).thenReturn(queuedJob);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.post("/merkletrees/")
+                        .param("async", "true")
+                        .content(objectMapper.writeValueAsString(inputItems))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("generateMerkleTreeAsync"))
+                .andDo(print())
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "http://localhost:8080/merkletrees/jobs/JOB_1"))
+                .andExpect(content().json(objectMapper.writeValueAsString(queuedJob)))
+                .andDo(document(
+                        "generateMerkleTreeAsync",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        requestParameters(parameterWithName("async").description("`true` to build the tree in the background")),
+                        requestFields(
+                                fieldWithPath("items").description("The list of source items for the Merkle tree"),
+                                fieldWithPath("algorithm").description("Optional, the hash function of the tree").optional(),
+                                fieldWithPath("hashMode").description("Optional, how internal nodes are hashed").optional())));
+    }
+
+    @Test
+    void getMerkleTreeJob() throws Exception {
+        final String ID = "JOB_1";
+
+        when(merkleTreeJobService.getJob(ID)).thenReturn(merkleTreeJob);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/jobs/{id}", ID))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("getMerkleTreeJob"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(merkleTreeJob)))
+                .andDo(document(
+                        "getMerkleTreeJob",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(parameterWithName("id").description("The job ID returned when the tree was submitted")),
+                        responseFields(
+                                fieldWithPath("id").description("The job unique ID"),
+                                fieldWithPath("status").description("`QUEUED`, `RUNNING`, `DONE` or `FAILED`"),
+                                fieldWithPath("leafCount").description("The number of items (leaves) of the tree"),
+                                fieldWithPath("leavesHashed").description("The number of leaves hashed so far"),
+                                fieldWithPath("levelCount").description("The number of levels to reduce above the leaves"),
+                                fieldWithPath("levelsReduced").description("The number of levels reduced so far"),
+                                fieldWithPath("treeId").description("The ID of the built tree, once the job is done"),
+                                fieldWithPath("error").description("Why the job failed, if it did").optional().type(JsonFieldType.STRING),
+                                fieldWithPath("createdAt").description("The date the job was submitted"))));
+    }
+
+    @Test
+    void getMerkleTreeJobNotFound() throws Exception {
+        when(merkleTreeJobService.getJob("JOB_2")).thenThrow(new MerkleTreeJobNotFoundException());
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.get("/merkletrees/jobs/{id}", "JOB_2"))
+                .andExpect(handler().methodName("getMerkleTreeJob"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void streamMerkleTree() throws Exception {
+        final String ITEMS = "ITEM_1\nITEM_2\nITEM_3\nITEM_4\n";
+
+        when(merkleTreeService.generateMerkleTree(any(InputStream.class), any(MediaType.class), eq(HashAlgorithm.SHA_256), isNull())).thenReturn(merkleTree);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.post("/merkletrees/stream")
+                        .param("algorithm", "SHA_256")
+                        .content(ITEMS)
+                        .contentType(MediaType.TEXT_PLAIN))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("streamMerkleTree"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(Map.of("id", "ID_1", "root", ROOT_HASH, "leafCount", 4))))
+                .andDo(document(
+                        "streamMerkleTree",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        requestParameters(
+                                parameterWithName("algorithm").description("Optional, the hash function of the tree, `SHA_256` by default"),
+                                parameterWithName("hashMode").description("Optional, how internal nodes are hashed, `RAW` by default").optional()),
+                        responseFields(
+                                fieldWithPath("id").description("The Merkle tree unique ID"),
+                                fieldWithPath("root").description("The Merkle root"),
+                                fieldWithPath("leafCount").description("The number of leaves in the tree"))));
+    }
+
+    @Test
+    void appendItems() throws Exception {
+        final String ID = "ID_1";
+        InputItems inputItems = InputItems.builder().items(List.of("ITEM_5")).build();
+
+        when(merkleTreeService.appendItems(ID, inputItems)).thenReturn(merkleTree);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.post("/merkletrees/{id}/items", ID)
+                        .content(objectMapper.writeValueAsString(Map.of("items", inputItems.getItems())))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("appendItems"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(Map.of("id", "ID_1", "root", ROOT_HASH, "leafCount", 4))))
+                .andDo(document(
+                        "appendItems",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(parameterWithName("id").description("The ID of the Merkle tree to append items to")),
+                        requestFields(fieldWithPath("items").description("The items to append at the end of the tree")),
+                        responseFields(
+                                fieldWithPath("id").description("The Merkle tree unique ID"),
+                                fieldWithPath("root").description("The new Merkle root"),
+                                fieldWithPath("leafCount").description("The new number of leaves in the tree"))));
+    }
+
+    @Test
+    void appendItemsConflict() throws Exception {
+        final String ID = "ID_1";
+        InputItems inputItems = InputItems.builder().items(List.of("ITEM_5")).build();
+
+        when(merkleTreeService.appendItems(ID, inputItems)).thenThrow(new MerkleTreeConflictException());
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.post("/merkletrees/{id}/items", ID)
+                        .content(objectMapper.writeValueAsString(Map.of("items", inputItems.getItems())))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("appendItems"))
+                .andDo(print())
+                .andExpect(status().isConflict())
+                .andDo(document(
+                        "appendItemsConflict",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse()));
+    }
+
+    @Test
+    void updateItem() throws Exception {
+        final String ID = "ID_1";
+        final int LEAF_INDEX = 3;
+        InputItem inputItem = InputItem.builder().item("ITEM_4").build();
+
+        when(merkleTreeService.updateItem(ID, LEAF_INDEX, inputItem)).thenReturn(merkleTree);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.put("/merkletrees/{id}/items/{leafIndex}", ID, LEAF_INDEX)
+                        .content(objectMapper.writeValueAsString(inputItem))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("updateItem"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(Map.of("id", "ID_1", "root", ROOT_HASH, "leafCount", 4))))
+                .andDo(document(
+                        "updateItem",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(
+                                parameterWithName("id").description("The ID of the Merkle tree to update"),
+                                parameterWithName("leafIndex").description("The index of the leaf to replace")),
+                        requestFields(fieldWithPath("item").description("The new item")),
+                        responseFields(
+                                fieldWithPath("id").description("The Merkle tree unique ID"),
+                                fieldWithPath("root").description("The new Merkle root"),
+                                fieldWithPath("leafCount").description("The number of leaves in the tree"))));
     }
 
     @Test
@@ -234,4 +891,21 @@ class MerkleTreeControllerTest {
                         ControllerTestUtils.preprocessResponse(),
                         pathParameters(parameterWithName("id").description("The ID of the Merkle tree to delete"))));
     }
+
+    @Test
+    void deleteMerkleTreeConflict() throws Exception {
+        final String ID = "ID_1";
+
+        doThrow(new MerkleTreeConflictException()).when(merkleTreeService).deleteMerkleTree(ID);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.delete("/merkletrees/{id}", ID))
+                .andExpect(handler().handlerType(MerkleTreeController.class))
+                .andExpect(handler().methodName("deleteMerkleTree"))
+                .andDo(print())
+                .andExpect(status().isConflict())
+                .andDo(document(
+                        "deleteMerkleTreeConflict",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse()));
+    }
 }
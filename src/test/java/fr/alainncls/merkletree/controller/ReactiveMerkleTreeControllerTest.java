@@ -0,0 +1,196 @@
+package fr.alainncls.merkletree.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import fr.alainncls.merkletree.exception.MerkleTreeLevelException;
+import fr.alainncls.merkletree.exception.MerkleTreeNotFoundException;
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.model.MerkleProof;
+import fr.alainncls.merkletree.model.MerkleTreeMetadata;
+import fr.alainncls.merkletree.model.ProofStep;
+import fr.alainncls.merkletree.service.ReactiveMerkleTreeService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.restdocs.AutoConfigureRestDocs;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
+import static org.springframework.restdocs.payload.PayloadDocumentation.fieldWithPath;
+import static org.springframework.restdocs.payload.PayloadDocumentation.responseFields;
+import static org.springframework.restdocs.request.RequestDocumentation.parameterWithName;
+import static org.springframework.restdocs.request.RequestDocumentation.pathParameters;
+import static org.springframework.restdocs.request.RequestDocumentation.requestParameters;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(value = ReactiveMerkleTreeController.class)
+@Import(MerkleTreeMetrics.class)
+@AutoConfigureRestDocs(outputDir = "target/generated-snippets")
+class ReactiveMerkleTreeControllerTest {
+
+    private final String HASH_1 = "11".repeat(32);
+    private final String HASH_2 = "22".repeat(32);
+    private final String HASH_3 = "33".repeat(32);
+    private final String HASH_4 = "44".repeat(32);
+    private final String HASH_1_2 = "12".repeat(32);
+    private final String ROOT_HASH = "ff".repeat(32);
+
+    private final MerkleTreeMetadata metadata = MerkleTreeMetadata.builder()
+            .id("ID_1")
+            .leafCount(4)
+            .height(3)
+            .root(ROOT_HASH)
+            .algorithm(HashAlgorithm.SHA_256)
+            .hashMode(HashMode.RAW)
+            .createdAt(Instant.parse("2021-12-01T10:00:00Z"))
+            .build();
+
+    @MockBean
+    private ReactiveMerkleTreeService reactiveMerkleTreeService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void getMerkleTrees() throws Exception {
+        when(reactiveMerkleTreeService.getMerkleTrees(null, 100)).thenReturn(Flux.just(metadata, metadata.toBuilder().id("ID_2").build()));
+
+        MvcResult mvcResult = this.mockMvc.perform(RestDocumentationRequestBuilders.get("/reactive/merkletrees/")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(handler().handlerType(ReactiveMerkleTreeController.class))
+                .andExpect(handler().methodName("getMerkleTrees"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(objectMapper.writeValueAsString(metadata) + "\n"
+                        + objectMapper.writeValueAsString(metadata.toBuilder().id("ID_2").build()) + "\n"));
+    }
+
+    @Test
+    void getMerkleTreeHeightNotFound() throws Exception {
+        when(reactiveMerkleTreeService.getMerkleTreeHeight("ID_3")).thenReturn(Mono.error(new MerkleTreeNotFoundException()));
+
+        MvcResult mvcResult = this.mockMvc.perform(RestDocumentationRequestBuilders.get("/reactive/merkletrees/{id}/height", "ID_3"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getMerkleTreeLevel() throws Exception {
+        final String ID = "ID_1";
+        final int LEVEL = 2;
+        final List<String> expectedHashes = List.of(HASH_2, HASH_3, HASH_4);
+
+        when(reactiveMerkleTreeService.getMerkleTreeLevel(ID, LEVEL, 1, null)).thenReturn(Flux.fromIterable(expectedHashes));
+
+        MvcResult mvcResult = this.mockMvc.perform(RestDocumentationRequestBuilders.get("/reactive/merkletrees/{id}/{level}", ID, LEVEL)
+                        .param("offset", "1"))
+                .andExpect(handler().handlerType(ReactiveMerkleTreeController.class))
+                .andExpect(handler().methodName("getMerkleTreeLevel"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(expectedHashes)))
+                .andDo(document(
+                        "reactiveGetMerkleTreeLevel",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(
+                                parameterWithName("id").description("The requested Merkle tree ID"),
+                                parameterWithName("level").description("The level in the requested Merkle tree")),
+                        requestParameters(
+                                parameterWithName("offset").description("Optional, the index of the first node to return, 0 by default").optional(),
+                                parameterWithName("limit").description("Optional, the maximum number of nodes to return, all the following ones by default").optional()),
+                        responseFields(fieldWithPath("[]").description("The list of nodes' hash on this level"))));
+    }
+
+    @Test
+    void streamMerkleTreeLevel() throws Exception {
+        when(reactiveMerkleTreeService.getMerkleTreeLevel("ID_1", 2, 0, 2L)).thenReturn(Flux.just(HASH_1, HASH_2));
+
+        MvcResult mvcResult = this.mockMvc.perform(RestDocumentationRequestBuilders.get("/reactive/merkletrees/{id}/{level}", "ID_1", 2)
+                        .param("limit", "2")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(handler().methodName("streamMerkleTreeLevel"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().string("\"" + HASH_1 + "\"\n\"" + HASH_2 + "\"\n"));
+    }
+
+    @Test
+    void getMerkleTreeLevelNotFound() throws Exception {
+        when(reactiveMerkleTreeService.getMerkleTreeLevel("ID_1", 3, 0, null)).thenReturn(Flux.error(new MerkleTreeLevelException()));
+
+        MvcResult mvcResult = this.mockMvc.perform(RestDocumentationRequestBuilders.get("/reactive/merkletrees/{id}/{level}", "ID_1", 3))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getMerkleProof() throws Exception {
+        final String ID = "ID_1";
+        MerkleProof merkleProof = MerkleProof.builder()
+                .root(ROOT_HASH)
+                .leafIndex(0)
+                .leaf(HASH_1)
+                .algorithm(HashAlgorithm.SHA_256)
+                .hashMode(HashMode.RAW)
+                .siblings(List.of(
+                        ProofStep.builder().hash(HASH_2).position(ProofStep.Position.RIGHT).build(),
+                        ProofStep.builder().hash(HASH_1_2).position(ProofStep.Position.RIGHT).build()))
+                .build();
+
+        when(reactiveMerkleTreeService.getMerkleProof(ID, 0)).thenReturn(Mono.just(merkleProof));
+
+        MvcResult mvcResult = this.mockMvc.perform(RestDocumentationRequestBuilders.get("/reactive/merkletrees/{id}/proof/{leafIndex}", ID, 0))
+                .andExpect(handler().handlerType(ReactiveMerkleTreeController.class))
+                .andExpect(handler().methodName("getMerkleProof"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(merkleProof)))
+                .andDo(document(
+                        "reactiveGetMerkleProof",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(
+                                parameterWithName("id").description("The requested Merkle tree ID"),
+                                parameterWithName("leafIndex").description("The index of the leaf to prove"))));
+    }
+}
@@ -0,0 +1,290 @@
+package fr.alainncls.merkletree.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import fr.alainncls.merkletree.exception.InvalidSparseKeyException;
+import fr.alainncls.merkletree.exception.MerkleTreeConflictException;
+import fr.alainncls.merkletree.exception.SparseMerkleTreeNotFoundException;
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.model.InputItem;
+import fr.alainncls.merkletree.model.InputSparseMerkleTree;
+import fr.alainncls.merkletree.model.SparseMerkleProof;
+import fr.alainncls.merkletree.model.SparseMerkleTree;
+import fr.alainncls.merkletree.model.SparseProofStep;
+import fr.alainncls.merkletree.service.SparseMerkleTreeService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.restdocs.AutoConfigureRestDocs;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders;
+import org.springframework.restdocs.payload.FieldDescriptor;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.when;
+import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
+import static org.springframework.restdocs.payload.PayloadDocumentation.*;
+import static org.springframework.restdocs.request.RequestDocumentation.parameterWithName;
+import static org.springframework.restdocs.request.RequestDocumentation.pathParameters;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(value = SparseMerkleTreeController.class)
+@Import(MerkleTreeMetrics.class)
+@AutoConfigureRestDocs(outputDir = "target/generated-snippets")
+class SparseMerkleTreeControllerTest {
+
+    private final String ID = "ID_1";
+    private final String KEY = "0a".repeat(32);
+    private final String LEAF_HASH = "11".repeat(32);
+    private final String SIBLING_HASH = "22".repeat(32);
+    private final String ROOT_HASH = "ff".repeat(32);
+
+    private final SparseMerkleTree sparseMerkleTree = SparseMerkleTree.builder()
+            .id(ID)
+            .size(1)
+            .algorithm(HashAlgorithm.SHA_256)
+            .hashMode(HashMode.RAW)
+            .root(ROOT_HASH)
+            .createdAt(Instant.parse("2021-12-01T10:00:00Z"))
+            .build();
+
+    private final SparseMerkleProof sparseMerkleProof = SparseMerkleProof.builder()
+            .root(ROOT_HASH)
+            .key(KEY)
+            .leaf(LEAF_HASH)
+            .algorithm(HashAlgorithm.SHA_256)
+            .hashMode(HashMode.RAW)
+            .siblings(List.of(SparseProofStep.builder().height(252).hash(SIBLING_HASH).build()))
+            .build();
+
+    @MockBean
+    private SparseMerkleTreeService sparseMerkleTreeService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void createSparseMerkleTree() throws Exception {
+        InputSparseMerkleTree inputSparseMerkleTree = InputSparseMerkleTree.builder().algorithm(HashAlgorithm.SHA_256).hashMode(HashMode.RAW).build();
+
+        when(sparseMerkleTreeService.createSparseMerkleTree(inputSparseMerkleTree)).thenReturn(sparseMerkleTree);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.post("/sparse-merkletrees/")
+                        .content(objectMapper.writeValueAsString(inputSparseMerkleTree))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(handler().handlerType(SparseMerkleTreeController.class))
+                .andExpect(handler().methodName("createSparseMerkleTree"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(sparseMerkleTree)))
+                .andDo(document(
+                        "createSparseMerkleTree",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        requestFields(
+                                fieldWithPath("algorithm").description("Optional, the hash function of the tree, `SHA_256` by default").optional(),
+                                fieldWithPath("hashMode").description("Optional, how internal nodes are hashed, `RAW` by default").optional()),
+                        responseFields(sparseMerkleTreeFields())));
+    }
+
+    @Test
+    void getSparseMerkleTree() throws Exception {
+        when(sparseMerkleTreeService.getSparseMerkleTree(ID)).thenReturn(sparseMerkleTree);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.get("/sparse-merkletrees/{id}", ID))
+                .andExpect(handler().handlerType(SparseMerkleTreeController.class))
+                .andExpect(handler().methodName("getSparseMerkleTree"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(sparseMerkleTree)))
+                .andDo(document(
+                        "getSparseMerkleTree",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(parameterWithName("id").description("The ID of the sparse Merkle tree")),
+                        responseFields(sparseMerkleTreeFields())));
+    }
+
+    @Test
+    void getSparseMerkleTreeNotFound() throws Exception {
+        when(sparseMerkleTreeService.getSparseMerkleTree(ID)).thenThrow(new SparseMerkleTreeNotFoundException());
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.get("/sparse-merkletrees/{id}", ID))
+                .andExpect(handler().handlerType(SparseMerkleTreeController.class))
+                .andExpect(handler().methodName("getSparseMerkleTree"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void putEntry() throws Exception {
+        InputItem inputItem = InputItem.builder().item("VALUE_1").build();
+
+        when(sparseMerkleTreeService.putEntry(ID, KEY, inputItem)).thenReturn(sparseMerkleTree);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.put("/sparse-merkletrees/{id}/entries/{key}", ID, KEY)
+                        .content(objectMapper.writeValueAsString(inputItem))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(handler().handlerType(SparseMerkleTreeController.class))
+                .andExpect(handler().methodName("putEntry"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(sparseMerkleTree)))
+                .andDo(document(
+                        "putEntry",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(
+                                parameterWithName("id").description("The ID of the sparse Merkle tree to update"),
+                                parameterWithName("key").description("The 256-bit key, as 64 hexadecimal characters")),
+                        requestFields(fieldWithPath("item").description("The value of the key, hashed as a leaf")),
+                        responseFields(sparseMerkleTreeFields())));
+    }
+
+    @Test
+    void putEntryConflict() throws Exception {
+        InputItem inputItem = InputItem.builder().item("VALUE_1").build();
+
+        when(sparseMerkleTreeService.putEntry(ID, KEY, inputItem)).thenThrow(new MerkleTreeConflictException());
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.put("/sparse-merkletrees/{id}/entries/{key}", ID, KEY)
+                        .content(objectMapper.writeValueAsString(inputItem))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(handler().handlerType(SparseMerkleTreeController.class))
+                .andExpect(handler().methodName("putEntry"))
+                .andDo(print())
+                .andExpect(status().isConflict())
+                .andDo(document(
+                        "putEntryConflict",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse()));
+    }
+
+    @Test
+    void putEntryInvalidKey() throws Exception {
+        InputItem inputItem = InputItem.builder().item("VALUE_1").build();
+
+        when(sparseMerkleTreeService.putEntry(ID, "0a", inputItem)).thenThrow(new InvalidSparseKeyException());
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.put("/sparse-merkletrees/{id}/entries/{key}", ID, "0a")
+                        .content(objectMapper.writeValueAsString(inputItem))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(handler().handlerType(SparseMerkleTreeController.class))
+                .andExpect(handler().methodName("putEntry"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void removeEntry() throws Exception {
+        SparseMerkleTree emptied = sparseMerkleTree.toBuilder().size(0).build();
+
+        when(sparseMerkleTreeService.removeEntry(ID, KEY)).thenReturn(emptied);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.delete("/sparse-merkletrees/{id}/entries/{key}", ID, KEY))
+                .andExpect(handler().handlerType(SparseMerkleTreeController.class))
+                .andExpect(handler().methodName("removeEntry"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(emptied)))
+                .andDo(document(
+                        "removeEntry",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(
+                                parameterWithName("id").description("The ID of the sparse Merkle tree to update"),
+                                parameterWithName("key").description("The 256-bit key to remove, as 64 hexadecimal characters")),
+                        responseFields(sparseMerkleTreeFields())));
+    }
+
+    @Test
+    void getSparseMerkleProof() throws Exception {
+        when(sparseMerkleTreeService.getSparseMerkleProof(ID, KEY)).thenReturn(sparseMerkleProof);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.get("/sparse-merkletrees/{id}/proof/{key}", ID, KEY))
+                .andExpect(handler().handlerType(SparseMerkleTreeController.class))
+                .andExpect(handler().methodName("getSparseMerkleProof"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(sparseMerkleProof)))
+                .andDo(document(
+                        "getSparseMerkleProof",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(
+                                parameterWithName("id").description("The ID of the sparse Merkle tree"),
+                                parameterWithName("key").description("The 256-bit key to prove, as 64 hexadecimal characters")),
+                        responseFields(sparseMerkleProofFields())));
+    }
+
+    @Test
+    void verifySparseMerkleProof() throws Exception {
+        when(sparseMerkleTreeService.verifySparseMerkleProof(sparseMerkleProof)).thenReturn(true);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.post("/sparse-merkletrees/verify")
+                        .content(objectMapper.writeValueAsString(sparseMerkleProof))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(handler().handlerType(SparseMerkleTreeController.class))
+                .andExpect(handler().methodName("verifySparseMerkleProof"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(Map.of("valid", true))))
+                .andDo(document(
+                        "verifySparseMerkleProof",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        requestFields(sparseMerkleProofFields()),
+                        responseFields(fieldWithPath("valid").description("Whether the proof leads to the given root"))));
+    }
+
+    @Test
+    void deleteSparseMerkleTree() throws Exception {
+        doNothing().when(sparseMerkleTreeService).deleteSparseMerkleTree(ID);
+
+        this.mockMvc.perform(RestDocumentationRequestBuilders.delete("/sparse-merkletrees/{id}", ID))
+                .andExpect(handler().handlerType(SparseMerkleTreeController.class))
+                .andExpect(handler().methodName("deleteSparseMerkleTree"))
+                .andDo(print())
+                .andExpect(status().isNoContent())
+                .andDo(document(
+                        "deleteSparseMerkleTree",
+                        ControllerTestUtils.preprocessRequest(),
+                        ControllerTestUtils.preprocessResponse(),
+                        pathParameters(parameterWithName("id").description("The ID of the sparse Merkle tree to delete"))));
+    }
+
+    private static FieldDescriptor[] sparseMerkleTreeFields() {
+        return new FieldDescriptor[]{
+                fieldWithPath("id").description("The sparse Merkle tree unique ID"),
+                fieldWithPath("size").description("The number of keys in the tree"),
+                fieldWithPath("algorithm").description("The hash function of the tree"),
+                fieldWithPath("hashMode").description("How internal nodes are hashed"),
+                fieldWithPath("root").description("The Merkle root, the default hash of an empty tree when it has no key"),
+                fieldWithPath("createdAt").description("The creation date of the tree")};
+    }
+
+    private static FieldDescriptor[] sparseMerkleProofFields() {
+        return new FieldDescriptor[]{
+                fieldWithPath("root").description("The Merkle root"),
+                fieldWithPath("key").description("The proven key"),
+                fieldWithPath("leaf").description("The hash of the value of the key, `null` to prove that the key is absent").optional(),
+                fieldWithPath("algorithm").description("Optional, the hash function of the tree, `SHA_256` by default").optional(),
+                fieldWithPath("hashMode").description("Optional, how internal nodes of the tree are hashed, `RAW` by default").optional(),
+                fieldWithPath("siblings").description("The non-empty sibling subtrees from the leaf up to the root, the others being empty"),
+                fieldWithPath("siblings[].height").description("The height of the sibling, from 0 for a leaf to 255 for a child of the root"),
+                fieldWithPath("siblings[].hash").description("The sibling hash")};
+    }
+
+}
@@ -0,0 +1,48 @@
+package fr.alainncls.merkletree.hash;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashAlgorithmTest {
+
+    private final byte[] ABC = "abc".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    void sha256() {
+        assertThat(Hex.encode(HashAlgorithm.SHA_256.newDigest().digest(ABC)))
+                .isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+
+    @Test
+    void sha512256() {
+        assertThat(Hex.encode(HashAlgorithm.SHA_512_256.newDigest().digest(ABC)))
+                .isEqualTo("53048e2681941ef99b2e29b76b4c7dabe4c2d0c634fc6d46e0e2f13107e7af23");
+    }
+
+    @Test
+    void keccak256() {
+        MessageDigest keccak = HashAlgorithm.KECCAK_256.newDigest();
+
+        assertThat(Hex.encode(keccak.digest(new byte[0])))
+                .isEqualTo("c5d2460186f7233c927e7db2dcc703c0e500b653ca82273b7bfad8045d85a470");
+        assertThat(Hex.encode(keccak.digest(ABC)))
+                .isEqualTo("4e03657aea45a94fc7d47ba826c8d667c0d1e6e33a64a036ec44f58fa12d6c45");
+    }
+
+    @Test
+    void keccak256AcrossSeveralBlocks() {
+        MessageDigest keccak = HashAlgorithm.KECCAK_256.newDigest();
+        byte[] input = new byte[300];
+
+        byte[] oneShot = keccak.digest(input);
+        for (byte b : input) {
+            keccak.update(b);
+        }
+
+        assertThat(keccak.digest()).isEqualTo(oneShot);
+    }
+}
@@ -0,0 +1,77 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.model.ContentChunk;
+import fr.alainncls.merkletree.model.NodePosition;
+import fr.alainncls.merkletree.model.TreeLayout;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ContentAddressedHashStoreTest extends HashStoreContractTest<ContentAddressedHashStore> {
+
+    private final String OTHER_TREE_ID = "ID_2";
+
+    private final Map<String, ContentChunk> contents = new HashMap<>();
+
+    @Override
+    protected ContentAddressedHashStore createHashStore() {
+        return HashStoreTestUtils.inMemoryContentAddressedHashStore(4, contents);
+    }
+
+    @Test
+    void replacedChunksAreReleased() {
+        hashStore.write(TREE_ID, 0, 0, nodes(0, 6), 0, 6);
+        hashStore.write(TREE_ID, 0, 3, nodes(100, 5), 0, 5);
+
+        // The chunks replaced by the second write are no longer referenced
+        assertThat(contents).hasSize(2);
+    }
+
+    @Test
+    void identicalChunksAreStoredOnce() {
+        byte[] hashes = nodes(0, TreeLayout.nodeCount(10));
+
+        hashStore.writeTree(TREE_ID, 10, hashes);
+        int chunkCount = contents.size();
+        hashStore.writeTree(OTHER_TREE_ID, 10, hashes);
+
+        assertThat(contents).hasSize(chunkCount);
+        assertThat(contents.values()).allMatch(chunk -> chunk.getReferences() == 2);
+        assertThat(hashStore.readTree(OTHER_TREE_ID, 10)).isEqualTo(hashes);
+    }
+
+    @Test
+    void writesCopyOnlyTheChangedChunk() {
+        byte[] hashes = nodes(0, TreeLayout.nodeCount(10));
+        hashStore.writeTree(TREE_ID, 10, hashes);
+        hashStore.writeTree(OTHER_TREE_ID, 10, hashes);
+        int chunkCount = contents.size();
+
+        hashStore.writeNodes(OTHER_TREE_ID, List.of(new NodePosition(0, 5)), nodes(100, 1));
+
+        assertThat(contents).hasSize(chunkCount + 1);
+        assertThat(hashStore.readTree(TREE_ID, 10)).isEqualTo(hashes);
+        assertThat(hashStore.readNodes(OTHER_TREE_ID, List.of(new NodePosition(0, 5)))).isEqualTo(nodes(100, 1));
+    }
+
+    @Test
+    void deleteReleasesChunks() {
+        byte[] hashes = nodes(0, TreeLayout.nodeCount(10));
+        hashStore.writeTree(TREE_ID, 10, hashes);
+        hashStore.writeTree(OTHER_TREE_ID, 10, hashes);
+
+        hashStore.delete(TREE_ID, 10);
+
+        assertThrows(IllegalStateException.class, () -> hashStore.read(TREE_ID, 0, 0, 10));
+        assertThat(hashStore.readTree(OTHER_TREE_ID, 10)).isEqualTo(hashes);
+
+        hashStore.delete(OTHER_TREE_ID, 10);
+
+        assertThat(contents).isEmpty();
+    }
+}
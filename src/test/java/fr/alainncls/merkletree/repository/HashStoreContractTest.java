@@ -0,0 +1,103 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.model.NodePosition;
+import fr.alainncls.merkletree.model.TreeLayout;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Behavior shared by every {@link HashStore}, each store test extends it and only adds the cases of its own layout.
+ */
+abstract class HashStoreContractTest<S extends HashStore> {
+
+    protected final String TREE_ID = "ID_1";
+
+    protected S hashStore;
+
+    // Stores split levels every 4 hashes, so that small levels already span several chunks
+    protected abstract S createHashStore();
+
+    @BeforeEach
+    public void createStore() {
+        hashStore = createHashStore();
+    }
+
+    @Test
+    void readAcrossChunks() {
+        byte[] hashes = nodes(0, 10);
+
+        hashStore.write(TREE_ID, 0, 0, hashes, 0, 10);
+
+        assertThat(hashStore.read(TREE_ID, 0, 0, 10)).isEqualTo(hashes);
+        assertThat(hashStore.read(TREE_ID, 0, 3, 6)).isEqualTo(Arrays.copyOfRange(hashes, 3 * HASH_LENGTH, 9 * HASH_LENGTH));
+    }
+
+    @Test
+    void partialWritesKeepOtherNodes() {
+        hashStore.write(TREE_ID, 0, 0, nodes(0, 6), 0, 6);
+        hashStore.write(TREE_ID, 0, 3, nodes(100, 5), 0, 5);
+
+        assertThat(hashStore.read(TREE_ID, 0, 0, 8)).isEqualTo(concat(nodes(0, 3), nodes(100, 5)));
+    }
+
+    @Test
+    void readAndWriteScatteredNodes() {
+        hashStore.write(TREE_ID, 0, 0, nodes(0, 9), 0, 9);
+        hashStore.write(TREE_ID, 1, 0, nodes(10, 5), 0, 5);
+        List<NodePosition> positions = List.of(new NodePosition(0, 8), new NodePosition(1, 1), new NodePosition(0, 2), new NodePosition(0, 3));
+
+        hashStore.writeNodes(TREE_ID, positions, nodes(50, 4));
+
+        assertThat(hashStore.readNodes(TREE_ID, positions)).isEqualTo(nodes(50, 4));
+        assertThat(hashStore.readNodes(TREE_ID, List.of(new NodePosition(0, 1), new NodePosition(1, 0)))).isEqualTo(concat(nodes(1, 1), nodes(10, 1)));
+    }
+
+    @Test
+    void writeAndReadTree() {
+        byte[] hashes = nodes(0, TreeLayout.nodeCount(11));
+
+        hashStore.writeTree(TREE_ID, 11, hashes);
+
+        assertThat(hashStore.readTree(TREE_ID, 11)).isEqualTo(hashes);
+    }
+
+    @Test
+    void readPastTheEndOfALevel() {
+        hashStore.write(TREE_ID, 0, 0, nodes(0, 5), 0, 5);
+
+        assertThrows(IllegalStateException.class, () -> hashStore.read(TREE_ID, 0, 3, 3));
+        assertThrows(IllegalStateException.class, () -> hashStore.read(TREE_ID, 1, 0, 1));
+    }
+
+    @Test
+    void deleteTree() {
+        hashStore.write(TREE_ID, 0, 0, nodes(0, 5), 0, 5);
+        hashStore.read(TREE_ID, 0, 0, 5);
+
+        hashStore.delete(TREE_ID, 5);
+
+        assertThrows(IllegalStateException.class, () -> hashStore.read(TREE_ID, 0, 0, 5));
+    }
+
+    // count distinct hashes, each filled with its own byte value
+    protected static byte[] nodes(long first, long count) {
+        byte[] hashes = new byte[Math.toIntExact(count) * HASH_LENGTH];
+        for (int i = 0; i < count; i++) {
+            Arrays.fill(hashes, i * HASH_LENGTH, (i + 1) * HASH_LENGTH, (byte) (first + i));
+        }
+        return hashes;
+    }
+
+    protected static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
@@ -0,0 +1,103 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.model.ContentChunk;
+import fr.alainncls.merkletree.model.MerkleTreeChunk;
+import fr.alainncls.merkletree.model.MerkleTreeChunkRef;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HashStoreTestUtils {
+
+    // A MongoHashStore whose chunks are kept in a map instead of a database
+    public static MongoHashStore inMemoryHashStore(int chunkSize) {
+        Map<String, MerkleTreeChunk> chunks = new HashMap<>();
+        MerkleTreeChunkRepository merkleTreeChunkRepository = mock(MerkleTreeChunkRepository.class);
+
+        when(merkleTreeChunkRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<String> ids = invocation.getArgument(0);
+            return StreamSupport.stream(ids.spliterator(), false).map(chunks::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
+        when(merkleTreeChunkRepository.saveAll(any())).thenAnswer(invocation -> {
+            Iterable<MerkleTreeChunk> saved = invocation.getArgument(0);
+            saved.forEach(chunk -> chunks.put(chunk.getId(), chunk));
+            return List.copyOf(chunks.values());
+        });
+        when(merkleTreeChunkRepository.insertUnordered(any())).thenAnswer(invocation -> {
+            List<MerkleTreeChunk> inserted = invocation.getArgument(0);
+            inserted.forEach(chunk -> chunks.put(chunk.getId(), chunk));
+            return Set.of();
+        });
+        doAnswer(invocation -> {
+            Iterable<String> ids = invocation.getArgument(0);
+            ids.forEach(chunks::remove);
+            return null;
+        }).when(merkleTreeChunkRepository).deleteAllById(any());
+
+        MerkleTreeProperties properties = new MerkleTreeProperties();
+        properties.getStorage().setChunkSize(chunkSize);
+        return new MongoHashStore(merkleTreeChunkRepository, properties);
+    }
+
+    // A ContentAddressedHashStore whose references are kept in a map, and its contents in the given one
+    public static ContentAddressedHashStore inMemoryContentAddressedHashStore(int chunkSize, Map<String, ContentChunk> contents) {
+        Map<String, MerkleTreeChunkRef> refs = new HashMap<>();
+        MerkleTreeChunkRefRepository merkleTreeChunkRefRepository = mock(MerkleTreeChunkRefRepository.class);
+        ContentChunkRepository contentChunkRepository = mock(ContentChunkRepository.class);
+
+        when(merkleTreeChunkRefRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<String> ids = invocation.getArgument(0);
+            return StreamSupport.stream(ids.spliterator(), false).map(refs::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
+        when(merkleTreeChunkRefRepository.saveAll(any())).thenAnswer(invocation -> {
+            Iterable<MerkleTreeChunkRef> saved = invocation.getArgument(0);
+            saved.forEach(ref -> refs.put(ref.getId(), ref));
+            return List.copyOf(refs.values());
+        });
+        when(merkleTreeChunkRefRepository.insertUnordered(any())).thenAnswer(invocation -> {
+            List<MerkleTreeChunkRef> inserted = invocation.getArgument(0);
+            inserted.forEach(ref -> refs.put(ref.getId(), ref));
+            return Set.of();
+        });
+        doAnswer(invocation -> {
+            Iterable<String> ids = invocation.getArgument(0);
+            ids.forEach(refs::remove);
+            return null;
+        }).when(merkleTreeChunkRefRepository).deleteAllById(any());
+
+        when(contentChunkRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<String> ids = invocation.getArgument(0);
+            return StreamSupport.stream(ids.spliterator(), false).map(contents::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
+        doAnswer(invocation -> {
+            List<ContentChunk> retained = invocation.getArgument(0);
+            retained.forEach(chunk -> {
+                ContentChunk stored = contents.computeIfAbsent(chunk.getId(), id -> ContentChunk.builder().id(id).hashes(chunk.getHashes()).build());
+                stored.setReferences(stored.getReferences() + 1);
+            });
+            return null;
+        }).when(contentChunkRepository).retain(any());
+        doAnswer(invocation -> {
+            List<String> released = invocation.getArgument(0);
+            released.forEach(id -> contents.get(id).setReferences(contents.get(id).getReferences() - 1));
+            contents.values().removeIf(chunk -> chunk.getReferences() <= 0);
+            return null;
+        }).when(contentChunkRepository).release(any());
+
+        MerkleTreeProperties properties = new MerkleTreeProperties();
+        properties.getStorage().setChunkSize(chunkSize);
+        return new ContentAddressedHashStore(merkleTreeChunkRefRepository, contentChunkRepository, properties);
+    }
+
+}
@@ -0,0 +1,69 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import static fr.alainncls.merkletree.model.TreeLayout.HASH_LENGTH;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedFileHashStoreTest extends HashStoreContractTest<MappedFileHashStore> {
+
+    @TempDir
+    Path directory;
+
+    @Override
+    protected MappedFileHashStore createHashStore() {
+        // Segments of 4 hashes, so that small levels already span several mappings
+        return new MappedFileHashStore(directory, 4 * HASH_LENGTH);
+    }
+
+    @Test
+    void readBufferIsAViewOfTheMapping() {
+        hashStore.write(TREE_ID, 0, 0, nodes(0, 10), 0, 10);
+
+        ByteBuffer buffer = hashStore.readBuffer(TREE_ID, 0, 5, 2);
+
+        assertThat(buffer.isDirect()).isTrue();
+        assertThat(buffer.isReadOnly()).isTrue();
+        assertThat(buffer).isEqualTo(ByteBuffer.wrap(nodes(5, 2)));
+    }
+
+    @Test
+    void writesAfterAReadGrowTheLevel() {
+        hashStore.write(TREE_ID, 0, 0, nodes(0, 6), 0, 6);
+        assertThat(hashStore.read(TREE_ID, 0, 4, 2)).isEqualTo(nodes(4, 2));
+
+        hashStore.write(TREE_ID, 0, 3, nodes(100, 5), 0, 5);
+
+        assertThat(hashStore.read(TREE_ID, 0, 0, 8)).isEqualTo(concat(nodes(0, 3), nodes(100, 5)));
+    }
+
+    @Test
+    void chunkSizeMustDivideTheSegments() {
+        MerkleTreeProperties properties = new MerkleTreeProperties();
+        properties.getStorage().setDirectory(directory.toString());
+
+        properties.getStorage().setChunkSize(3000);
+        assertThrows(IllegalArgumentException.class, () -> new MappedFileHashStore(properties));
+
+        properties.getStorage().setChunkSize(1 << 26);
+        assertThrows(IllegalArgumentException.class, () -> new MappedFileHashStore(properties));
+
+        properties.getStorage().setChunkSize(2048);
+        assertThat(new MappedFileHashStore(properties)).isNotNull();
+    }
+
+    @Test
+    void deleteRemovesTheTreeDirectory() {
+        hashStore.write(TREE_ID, 0, 0, nodes(0, 5), 0, 5);
+
+        hashStore.delete(TREE_ID, 5);
+
+        assertThat(directory.resolve(TREE_ID)).doesNotExist();
+    }
+}
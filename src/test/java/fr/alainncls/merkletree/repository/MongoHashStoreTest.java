@@ -0,0 +1,9 @@
+package fr.alainncls.merkletree.repository;
+
+class MongoHashStoreTest extends HashStoreContractTest<MongoHashStore> {
+
+    @Override
+    protected MongoHashStore createHashStore() {
+        return HashStoreTestUtils.inMemoryHashStore(4);
+    }
+}
@@ -0,0 +1,41 @@
+package fr.alainncls.merkletree.repository;
+
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimedHashStoreTest {
+
+    private final String TREE_ID = "ID_1";
+
+    private SimpleMeterRegistry meterRegistry;
+    private TimedHashStore hashStore;
+
+    @BeforeEach
+    public void setUp() {
+        MerkleTreeMetrics metrics = new MerkleTreeMetrics();
+        meterRegistry = new SimpleMeterRegistry();
+        metrics.bindTo(meterRegistry);
+        hashStore = new TimedHashStore(HashStoreTestUtils.inMemoryHashStore(2), "MongoHashStore", metrics);
+    }
+
+    @Test
+    void timesEachCallOnce() {
+        byte[] hashes = new byte[3 * 32];
+        hashes[32] = 1;
+
+        hashStore.writeTree(TREE_ID, 2, hashes);
+        hashStore.read(TREE_ID, 0, 0, 2);
+        hashStore.read(TREE_ID, 1, 0, 1);
+
+        assertThat(hashStore.readTree(TREE_ID, 2)).isEqualTo(hashes);
+        // The levels written and read by whole-tree calls are not timed on their own
+        assertThat(meterRegistry.get("merkletree.storage").tags("store", "MongoHashStore", "operation", "writeTree").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("merkletree.storage").tags("operation", "write").timer().count()).isZero();
+        assertThat(meterRegistry.get("merkletree.storage").tags("operation", "read").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("merkletree.storage").tags("operation", "readTree").timer().count()).isEqualTo(1);
+    }
+}
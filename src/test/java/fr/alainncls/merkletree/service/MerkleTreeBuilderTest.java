@@ -0,0 +1,159 @@
+package fr.alainncls.merkletree.service;
+
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.hash.Hex;
+import fr.alainncls.merkletree.hash.TreeHasher;
+import fr.alainncls.merkletree.model.TreeLayout;
+import fr.alainncls.merkletree.repository.HashStoreTestUtils;
+import fr.alainncls.merkletree.repository.MongoHashStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MerkleTreeBuilderTest {
+
+    private final String TREE_ID = "ID_1";
+    private final String NON_ASCII_ITEM_HASH = "9a9e2c5de6bb34b88cdbd1b63220e5c7c93f7161120da34bb5d54e75e13f0111";
+
+    private MerkleTreeBuilder merkleTreeBuilder;
+
+    @BeforeEach
+    public void setUp() {
+        MerkleTreeProperties properties = new MerkleTreeProperties();
+        properties.getBuild().setChunkSize(16);
+        merkleTreeBuilder = new MerkleTreeBuilder(properties, new MerkleTreeMetrics());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        merkleTreeBuilder.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 17, 100, 1025})
+    void parallelBuildMatchesSequentialBuild(int itemCount) {
+        List<String> items = IntStream.rangeClosed(1, itemCount).mapToObj(i -> "ITEM_" + i).collect(Collectors.toList());
+
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            for (HashMode hashMode : HashMode.values()) {
+                TreeHasher treeHasher = TreeHasher.of(algorithm, hashMode);
+                byte[] sequential = merkleTreeBuilder.build(items, treeHasher, false);
+                byte[] parallel = merkleTreeBuilder.build(items, treeHasher, true);
+
+                assertThat(parallel).isEqualTo(sequential);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 8, 13})
+    void appendMatchesFullBuild(int itemCount) {
+        TreeHasher treeHasher = TreeHasher.of(HashAlgorithm.SHA_256, HashMode.RAW);
+        List<String> items = IntStream.rangeClosed(1, itemCount).mapToObj(i -> "ITEM_" + i).collect(Collectors.toList());
+
+        for (int split = 1; split < itemCount; split++) {
+            MongoHashStore hashStore = HashStoreTestUtils.inMemoryHashStore(2);
+            hashStore.writeTree(TREE_ID, split, merkleTreeBuilder.build(items.subList(0, split), treeHasher));
+
+            byte[] siblings = hashStore.readNodes(TREE_ID, MerkleTreeBuilder.appendSiblings(split, itemCount));
+            byte[][] levels = merkleTreeBuilder.append(split, items.subList(split, itemCount), siblings, treeHasher);
+            for (int level = 0; level < levels.length; level++) {
+                hashStore.write(TREE_ID, level, split >> level, levels[level], 0, levels[level].length / 32);
+            }
+
+            assertThat(hashStore.readTree(TREE_ID, itemCount)).isEqualTo(merkleTreeBuilder.build(items, treeHasher));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 5, 6, 17, 100})
+    void streamingBuildMatchesFullBuild(int itemCount) {
+        TreeHasher treeHasher = TreeHasher.of(HashAlgorithm.SHA_256, HashMode.RAW);
+        List<String> items = IntStream.rangeClosed(1, itemCount).mapToObj(i -> "ITEM_" + i).collect(Collectors.toList());
+        MongoHashStore hashStore = HashStoreTestUtils.inMemoryHashStore(4);
+        StreamingTreeBuilder streamingTreeBuilder = new StreamingTreeBuilder(treeHasher, hashStore, TREE_ID, 4);
+
+        items.forEach(streamingTreeBuilder::add);
+        byte[] root = streamingTreeBuilder.finish();
+        byte[] hashes = merkleTreeBuilder.build(items, treeHasher);
+
+        assertThat(root).isEqualTo(Arrays.copyOfRange(hashes, hashes.length - 32, hashes.length));
+        assertThat(hashStore.readTree(TREE_ID, itemCount)).isEqualTo(hashes);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 17, 1025})
+    void buildReportsProgress(int itemCount) {
+        TreeHasher treeHasher = TreeHasher.of(HashAlgorithm.SHA_256, HashMode.RAW);
+        List<String> items = IntStream.rangeClosed(1, itemCount).mapToObj(i -> "ITEM_" + i).collect(Collectors.toList());
+
+        for (boolean parallel : new boolean[]{false, true}) {
+            BuildProgress progress = new BuildProgress();
+            merkleTreeBuilder.build(items, treeHasher, parallel, progress);
+
+            assertThat(progress.getLeavesHashed()).isEqualTo(itemCount);
+            assertThat(progress.getLevelsReduced()).isEqualTo(TreeLayout.height(itemCount) - 1);
+        }
+    }
+
+    @Test
+    void buildRecordsMetrics() {
+        MerkleTreeMetrics metrics = new MerkleTreeMetrics();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        metrics.bindTo(meterRegistry);
+        MerkleTreeBuilder meteredBuilder = new MerkleTreeBuilder(new MerkleTreeProperties(), metrics);
+        List<String> items = IntStream.rangeClosed(1, 5).mapToObj(i -> "ITEM_" + i).collect(Collectors.toList());
+
+        try {
+            meteredBuilder.build(items, TreeHasher.of(HashAlgorithm.SHA_256, HashMode.RAW));
+        } finally {
+            meteredBuilder.shutdown();
+        }
+
+        // 5 leaves, then 3, 2 and 1 nodes above them
+        assertThat(meterRegistry.get("merkletree.hashes").counter().count()).isEqualTo(11);
+        assertThat(meterRegistry.get("merkletree.build.leaves").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("merkletree.build.levels").timer().count()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 5, 10})
+    void updateMatchesFullBuild(int leafIndex) {
+        TreeHasher treeHasher = TreeHasher.of(HashAlgorithm.SHA_256, HashMode.HEX_CONCATENATION);
+        List<String> items = IntStream.rangeClosed(1, 11).mapToObj(i -> "ITEM_" + i).collect(Collectors.toList());
+        List<String> updatedItems = new ArrayList<>(items);
+        updatedItems.set(leafIndex, "UPDATED_ITEM");
+
+        MongoHashStore hashStore = HashStoreTestUtils.inMemoryHashStore(2);
+        hashStore.writeTree(TREE_ID, items.size(), merkleTreeBuilder.build(items, treeHasher));
+
+        byte[] siblings = hashStore.readNodes(TREE_ID, TreeLayout.siblings(items.size(), leafIndex));
+        byte[] path = merkleTreeBuilder.update(items.size(), leafIndex, "UPDATED_ITEM", siblings, treeHasher);
+        hashStore.writeNodes(TREE_ID, TreeLayout.path(items.size(), leafIndex), path);
+
+        assertThat(hashStore.readTree(TREE_ID, items.size())).isEqualTo(merkleTreeBuilder.build(updatedItems, treeHasher));
+    }
+
+    @Test
+    void nonAsciiItemsAreHashedAsUtf8() {
+        List<String> items = List.of("ITÉM_1", "ITEM_€");
+
+        byte[] hashes = merkleTreeBuilder.build(items, TreeHasher.of(HashAlgorithm.SHA_256, HashMode.RAW));
+
+        assertThat(Hex.encode(hashes, 0, 32)).isEqualTo(NON_ASCII_ITEM_HASH);
+    }
+}
@@ -0,0 +1,57 @@
+package fr.alainncls.merkletree.service;
+
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.model.MerkleTree;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MerkleTreeCacheTest {
+
+    @Test
+    void hitsAndMissesAreMeasured() {
+        MerkleTreeCache merkleTreeCache = new MerkleTreeCache(new MerkleTreeProperties());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        merkleTreeCache.bindTo(registry);
+
+        merkleTreeCache.get("ID_1", id -> MerkleTree.builder().id(id).hashes(new byte[64]).build());
+        merkleTreeCache.get("ID_1", id -> MerkleTree.builder().id(id).build());
+        merkleTreeCache.getIfPresent("ID_2");
+
+        assertThat(registry.get("cache.gets").tag("cache", MerkleTreeCache.NAME).tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", MerkleTreeCache.NAME).tag("result", "miss").functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void treesLargerThanTheCacheAreNotKept() {
+        MerkleTreeProperties properties = new MerkleTreeProperties();
+        properties.getCache().setMaximumWeight(DataSize.ofKilobytes(1));
+        MerkleTreeCache merkleTreeCache = new MerkleTreeCache(properties);
+
+        merkleTreeCache.put(MerkleTree.builder().id("ID_1").hashes(new byte[2048]).build());
+        merkleTreeCache.put(MerkleTree.builder().id("ID_2").hashes(new byte[64]).build());
+
+        assertThat(merkleTreeCache.getIfPresent("ID_1")).isNull();
+        assertThat(merkleTreeCache.getIfPresent("ID_2")).isNotNull();
+    }
+
+    @Test
+    void treesExpireAfterWrite() {
+        MerkleTreeProperties properties = new MerkleTreeProperties();
+        properties.getCache().setExpireAfterWrite(Duration.ofSeconds(30));
+        AtomicLong nanos = new AtomicLong();
+        MerkleTreeCache merkleTreeCache = new MerkleTreeCache(properties, nanos::get);
+
+        merkleTreeCache.put(MerkleTree.builder().id("ID_1").hashes(new byte[64]).build());
+        nanos.addAndGet(Duration.ofSeconds(29).toNanos());
+        assertThat(merkleTreeCache.getIfPresent("ID_1")).isNotNull();
+
+        nanos.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertThat(merkleTreeCache.getIfPresent("ID_1")).isNull();
+    }
+}
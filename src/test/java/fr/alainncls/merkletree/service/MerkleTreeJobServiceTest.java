@@ -0,0 +1,118 @@
+package fr.alainncls.merkletree.service;
+
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.exception.InvalidItemsException;
+import fr.alainncls.merkletree.exception.JobQueueFullException;
+import fr.alainncls.merkletree.exception.MerkleTreeJobNotFoundException;
+import fr.alainncls.merkletree.model.InputItems;
+import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.model.MerkleTreeJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MerkleTreeJobServiceTest {
+
+    private final InputItems inputItems = InputItems.builder().items(List.of("ITEM_1", "ITEM_2", "ITEM_3", "ITEM_4")).build();
+    private final MerkleTree merkleTree = MerkleTree.builder().id("ID_1").leafCount(4).height(3).build();
+
+    private MerkleTreeService merkleTreeService;
+    private MerkleTreeJobService merkleTreeJobService;
+
+    @BeforeEach
+    public void setUp() {
+        MerkleTreeProperties properties = new MerkleTreeProperties();
+        properties.getJobs().setConcurrency(1);
+        properties.getJobs().setQueueCapacity(1);
+
+        merkleTreeService = mock(MerkleTreeService.class);
+        merkleTreeJobService = new MerkleTreeJobService(merkleTreeService, properties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        merkleTreeJobService.shutdown();
+    }
+
+    @Test
+    void submit() throws InterruptedException {
+        when(merkleTreeService.generateMerkleTree(any(InputItems.class), any(BuildProgress.class))).thenReturn(merkleTree);
+
+        MerkleTreeJob submitted = merkleTreeJobService.submit(inputItems);
+
+        assertThat(submitted.getId()).isNotNull();
+        assertThat(submitted.getLeafCount()).isEqualTo(4);
+        assertThat(submitted.getLevelCount()).isEqualTo(2);
+
+        MerkleTreeJob result = awaitFinished(submitted.getId());
+        assertThat(result.getStatus()).isEqualTo(MerkleTreeJob.Status.DONE);
+        assertThat(result.getTreeId()).isEqualTo("ID_1");
+        assertThat(result.getError()).isNull();
+    }
+
+    @Test
+    void submitFailing() throws InterruptedException {
+        when(merkleTreeService.generateMerkleTree(any(InputItems.class), any(BuildProgress.class))).thenThrow(new IllegalStateException("Storage is down"));
+
+        MerkleTreeJob result = awaitFinished(merkleTreeJobService.submit(inputItems).getId());
+
+        assertThat(result.getStatus()).isEqualTo(MerkleTreeJob.Status.FAILED);
+        assertThat(result.getTreeId()).isNull();
+        assertThat(result.getError()).isEqualTo("Storage is down");
+    }
+
+    @Test
+    void submitQueueFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(merkleTreeService.generateMerkleTree(any(InputItems.class), any(BuildProgress.class))).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return merkleTree;
+        });
+
+        MerkleTreeJob running = merkleTreeJobService.submit(inputItems);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        MerkleTreeJob queued = merkleTreeJobService.submit(inputItems);
+
+        assertThat(merkleTreeJobService.getJob(running.getId()).getStatus()).isEqualTo(MerkleTreeJob.Status.RUNNING);
+        assertThat(merkleTreeJobService.getJob(queued.getId()).getStatus()).isEqualTo(MerkleTreeJob.Status.QUEUED);
+        assertThrows(JobQueueFullException.class, () -> merkleTreeJobService.submit(inputItems));
+
+        release.countDown();
+        assertThat(awaitFinished(queued.getId()).getStatus()).isEqualTo(MerkleTreeJob.Status.DONE);
+    }
+
+    @Test
+    void submitEmpty() {
+        InputItems emptyItems = InputItems.builder().items(Collections.emptyList()).build();
+
+        assertThrows(InvalidItemsException.class, () -> merkleTreeJobService.submit(emptyItems));
+    }
+
+    @Test
+    void getJobNotFound() {
+        assertThrows(MerkleTreeJobNotFoundException.class, () -> merkleTreeJobService.getJob("UNKNOWN"));
+    }
+
+    private MerkleTreeJob awaitFinished(String id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        MerkleTreeJob job = merkleTreeJobService.getJob(id);
+        while (job.getStatus() != MerkleTreeJob.Status.DONE && job.getStatus() != MerkleTreeJob.Status.FAILED && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            job = merkleTreeJobService.getJob(id);
+        }
+        return job;
+    }
+}
@@ -1,26 +1,76 @@
 package fr.alainncls.merkletree.service;
 
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.exception.InvalidBulkException;
+import fr.alainncls.merkletree.exception.InvalidItemsException;
+import fr.alainncls.merkletree.exception.InvalidPageException;
+import fr.alainncls.merkletree.exception.InvalidProofException;
+import fr.alainncls.merkletree.exception.InvalidRangeException;
+import fr.alainncls.merkletree.exception.MerkleTreeConflictException;
+import fr.alainncls.merkletree.exception.MerkleTreeDiffException;
+import fr.alainncls.merkletree.exception.MerkleTreeLeafException;
+import fr.alainncls.merkletree.exception.MerkleTreeLevelException;
+import fr.alainncls.merkletree.exception.MerkleTreeNodeException;
 import fr.alainncls.merkletree.exception.MerkleTreeNotFoundException;
+import fr.alainncls.merkletree.exception.MerkleTreeTooLargeException;
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.hash.Hex;
+import fr.alainncls.merkletree.hash.TreeHasher;
+import fr.alainncls.merkletree.model.BulkMerkleTreeResult;
+import fr.alainncls.merkletree.model.InputItem;
 import fr.alainncls.merkletree.model.InputItems;
+import fr.alainncls.merkletree.model.InputLeaves;
+import fr.alainncls.merkletree.model.MerkleMultiProof;
+import fr.alainncls.merkletree.model.MerkleProof;
+import fr.alainncls.merkletree.model.MerkleSubtree;
 import fr.alainncls.merkletree.model.MerkleTree;
-import fr.alainncls.merkletree.model.Node;
+import fr.alainncls.merkletree.model.MerkleTreeMetadata;
+import fr.alainncls.merkletree.model.MerkleTreePage;
+import fr.alainncls.merkletree.model.ProofStep;
+import fr.alainncls.merkletree.model.TreeLayout;
+import fr.alainncls.merkletree.repository.HashStore;
+import fr.alainncls.merkletree.repository.HashStoreTestUtils;
 import fr.alainncls.merkletree.repository.MerkleTreeRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-
+import org.mockito.Spy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.openMocks;
 
 class MerkleTreeServiceTest {
 
-    private final InputItems inputItems = InputItems.builder().items(List.of("ITEM_1", "ITEM_2", "ITEM_3", "ITEM_4")).build();
+    private final InputItems inputItems = InputItems.builder().items(List.of("ITEM_1", "ITEM_2", "ITEM_3", "ITEM_4")).hashMode(HashMode.HEX_CONCATENATION).build();
     final String ID = "ID_1";
 
     // Hashes computed via https://emn178.github.io/online-tools/sha256.html
@@ -32,45 +82,107 @@ class MerkleTreeServiceTest {
     private final String HASH_ITEM_3_4 = "a56637dd5d3b1d8ac18e702ff50e0ae86470ef0d9aa68f72b34af4fb6b901693";
     private final String HASH_ITEM_1_2_3_4 = "0372ff538dc9f033eb1cd7610a75b92478bd37906705a006d07b26229ac3b0c7";
 
-    private final Node node1 = Node.builder().hash(HASH_ITEM_1).build();
-    private final Node node2 = Node.builder().hash(HASH_ITEM_2).build();
-    private final Node node3 = Node.builder().hash(HASH_ITEM_3).build();
-    private final Node node4 = Node.builder().hash(HASH_ITEM_4).build();
-    private final Node node12 = Node.builder().hash(HASH_ITEM_1_2).leftNode(node1).rightNode(node2).build();
-    private final Node node34 = Node.builder().hash(HASH_ITEM_3_4).leftNode(node3).rightNode(node4).build();
-    private final Node nodeRoot = Node.builder().hash(HASH_ITEM_1_2_3_4).leftNode(node12).rightNode(node34).build();
+    private final String HASH_ITEM_1_2_3 = "7bd80b5cfeef0111b625f395db318c4c3cf8c437dd729e5fd5e56e422ffca9af";
+
+    // Hashes of the raw concatenation of both child digests
+    private final String RAW_HASH_ITEM_1_2 = "b808dca77cfe2817e3af833c03b7d5e38d3dc26f27abd18827097e1e6bc5ce7e";
+    private final String RAW_HASH_ITEM_3_4 = "b1407fe6c54b7069f47cc286f66c233c2695bc85715feb898cbca0f1275af2a4";
+    private final String RAW_HASH_ITEM_1_2_3_4 = "4d96d0f326e3218bcdee18db6bdfb5798dc97b7befbaeffd1dca7f29e7626bca";
 
-    private final MerkleTree merkleTree = MerkleTree.builder().id("ID_1").children(nodeRoot).build();
+    private final byte[] hashes = Hex.decode(HASH_ITEM_1 + HASH_ITEM_2 + HASH_ITEM_3 + HASH_ITEM_4 + HASH_ITEM_1_2 + HASH_ITEM_3_4 + HASH_ITEM_1_2_3_4);
+
+    private final MerkleTree merkleTree = MerkleTree.builder().id("ID_1").leafCount(4).height(3).algorithm(HashAlgorithm.SHA_256).hashMode(HashMode.HEX_CONCATENATION).root(HASH_ITEM_1_2_3_4).build();
 
     @Mock
     private MerkleTreeRepository merkleTreeRepository;
 
+    @Spy
+    private HashStore hashStore = HashStoreTestUtils.inMemoryHashStore(2);
+
+    @Spy
+    private MerkleTreeProperties merkleTreeProperties = new MerkleTreeProperties();
+
+    @Spy
+    private MerkleTreeCache merkleTreeCache = new MerkleTreeCache(new MerkleTreeProperties());
+
+    @Spy
+    private MerkleTreeMetrics merkleTreeMetrics = new MerkleTreeMetrics();
+
+    @Spy
+    private MerkleTreeBuilder merkleTreeBuilder = new MerkleTreeBuilder(new MerkleTreeProperties(), merkleTreeMetrics);
+
     @InjectMocks
     private MerkleTreeService merkleTreeService;
 
     @BeforeEach
     public void setUp() {
         openMocks(this);
+        storeMerkleTree(merkleTree, hashes);
+        when(merkleTreeRepository.save(any(MerkleTree.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(merkleTreeRepository.commitWriteLease(any(MerkleTree.class), anyString())).thenReturn(true);
+        when(merkleTreeRepository.deleteWithWriteLease(anyString(), anyString())).thenReturn(true);
     }
 
     @Test
-    void getAllMerkleTrees() {
-        List<MerkleTree> expectedMerkleTrees = List.of(merkleTree);
+    void getMerkleTrees() {
+        MerkleTreeMetadata metadata = MerkleTreeMetadata.of(merkleTree);
+        MerkleTreeMetadata otherMetadata = metadata.toBuilder().id("ID_2").build();
 
-        when(merkleTreeRepository.findAll()).thenReturn(expectedMerkleTrees);
+        when(merkleTreeRepository.findAllBy(PageRequest.of(0, 2, Sort.by("id")))).thenReturn(List.of(metadata, otherMetadata));
+        when(merkleTreeRepository.findByIdGreaterThan("ID_2", PageRequest.of(0, 2, Sort.by("id")))).thenReturn(List.of());
 
-        List<MerkleTree> result = merkleTreeService.getAllMerkleTrees();
+        MerkleTreePage firstPage = merkleTreeService.getMerkleTrees(null, 2);
+        MerkleTreePage lastPage = merkleTreeService.getMerkleTrees(firstPage.getNext(), 2);
 
-        assertThat(result).isNotNull().hasSize(expectedMerkleTrees.size()).isEqualTo(expectedMerkleTrees);
+        assertThat(firstPage.getTrees()).containsExactly(metadata, otherMetadata);
+        assertThat(firstPage.getNext()).isEqualTo("ID_2");
+        assertThat(lastPage.getTrees()).isEmpty();
+        assertThat(lastPage.getNext()).isNull();
+        verify(merkleTreeRepository, never()).findAll();
     }
 
     @Test
-    void getMerkleTree() {
-        when(merkleTreeRepository.findById(ID)).thenReturn(Optional.of(merkleTree));
+    void getMerkleTreesWithInvalidLimit() {
+        assertThrows(InvalidPageException.class, () -> merkleTreeService.getMerkleTrees(null, 0));
+        assertThrows(InvalidPageException.class, () -> merkleTreeService.getMerkleTrees(null, MerkleTreeService.MAX_PAGE_SIZE + 1));
+    }
 
+    @Test
+    void getMerkleTree() {
         MerkleTree result = merkleTreeService.getMerkleTree(ID);
 
         assertThat(result).isNotNull().isEqualTo(merkleTree);
+        assertThat(result.getLevel(1)).containsExactly(HASH_ITEM_1_2, HASH_ITEM_3_4);
+    }
+
+    @Test
+    void getMerkleTreeFromCache() {
+        merkleTreeService.getMerkleTree(ID);
+        clearInvocations(hashStore);
+
+        MerkleTree result = merkleTreeService.getMerkleTree(ID);
+        MerkleProof merkleProof = merkleTreeService.getMerkleProof(ID, 2);
+
+        verify(merkleTreeRepository, times(1)).findById(ID);
+        verify(merkleTreeRepository, never()).findMetadataById(ID);
+        verifyNoInteractions(hashStore);
+        assertThat(result.getHashes()).isEqualTo(hashes);
+        assertThat(merkleTreeService.getMerkleTreeLevel(ID, 1, 0, null)).containsExactly(HASH_ITEM_1_2, HASH_ITEM_3_4);
+        assertThat(merkleProof.getSiblings()).extracting(ProofStep::getHash).containsExactly(HASH_ITEM_4, HASH_ITEM_1_2);
+    }
+
+    @Test
+    void updatesInvalidateCache() {
+        merkleTreeService.getMerkleTree(ID);
+
+        merkleTreeService.updateItem(ID, 3, InputItem.builder().item("ITEM_4").build());
+
+        assertThat(merkleTreeCache.getIfPresent(ID)).isNull();
+
+        merkleTreeService.getMerkleTree(ID);
+        merkleTreeService.deleteMerkleTree(ID);
+
+        assertThat(merkleTreeCache.getIfPresent(ID)).isNull();
     }
 
     @Test
@@ -78,41 +190,194 @@ class MerkleTreeServiceTest {
         assertThrows(MerkleTreeNotFoundException.class, () -> merkleTreeService.getMerkleTree("UNKNOWN_ID"));
     }
 
+    @Test
+    void getMerkleTreeTooLarge() {
+        // The 7 nodes of the tree take 224 bytes
+        merkleTreeProperties.getStorage().setMaxWholeTreeSize(DataSize.ofBytes(200));
+
+        assertThrows(MerkleTreeTooLargeException.class, () -> merkleTreeService.getMerkleTree(ID));
+        verify(hashStore, never()).readTree(anyString(), anyLong());
+        assertThat(merkleTreeService.getMerkleTreeLevel(ID, 2, 0, null)).containsExactly(HASH_ITEM_1, HASH_ITEM_2, HASH_ITEM_3, HASH_ITEM_4);
+    }
+
     @Test
     void generateMerkleTree() {
-        MerkleTree unsavedMerkleTree = MerkleTree.builder().children(merkleTree.getChildren()).build();
+        MerkleTree result = merkleTreeService.generateMerkleTree(inputItems);
 
-        when(merkleTreeRepository.save(unsavedMerkleTree)).thenReturn(merkleTree);
+        verify(merkleTreeRepository, times(1)).save(any(MerkleTree.class));
+        assertThat(result.getCreatedAt()).isNotNull();
+        assertThat(result.toBuilder().id(ID).hashes(null).createdAt(null).build()).isEqualTo(merkleTree);
+        assertThat(hashStore.readTree(result.getId(), 4)).isEqualTo(hashes);
+    }
 
-        merkleTreeService.generateMerkleTree(inputItems);
+    @Test
+    void generateMerkleTreeHeaderNotSaved() {
+        when(merkleTreeRepository.save(any(MerkleTree.class))).thenThrow(new IllegalStateException("Header not saved"));
 
-        verify(merkleTreeRepository, times(1)).save(unsavedMerkleTree);
+        assertThatThrownBy(() -> merkleTreeService.generateMerkleTree(inputItems)).isInstanceOf(IllegalStateException.class);
+
+        ArgumentCaptor<MerkleTree> saved = ArgumentCaptor.forClass(MerkleTree.class);
+        verify(merkleTreeRepository).save(saved.capture());
+        assertThatThrownBy(() -> hashStore.read(saved.getValue().getId(), 0, 0, 1)).isInstanceOf(IllegalStateException.class);
     }
 
     @Test
-    void deleteMerkleTree() {
-        doNothing().when(merkleTreeRepository).deleteById(ID);
+    void generateMerkleTreeWithRawHashMode() {
+        InputItems rawInputItems = InputItems.builder().items(inputItems.getItems()).build();
+        byte[] rawHashes = Hex.decode(HASH_ITEM_1 + HASH_ITEM_2 + HASH_ITEM_3 + HASH_ITEM_4 + RAW_HASH_ITEM_1_2 + RAW_HASH_ITEM_3_4 + RAW_HASH_ITEM_1_2_3_4);
+
+        MerkleTree result = merkleTreeService.generateMerkleTree(rawInputItems);
+
+        assertThat(result.getHashMode()).isEqualTo(HashMode.RAW);
+        assertThat(result.getRoot()).isEqualTo(RAW_HASH_ITEM_1_2_3_4);
+        assertThat(hashStore.readTree(result.getId(), 4)).isEqualTo(rawHashes);
+    }
+
+    @Test
+    void generateMerkleTreeWithOddItemCount() {
+        InputItems oddInputItems = InputItems.builder().items(List.of("ITEM_1", "ITEM_2", "ITEM_3")).hashMode(HashMode.HEX_CONCATENATION).build();
+        byte[] oddHashes = Hex.decode(HASH_ITEM_1 + HASH_ITEM_2 + HASH_ITEM_3 + HASH_ITEM_1_2 + HASH_ITEM_3 + HASH_ITEM_1_2_3);
+
+        MerkleTree result = merkleTreeService.generateMerkleTree(oddInputItems);
+
+        assertThat(result.getRoot()).isEqualTo(HASH_ITEM_1_2_3);
+        assertThat(hashStore.readTree(result.getId(), 3)).isEqualTo(oddHashes);
+        assertThat(result.getLevel(1)).containsExactly(HASH_ITEM_1_2, HASH_ITEM_3);
+    }
+
+    @Test
+    void generateMerkleTreeWithoutItems() {
+        InputItems emptyInputItems = InputItems.builder().items(List.of()).build();
+
+        assertThrows(InvalidItemsException.class, () -> merkleTreeService.generateMerkleTree(emptyInputItems));
+    }
+
+    @Test
+    void generateMerkleTrees() {
+        InputItems oddInputItems = InputItems.builder().items(List.of("ITEM_1", "ITEM_2", "ITEM_3")).hashMode(HashMode.HEX_CONCATENATION).build();
+        InputItems emptyInputItems = InputItems.builder().items(List.of()).build();
+
+        List<BulkMerkleTreeResult> results = merkleTreeService.generateMerkleTrees(List.of(inputItems, emptyInputItems, oddInputItems));
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).getRoot()).isEqualTo(HASH_ITEM_1_2_3_4);
+        assertThat(results.get(0).getError()).isNull();
+        assertThat(results.get(1)).isEqualTo(BulkMerkleTreeResult.builder().error("A Merkle tree needs at least one item").build());
+        assertThat(results.get(2).getRoot()).isEqualTo(HASH_ITEM_1_2_3);
+        assertThat(hashStore.readTree(results.get(0).getId(), 4)).isEqualTo(hashes);
+        verify(merkleTreeRepository, times(1)).insertUnordered(argThat(merkleTrees -> merkleTrees.size() == 2));
+        verify(merkleTreeRepository, never()).save(any(MerkleTree.class));
+    }
+
+    @Test
+    void generateMerkleTreesWithStorageFailure() {
+        when(merkleTreeRepository.insertUnordered(any())).thenReturn(Set.of(1));
+
+        List<BulkMerkleTreeResult> results = merkleTreeService.generateMerkleTrees(List.of(inputItems, inputItems));
+
+        assertThat(results.get(0).getId()).isNotNull();
+        assertThat(results.get(1)).isEqualTo(BulkMerkleTreeResult.builder().error("The tree could not be stored").build());
+        verify(hashStore, times(1)).delete(anyString(), eq(4L));
+    }
 
+    @Test
+    void generateMerkleTreesWithHashStoreError() {
+        doThrow(new IllegalStateException("Disk full")).when(hashStore).writeTrees(any());
+
+        List<BulkMerkleTreeResult> results = merkleTreeService.generateMerkleTrees(List.of(inputItems, inputItems));
+
+        assertThat(results).containsOnly(BulkMerkleTreeResult.builder().error("The tree could not be stored").build());
+        verify(merkleTreeRepository, times(1)).insertUnordered(List.of());
+        verify(hashStore, times(2)).delete(anyString(), eq(4L));
+    }
+
+    @Test
+    void generateMerkleTreesWithRepositoryError() {
+        when(merkleTreeRepository.insertUnordered(any())).thenThrow(new IllegalStateException("Connection reset"));
+
+        List<BulkMerkleTreeResult> results = merkleTreeService.generateMerkleTrees(List.of(inputItems, inputItems));
+
+        assertThat(results).containsOnly(BulkMerkleTreeResult.builder().error("The tree could not be stored").build());
+        verify(merkleTreeRepository, times(1)).deleteAllById(argThat(ids -> ((List<?>) ids).size() == 2));
+        verify(hashStore, times(2)).delete(anyString(), eq(4L));
+    }
+
+    @Test
+    void generateMerkleTreesWithRepositoryAndCleanupErrors() {
+        when(merkleTreeRepository.insertUnordered(any())).thenThrow(new IllegalStateException("Connection reset"));
+        doThrow(new IllegalStateException("Connection reset")).when(merkleTreeRepository).deleteAllById(any());
+
+        List<BulkMerkleTreeResult> results = merkleTreeService.generateMerkleTrees(List.of(inputItems, inputItems));
+
+        // The headers may still exist, so their chunks are kept
+        assertThat(results).containsOnly(BulkMerkleTreeResult.builder().error("The tree could not be stored").build());
+        verify(hashStore, never()).delete(anyString(), anyLong());
+    }
+
+    @Test
+    void generateMerkleTreesWithInvalidBulkSize() {
+        merkleTreeProperties.getBuild().setMaxBulkSize(1);
+
+        assertThrows(InvalidBulkException.class, () -> merkleTreeService.generateMerkleTrees(List.of()));
+        assertThrows(InvalidBulkException.class, () -> merkleTreeService.generateMerkleTrees(List.of(inputItems, inputItems)));
+    }
+
+    @Test
+    void deleteMerkleTree() {
         merkleTreeService.deleteMerkleTree(ID);
 
-        verify(merkleTreeRepository, times(1)).deleteById(ID);
+        verify(merkleTreeRepository, times(1)).deleteWithWriteLease(eq(ID), anyString());
+        verify(hashStore, times(1)).delete(ID, 4);
     }
 
     @Test
-    void getMerkleTreeRoot() {
-        when(merkleTreeRepository.findById(ID)).thenReturn(Optional.of(merkleTree));
+    void deleteMissingMerkleTree() {
+        merkleTreeService.deleteMerkleTree("UNKNOWN_ID");
+
+        verify(merkleTreeRepository, never()).deleteWithWriteLease(eq("UNKNOWN_ID"), anyString());
+        verifyNoInteractions(hashStore);
+    }
+
+    @Test
+    void deleteMerkleTreeLeasedByAnotherWriter() {
+        when(merkleTreeRepository.acquireWriteLease(eq(ID), anyString(), any())).thenReturn(Optional.empty());
+        when(merkleTreeRepository.existsById(ID)).thenReturn(true);
 
+        assertThrows(MerkleTreeConflictException.class, () -> merkleTreeService.deleteMerkleTree(ID));
+        verify(merkleTreeRepository, never()).deleteWithWriteLease(eq(ID), anyString());
+        verifyNoInteractions(hashStore);
+    }
+
+    @Test
+    void deleteMerkleTreeWithExpiredLease() {
+        when(merkleTreeRepository.deleteWithWriteLease(eq(ID), anyString())).thenReturn(false);
+
+        assertThrows(MerkleTreeConflictException.class, () -> merkleTreeService.deleteMerkleTree(ID));
+        verifyNoInteractions(hashStore);
+    }
+
+    @Test
+    void getMerkleTreeMetadata() {
+        MerkleTreeMetadata result = merkleTreeService.getMerkleTreeMetadata(ID);
+
+        assertThat(result.getHeight()).isEqualTo(3);
+        assertThat(result.getLeafCount()).isEqualTo(4);
+        assertThat(result.getRoot()).isEqualTo(HASH_ITEM_1_2_3_4);
+    }
+
+    @Test
+    void getMerkleTreeRoot() {
         String result = merkleTreeService.getMerkleTreeRoot(ID);
 
         assertThat(result).isNotNull().isEqualTo(HASH_ITEM_1_2_3_4);
+        verify(merkleTreeRepository, never()).findById(ID);
+        verifyNoInteractions(hashStore);
     }
 
     @Test
     void getMerkleTreeHeight() {
         int HEIGHT = 3;
 
-        when(merkleTreeRepository.findById(ID)).thenReturn(Optional.of(merkleTree));
-
         int result = merkleTreeService.getMerkleTreeHeight(ID);
 
         assertThat(result).isEqualTo(HEIGHT);
@@ -120,12 +385,332 @@ class MerkleTreeServiceTest {
 
     @Test
     void getMerkleTreeLevel() {
-        when(merkleTreeRepository.findById(ID)).thenReturn(Optional.of(merkleTree));
-
-        List<String> result = merkleTreeService.getMerkleTreeLevel(ID, 1);
+        List<String> result = merkleTreeService.getMerkleTreeLevel(ID, 1, 0, null).collect(Collectors.toList());
 
         assertThat(result).isNotNull().hasSize(2);
         assertThat(result.get(0)).isEqualTo(HASH_ITEM_1_2);
         assertThat(result.get(1)).isEqualTo(HASH_ITEM_3_4);
     }
+
+    @Test
+    void getMerkleTreeLevelRange() {
+        merkleTreeProperties.getStorage().setChunkSize(2);
+
+        Stream<String> result = merkleTreeService.getMerkleTreeLevel(ID, 2, 1, 2L);
+
+        verifyNoInteractions(hashStore);
+        assertThat(result).containsExactly(HASH_ITEM_2, HASH_ITEM_3);
+        verify(hashStore).read(ID, 0, 1L, 2);
+        assertThat(merkleTreeService.getMerkleTreeLevel(ID, 2, 3, 10L)).containsExactly(HASH_ITEM_4);
+        assertThat(merkleTreeService.getMerkleTreeLevel(ID, 2, 5, null)).isEmpty();
+    }
+
+    @Test
+    void getMerkleTreeLevelNotFound() {
+        assertThrows(MerkleTreeLevelException.class, () -> merkleTreeService.getMerkleTreeLevel(ID, 3, 0, null));
+        assertThrows(InvalidRangeException.class, () -> merkleTreeService.getMerkleTreeLevel(ID, 1, -1, null));
+    }
+
+    @Test
+    void getMerkleSubtree() {
+        MerkleSubtree result = merkleTreeService.getMerkleSubtree(ID, 1, 1, 5);
+
+        assertThat(result.getLevels()).containsExactly(List.of(HASH_ITEM_3_4), List.of(HASH_ITEM_3, HASH_ITEM_4));
+        assertThat(merkleTreeService.getMerkleSubtree(ID, 0, 0, 0).getLevels()).containsExactly(List.of(HASH_ITEM_1_2_3_4));
+    }
+
+    @Test
+    void getMerkleSubtreeNodeNotFound() {
+        assertThrows(MerkleTreeNodeException.class, () -> merkleTreeService.getMerkleSubtree(ID, 1, 2, 1));
+        assertThrows(InvalidRangeException.class, () -> merkleTreeService.getMerkleSubtree(ID, 1, 0, MerkleTreeService.MAX_SUBTREE_DEPTH + 1));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 5, 100, 1000})
+    void diffMerkleTrees(int leafCount) {
+        List<String> items = IntStream.range(0, leafCount).mapToObj(i -> "ITEM_" + i).collect(Collectors.toList());
+        List<String> otherItems = new ArrayList<>(items);
+        Set<Long> changed = Set.of(0L, 3L, 64L, 99L, 511L, 999L);
+        changed.stream().filter(index -> index < leafCount).forEach(index -> otherItems.set(index.intValue(), "CHANGED_" + index));
+
+        String id = storeGeneratedTree("ID_A", items);
+        String otherId = storeGeneratedTree("ID_B", otherItems);
+
+        long[] expected = changed.stream().filter(index -> index < leafCount).mapToLong(Long::longValue).sorted().toArray();
+        assertThat(merkleTreeService.diffMerkleTrees(id, otherId).toArray()).containsExactly(expected);
+        assertThat(merkleTreeService.diffMerkleTrees(id, id).toArray()).isEmpty();
+    }
+
+    @Test
+    void diffMerkleTreesOfDifferentSizes() {
+        List<String> items = IntStream.range(0, 13).mapToObj(i -> "ITEM_" + i).collect(Collectors.toList());
+        List<String> otherItems = new ArrayList<>(items.subList(0, 6));
+        otherItems.set(2, "CHANGED_2");
+
+        String id = storeGeneratedTree("ID_A", items);
+        String otherId = storeGeneratedTree("ID_B", otherItems);
+
+        long[] expected = {2, 6, 7, 8, 9, 10, 11, 12};
+        assertThat(merkleTreeService.diffMerkleTrees(id, otherId).toArray()).containsExactly(expected);
+        assertThat(merkleTreeService.diffMerkleTrees(otherId, id).toArray()).containsExactly(expected);
+    }
+
+    @Test
+    void diffMerkleTreesOnlyReadsChangedSubtrees() {
+        List<String> items = IntStream.range(0, 1 << 12).mapToObj(i -> "ITEM_" + i).collect(Collectors.toList());
+        List<String> otherItems = new ArrayList<>(items);
+        otherItems.set(1234, "CHANGED_1234");
+
+        String id = storeGeneratedTree("ID_A", items);
+        String otherId = storeGeneratedTree("ID_B", otherItems);
+        clearInvocations(hashStore);
+
+        assertThat(merkleTreeService.diffMerkleTrees(id, otherId).toArray()).containsExactly(1234);
+        // Two nodes per level and per tree, at most
+        verify(hashStore, times(2 * 13)).readNodes(anyString(), argThat(positions -> positions.size() <= 2));
+    }
+
+    @Test
+    void diffMerkleTreesWithDifferentHashes() {
+        MerkleTree rawMerkleTree = merkleTree.toBuilder().id("ID_2").hashMode(HashMode.RAW).build();
+        storeMerkleTree(rawMerkleTree, hashes);
+
+        assertThrows(MerkleTreeDiffException.class, () -> merkleTreeService.diffMerkleTrees(ID, "ID_2"));
+        assertThrows(MerkleTreeNotFoundException.class, () -> merkleTreeService.diffMerkleTrees(ID, "UNKNOWN"));
+    }
+
+    @Test
+    void getMerkleProof() {
+        MerkleProof result = merkleTreeService.getMerkleProof(ID, 2);
+
+        assertThat(result.getRoot()).isEqualTo(HASH_ITEM_1_2_3_4);
+        assertThat(result.getLeaf()).isEqualTo(HASH_ITEM_3);
+        assertThat(result.getSiblings()).containsExactly(
+                ProofStep.builder().hash(HASH_ITEM_4).position(ProofStep.Position.RIGHT).build(),
+                ProofStep.builder().hash(HASH_ITEM_1_2).position(ProofStep.Position.LEFT).build());
+        assertThat(merkleTreeService.verifyMerkleProof(result)).isTrue();
+    }
+
+    @Test
+    void getMerkleProofOfPromotedLeaf() {
+        byte[] oddHashes = Hex.decode(HASH_ITEM_1 + HASH_ITEM_2 + HASH_ITEM_3 + HASH_ITEM_1_2 + HASH_ITEM_3 + HASH_ITEM_1_2_3);
+        MerkleTree oddMerkleTree = MerkleTree.builder().id(ID).leafCount(3).height(3).algorithm(HashAlgorithm.SHA_256).hashMode(HashMode.HEX_CONCATENATION).root(HASH_ITEM_1_2_3).build();
+
+        storeMerkleTree(oddMerkleTree, oddHashes);
+
+        MerkleProof result = merkleTreeService.getMerkleProof(ID, 2);
+
+        assertThat(result.getSiblings()).containsExactly(ProofStep.builder().hash(HASH_ITEM_1_2).position(ProofStep.Position.LEFT).build());
+        assertThat(merkleTreeService.verifyMerkleProof(result)).isTrue();
+    }
+
+    @Test
+    void getMerkleProofByItem() {
+        MerkleProof result = merkleTreeService.getMerkleProof(ID, "ITEM_3");
+
+        assertThat(result.getLeafIndex()).isEqualTo(2);
+        assertThat(result.getLeaf()).isEqualTo(HASH_ITEM_3);
+    }
+
+    @Test
+    void getMerkleProofLeafNotFound() {
+        assertThrows(MerkleTreeLeafException.class, () -> merkleTreeService.getMerkleProof(ID, 4));
+        assertThrows(MerkleTreeLeafException.class, () -> merkleTreeService.getMerkleProof(ID, "ITEM_5"));
+    }
+
+    @Test
+    void verifyTamperedMerkleProof() {
+        MerkleProof merkleProof = merkleTreeService.getMerkleProof(ID, 2);
+        merkleProof.setLeaf(HASH_ITEM_4);
+
+        assertThat(merkleTreeService.verifyMerkleProof(merkleProof)).isFalse();
+    }
+
+    @Test
+    void verifyMalformedMerkleProof() {
+        MerkleProof merkleProof = MerkleProof.builder().root(HASH_ITEM_1_2_3_4).leaf("NOT_A_HASH").build();
+
+        assertThrows(InvalidProofException.class, () -> merkleTreeService.verifyMerkleProof(merkleProof));
+    }
+
+    @Test
+    void getMerkleMultiProof() {
+        MerkleMultiProof result = merkleTreeService.getMerkleMultiProof(ID, InputLeaves.builder().leafIndices(List.of(1, 0, 1)).build());
+
+        assertThat(result.getLeafIndices()).containsExactly(0, 1);
+        assertThat(result.getLeaves()).containsExactly(HASH_ITEM_1, HASH_ITEM_2);
+        assertThat(result.getProof()).containsExactly(HASH_ITEM_3_4);
+        assertThat(merkleTreeService.verifyMerkleMultiProof(result)).isTrue();
+    }
+
+    @Test
+    void getMerkleMultiProofSharesSiblings() {
+        List<String> items = IntStream.range(0, 13).mapToObj(i -> "ITEM_" + i).collect(Collectors.toList());
+        byte[] bigHashes = merkleTreeBuilder.build(items, TreeHasher.of(HashAlgorithm.SHA_256, HashMode.RAW));
+        MerkleTree bigMerkleTree = MerkleTree.builder().id(ID).leafCount(items.size()).height(5).algorithm(HashAlgorithm.SHA_256).hashMode(HashMode.RAW)
+                .root(Hex.encode(bigHashes, bigHashes.length - 32, 32)).build();
+        List<Integer> leafIndices = List.of(2, 3, 5, 12);
+
+        storeMerkleTree(bigMerkleTree, bigHashes);
+
+        MerkleMultiProof result = merkleTreeService.getMerkleMultiProof(ID, InputLeaves.builder().leafIndices(leafIndices).build());
+        int singleProofsSize = leafIndices.stream().mapToInt(index -> merkleTreeService.getMerkleProof(ID, index).getSiblings().size()).sum();
+
+        assertThat(result.getProof()).hasSizeLessThan(singleProofsSize);
+        assertThat(merkleTreeService.verifyMerkleMultiProof(result)).isTrue();
+
+        result.getLeaves().set(2, HASH_ITEM_1);
+        assertThat(merkleTreeService.verifyMerkleMultiProof(result)).isFalse();
+    }
+
+    @Test
+    void getMerkleMultiProofLeafNotFound() {
+        InputLeaves inputLeaves = InputLeaves.builder().leafIndices(List.of(0, 4)).build();
+
+        assertThrows(MerkleTreeLeafException.class, () -> merkleTreeService.getMerkleMultiProof(ID, inputLeaves));
+    }
+
+    @Test
+    void verifyMalformedMerkleMultiProof() {
+        MerkleMultiProof merkleMultiProof = MerkleMultiProof.builder()
+                .root(HASH_ITEM_1_2_3_4)
+                .leafCount(4)
+                .leafIndices(List.of(1, 0))
+                .leaves(List.of(HASH_ITEM_2, HASH_ITEM_1))
+                .proof(List.of(HASH_ITEM_3_4))
+                .build();
+
+        assertThrows(InvalidProofException.class, () -> merkleTreeService.verifyMerkleMultiProof(merkleMultiProof));
+    }
+
+    @Test
+    void generateMerkleTreeFromStream() throws IOException {
+        List<MerkleTree> results = List.of(
+                merkleTreeService.generateMerkleTree(toInputStream("[\"ITEM_1\", \"ITEM_2\", \"ITEM_3\", \"ITEM_4\"]"), MediaType.APPLICATION_JSON, HashAlgorithm.SHA_256, HashMode.HEX_CONCATENATION),
+                merkleTreeService.generateMerkleTree(toInputStream("\"ITEM_1\"\n\"ITEM_2\"\n\"ITEM_3\"\n\"ITEM_4\"\n"), MediaType.APPLICATION_NDJSON, HashAlgorithm.SHA_256, HashMode.HEX_CONCATENATION),
+                merkleTreeService.generateMerkleTree(toInputStream("ITEM_1\nITEM_2\nITEM_3\nITEM_4"), MediaType.TEXT_PLAIN, HashAlgorithm.SHA_256, HashMode.HEX_CONCATENATION));
+
+        for (MerkleTree result : results) {
+            assertThat(result.toBuilder().id(ID).createdAt(null).build()).isEqualTo(merkleTree);
+            assertThat(hashStore.readTree(result.getId(), 4)).isEqualTo(hashes);
+        }
+    }
+
+    @Test
+    void generateMerkleTreeFromMalformedStream() {
+        InputStream inputStream = toInputStream("[\"ITEM_1\", 2]");
+
+        assertThrows(InvalidItemsException.class, () -> merkleTreeService.generateMerkleTree(inputStream, MediaType.APPLICATION_JSON, null, null));
+        verify(hashStore, times(1)).delete(anyString(), eq(1L));
+        verify(merkleTreeRepository, never()).save(any(MerkleTree.class));
+    }
+
+    @Test
+    void appendItems() {
+        MerkleTree smallMerkleTree = MerkleTree.builder().id(ID).leafCount(3).height(3).algorithm(HashAlgorithm.SHA_256).hashMode(HashMode.HEX_CONCATENATION).root(HASH_ITEM_1_2_3).build();
+
+        storeMerkleTree(smallMerkleTree, Hex.decode(HASH_ITEM_1 + HASH_ITEM_2 + HASH_ITEM_3 + HASH_ITEM_1_2 + HASH_ITEM_3 + HASH_ITEM_1_2_3));
+
+        MerkleTree result = merkleTreeService.appendItems(ID, InputItems.builder().items(List.of("ITEM_4")).build());
+
+        verify(merkleTreeRepository, times(1)).commitWriteLease(eq(merkleTree), anyString());
+        assertThat(result.getRoot()).isEqualTo(HASH_ITEM_1_2_3_4);
+        assertThat(hashStore.readTree(ID, 4)).isEqualTo(hashes);
+    }
+
+    @Test
+    void updateItem() {
+        MerkleTree outdatedMerkleTree = MerkleTree.builder().id(ID).leafCount(4).height(3).algorithm(HashAlgorithm.SHA_256).hashMode(HashMode.HEX_CONCATENATION).root(HASH_ITEM_1_2_3).build();
+
+        storeMerkleTree(outdatedMerkleTree, Hex.decode(HASH_ITEM_1 + HASH_ITEM_2 + HASH_ITEM_3 + HASH_ITEM_3 + HASH_ITEM_1_2 + HASH_ITEM_3 + HASH_ITEM_1_2_3));
+
+        MerkleTree result = merkleTreeService.updateItem(ID, 3, InputItem.builder().item("ITEM_4").build());
+
+        verify(merkleTreeRepository, times(1)).commitWriteLease(eq(merkleTree), anyString());
+        assertThat(result.getRoot()).isEqualTo(HASH_ITEM_1_2_3_4);
+        assertThat(hashStore.readTree(ID, 4)).isEqualTo(hashes);
+    }
+
+    @Test
+    void updateItemLeafNotFound() {
+        InputItem inputItem = InputItem.builder().item("ITEM_5").build();
+
+        assertThrows(MerkleTreeLeafException.class, () -> merkleTreeService.updateItem(ID, 4, inputItem));
+        verify(merkleTreeRepository, times(1)).abandonWriteLease(eq(ID), anyString());
+    }
+
+    @Test
+    void concurrentAppendsKeepAllItems() throws InterruptedException {
+        // Header with the lease semantics of the database, shared by all writers
+        AtomicReference<MerkleTree> header = new AtomicReference<>(merkleTree);
+        AtomicReference<String> heldLease = new AtomicReference<>();
+        when(merkleTreeRepository.acquireWriteLease(eq(ID), anyString(), any())).thenAnswer(invocation ->
+                heldLease.compareAndSet(null, invocation.getArgument(1)) ? Optional.of(header.get().toBuilder().build()) : Optional.empty());
+        when(merkleTreeRepository.commitWriteLease(any(MerkleTree.class), anyString())).thenAnswer(invocation -> {
+            header.set(invocation.getArgument(0));
+            return heldLease.compareAndSet(invocation.getArgument(1), null);
+        });
+
+        List<String> items = IntStream.rangeClosed(5, 20).mapToObj(i -> "ITEM_" + i).collect(Collectors.toList());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        items.forEach(item -> executor.submit(() -> merkleTreeService.appendItems(ID, InputItems.builder().items(List.of(item)).build())));
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        // Appends are applied in any order, every item must be a leaf whose proof leads to the final root
+        MerkleTree result = header.get();
+        assertThat(result.getLeafCount()).isEqualTo(20);
+        storeMerkleTree(result, hashStore.readTree(ID, 20));
+        for (String item : items) {
+            MerkleProof merkleProof = merkleTreeService.getMerkleProof(ID, item);
+            assertThat(merkleProof.getRoot()).isEqualTo(result.getRoot());
+            assertThat(merkleTreeService.verifyMerkleProof(merkleProof)).isTrue();
+        }
+    }
+
+    @Test
+    void appendItemsLeasedByAnotherWriter() {
+        when(merkleTreeRepository.acquireWriteLease(eq(ID), anyString(), any())).thenReturn(Optional.empty());
+        when(merkleTreeRepository.existsById(ID)).thenReturn(true);
+        InputItems newItems = InputItems.builder().items(List.of("ITEM_5")).build();
+
+        assertThrows(MerkleTreeConflictException.class, () -> merkleTreeService.appendItems(ID, newItems));
+        verify(hashStore, never()).write(anyString(), anyInt(), anyLong(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void appendItemsNotFound() {
+        InputItems newItems = InputItems.builder().items(List.of("ITEM_5")).build();
+
+        assertThrows(MerkleTreeNotFoundException.class, () -> merkleTreeService.appendItems("UNKNOWN_ID", newItems));
+    }
+
+    @Test
+    void updateItemWithExpiredLease() {
+        when(merkleTreeRepository.commitWriteLease(any(MerkleTree.class), anyString())).thenReturn(false);
+        InputItem inputItem = InputItem.builder().item("ITEM_5").build();
+
+        assertThrows(MerkleTreeConflictException.class, () -> merkleTreeService.updateItem(ID, 3, inputItem));
+        assertThat(merkleTreeCache.getIfPresent(ID)).isNull();
+    }
+
+    private String storeGeneratedTree(String id, List<String> items) {
+        TreeHasher treeHasher = TreeHasher.of(HashAlgorithm.SHA_256, HashMode.RAW);
+        MerkleTree generated = merkleTree.toBuilder().id(id).leafCount(items.size()).height(TreeLayout.height(items.size())).hashMode(HashMode.RAW).build();
+        storeMerkleTree(generated, merkleTreeBuilder.build(items, treeHasher));
+        return id;
+    }
+
+    private void storeMerkleTree(MerkleTree storedMerkleTree, byte[] storedHashes) {
+        hashStore.delete(storedMerkleTree.getId(), 4);
+        hashStore.writeTree(storedMerkleTree.getId(), storedMerkleTree.getLeafCount(), storedHashes);
+        clearInvocations(hashStore);
+        when(merkleTreeRepository.findById(storedMerkleTree.getId())).thenReturn(Optional.of(storedMerkleTree));
+        when(merkleTreeRepository.acquireWriteLease(eq(storedMerkleTree.getId()), anyString(), any())).thenAnswer(invocation -> Optional.of(storedMerkleTree.toBuilder().build()));
+        when(merkleTreeRepository.findMetadataById(storedMerkleTree.getId())).thenReturn(Optional.of(MerkleTreeMetadata.of(storedMerkleTree)));
+    }
+
+    private static InputStream toInputStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
 }
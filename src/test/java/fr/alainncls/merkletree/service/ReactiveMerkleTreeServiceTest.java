@@ -0,0 +1,210 @@
+package fr.alainncls.merkletree.service;
+
+import fr.alainncls.merkletree.config.MerkleTreeMetrics;
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.exception.InvalidItemsException;
+import fr.alainncls.merkletree.exception.InvalidPageException;
+import fr.alainncls.merkletree.exception.MerkleTreeLevelException;
+import fr.alainncls.merkletree.exception.MerkleTreeNotFoundException;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.model.InputItems;
+import fr.alainncls.merkletree.model.MerkleProof;
+import fr.alainncls.merkletree.model.MerkleTree;
+import fr.alainncls.merkletree.model.MerkleTreeChunk;
+import fr.alainncls.merkletree.model.MerkleTreeMetadata;
+import fr.alainncls.merkletree.model.ProofStep;
+import fr.alainncls.merkletree.repository.ReactiveHashStore;
+import fr.alainncls.merkletree.repository.ReactiveMerkleTreeChunkRepository;
+import fr.alainncls.merkletree.repository.ReactiveMerkleTreeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReactiveMerkleTreeServiceTest {
+
+    private final InputItems inputItems = InputItems.builder().items(List.of("ITEM_1", "ITEM_2", "ITEM_3", "ITEM_4")).hashMode(HashMode.HEX_CONCATENATION).build();
+
+    private final String HASH_ITEM_1 = "5224b22b2342302bf1b9f40af063d645959a5107f6c3955c8bce8890b945f68a";
+    private final String HASH_ITEM_2 = "4633f0c4d24f5425a4cb1c539cdf4ca3b877ef42c3114dc75507b75ff3d2fe02";
+    private final String HASH_ITEM_3 = "69982370a875b34e20833a9291bf55ec6af463aee128bd1732adb966bf1b2a85";
+    private final String HASH_ITEM_4 = "b15af24ab0b8493abea3e8c2f01c7a51b721f8338f406478a37545a3c9bcd1b3";
+    private final String HASH_ITEM_1_2 = "2b18e91cc1ace16cee6e3644819a528740e118e2649996bd6911bbfd80e58747";
+    private final String HASH_ITEM_1_2_3_4 = "0372ff538dc9f033eb1cd7610a75b92478bd37906705a006d07b26229ac3b0c7";
+
+    private final Map<String, MerkleTree> merkleTrees = new HashMap<>();
+    private final Map<String, MerkleTreeChunk> chunks = new HashMap<>();
+    private final MerkleTreeProperties merkleTreeProperties = new MerkleTreeProperties();
+    private final MerkleTreeCache merkleTreeCache = new MerkleTreeCache(merkleTreeProperties);
+    private final MerkleTreeMetrics merkleTreeMetrics = new MerkleTreeMetrics();
+    private final Scheduler hashScheduler = Schedulers.newParallel("test-hash", 2);
+
+    private ReactiveMerkleTreeRepository merkleTreeRepository;
+    private ReactiveMerkleTreeService reactiveMerkleTreeService;
+
+    @BeforeEach
+    public void setUp() {
+        // Chunks of 2 hashes, the leaves span two chunks
+        merkleTreeProperties.getStorage().setChunkSize(2);
+        MerkleTreeBuilder merkleTreeBuilder = new MerkleTreeBuilder(merkleTreeProperties, merkleTreeMetrics);
+        MerkleTreeService merkleTreeService = new MerkleTreeService(null, null, merkleTreeCache, merkleTreeBuilder, merkleTreeProperties, merkleTreeMetrics);
+        merkleTreeRepository = merkleTreeRepository();
+
+        reactiveMerkleTreeService = new ReactiveMerkleTreeService(merkleTreeRepository, new ReactiveHashStore(chunkRepository(), merkleTreeProperties),
+                merkleTreeCache, merkleTreeBuilder, merkleTreeService, merkleTreeProperties, merkleTreeMetrics, hashScheduler);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        hashScheduler.dispose();
+    }
+
+    @Test
+    void generateMerkleTree() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        merkleTreeMetrics.bindTo(registry);
+
+        MerkleTree merkleTree = reactiveMerkleTreeService.generateMerkleTree(inputItems).block();
+
+        assertThat(merkleTree).isNotNull();
+        assertThat(merkleTree.getRoot()).isEqualTo(HASH_ITEM_1_2_3_4);
+        assertThat(merkleTree.getHeight()).isEqualTo(3);
+        assertThat(merkleTrees).containsKey(merkleTree.getId());
+        // 2 chunks of leaves, then 1 for each level above
+        assertThat(chunks).hasSize(4);
+        assertThat(merkleTreeCache.getIfPresent(merkleTree.getId())).isSameAs(merkleTree);
+        assertThat(registry.get("merkletree.tree.leaves").summary().totalAmount()).isEqualTo(4);
+    }
+
+    @Test
+    void generateMerkleTreeHeaderNotSaved() {
+        when(merkleTreeRepository.save(any(MerkleTree.class))).thenReturn(Mono.error(new IllegalStateException("Header not saved")));
+
+        StepVerifier.create(reactiveMerkleTreeService.generateMerkleTree(inputItems))
+                .expectError(IllegalStateException.class)
+                .verify();
+        assertThat(chunks).isEmpty();
+    }
+
+    @Test
+    void generateMerkleTreeWithoutItems() {
+        StepVerifier.create(reactiveMerkleTreeService.generateMerkleTree(InputItems.builder().items(List.of()).build()))
+                .expectError(InvalidItemsException.class)
+                .verify();
+    }
+
+    @Test
+    void getMerkleTreesWithInvalidLimit() {
+        StepVerifier.create(reactiveMerkleTreeService.getMerkleTrees(null, 0))
+                .expectError(InvalidPageException.class)
+                .verify();
+    }
+
+    @Test
+    void getMerkleTreeMetadata() {
+        String id = generateUncached();
+
+        StepVerifier.create(reactiveMerkleTreeService.getMerkleTreeRoot(id))
+                .expectNext(HASH_ITEM_1_2_3_4)
+                .verifyComplete();
+        StepVerifier.create(reactiveMerkleTreeService.getMerkleTreeHeight("ID_3"))
+                .expectError(MerkleTreeNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void getMerkleTreeLevel() {
+        String id = generateUncached();
+
+        StepVerifier.create(reactiveMerkleTreeService.getMerkleTreeLevel(id, 2, 1, null))
+                .expectNext(HASH_ITEM_2, HASH_ITEM_3, HASH_ITEM_4)
+                .verifyComplete();
+        StepVerifier.create(reactiveMerkleTreeService.getMerkleTreeLevel(id, 3, 0, null))
+                .expectError(MerkleTreeLevelException.class)
+                .verify();
+    }
+
+    @Test
+    void getMerkleTreeLevelFromCache() {
+        String id = reactiveMerkleTreeService.generateMerkleTree(inputItems).map(MerkleTree::getId).block();
+        chunks.clear();
+
+        StepVerifier.create(reactiveMerkleTreeService.getMerkleTreeLevel(id, 2, 0, 2L))
+                .expectNext(HASH_ITEM_1, HASH_ITEM_2)
+                .verifyComplete();
+    }
+
+    @Test
+    void getAndVerifyMerkleProof() {
+        String id = generateUncached();
+
+        MerkleProof merkleProof = reactiveMerkleTreeService.getMerkleProof(id, 3).block();
+
+        assertThat(merkleProof).isNotNull();
+        assertThat(merkleProof.getLeaf()).isEqualTo(HASH_ITEM_4);
+        assertThat(merkleProof.getSiblings()).containsExactly(
+                ProofStep.builder().hash(HASH_ITEM_3).position(ProofStep.Position.LEFT).build(),
+                ProofStep.builder().hash(HASH_ITEM_1_2).position(ProofStep.Position.LEFT).build());
+        StepVerifier.create(reactiveMerkleTreeService.verifyMerkleProof(merkleProof))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    // Generates the tree then drops it from the cache, so that it is read from the chunks
+    private String generateUncached() {
+        String id = reactiveMerkleTreeService.generateMerkleTree(inputItems).map(MerkleTree::getId).block();
+        merkleTreeCache.invalidate(id);
+        return id;
+    }
+
+    private ReactiveMerkleTreeRepository merkleTreeRepository() {
+        ReactiveMerkleTreeRepository merkleTreeRepository = mock(ReactiveMerkleTreeRepository.class);
+        when(merkleTreeRepository.save(any(MerkleTree.class))).thenAnswer(invocation -> {
+            MerkleTree merkleTree = invocation.getArgument(0);
+            merkleTrees.put(merkleTree.getId(), merkleTree);
+            return Mono.just(merkleTree);
+        });
+        when(merkleTreeRepository.findMetadataById(anyString())).thenAnswer(invocation ->
+                Mono.justOrEmpty(merkleTrees.get(invocation.<String>getArgument(0))).map(MerkleTreeMetadata::of));
+        return merkleTreeRepository;
+    }
+
+    private ReactiveMerkleTreeChunkRepository chunkRepository() {
+        ReactiveMerkleTreeChunkRepository chunkRepository = mock(ReactiveMerkleTreeChunkRepository.class);
+        when(chunkRepository.saveAll(ArgumentMatchers.<Iterable<MerkleTreeChunk>>any())).thenAnswer(invocation -> {
+            Iterable<MerkleTreeChunk> saved = invocation.getArgument(0);
+            saved.forEach(chunk -> chunks.put(chunk.getId(), chunk));
+            return Flux.fromIterable(saved);
+        });
+        when(chunkRepository.findById(anyString())).thenAnswer(invocation -> Mono.justOrEmpty(chunks.get(invocation.<String>getArgument(0))));
+        when(chunkRepository.findAllById(ArgumentMatchers.<Iterable<String>>any())).thenAnswer(invocation -> {
+            Iterable<String> ids = invocation.getArgument(0);
+            return Flux.fromIterable(StreamSupport.stream(ids.spliterator(), false).map(chunks::get).filter(Objects::nonNull).collect(Collectors.toList()));
+        });
+        when(chunkRepository.deleteAllById(ArgumentMatchers.<Iterable<String>>any())).thenAnswer(invocation -> {
+            Iterable<String> ids = invocation.getArgument(0);
+            ids.forEach(chunks::remove);
+            return Mono.empty();
+        });
+        return chunkRepository;
+    }
+}
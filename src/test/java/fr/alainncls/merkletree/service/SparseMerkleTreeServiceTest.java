@@ -0,0 +1,357 @@
+package fr.alainncls.merkletree.service;
+
+import fr.alainncls.merkletree.config.MerkleTreeProperties;
+import fr.alainncls.merkletree.exception.InvalidSparseKeyException;
+import fr.alainncls.merkletree.exception.MerkleTreeConflictException;
+import fr.alainncls.merkletree.exception.SparseMerkleTreeNotFoundException;
+import fr.alainncls.merkletree.hash.HashAlgorithm;
+import fr.alainncls.merkletree.hash.HashMode;
+import fr.alainncls.merkletree.hash.Hex;
+import fr.alainncls.merkletree.hash.SparseTreeHasher;
+import fr.alainncls.merkletree.hash.TreeHasher;
+import fr.alainncls.merkletree.model.InputItem;
+import fr.alainncls.merkletree.model.InputSparseMerkleTree;
+import fr.alainncls.merkletree.model.SparseMerkleNode;
+import fr.alainncls.merkletree.model.SparseMerkleProof;
+import fr.alainncls.merkletree.model.SparseMerkleTree;
+import fr.alainncls.merkletree.model.SparseProofStep;
+import fr.alainncls.merkletree.repository.SparseMerkleNodeRepository;
+import fr.alainncls.merkletree.repository.SparseMerkleTreeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static fr.alainncls.merkletree.hash.SparseTreeHasher.DEPTH;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SparseMerkleTreeServiceTest {
+
+    private final String KEY_1 = "00".repeat(32);
+    private final String KEY_2 = "00".repeat(31) + "01";
+    private final String KEY_3 = "80" + "00".repeat(31);
+    private final String KEY_4 = "ff".repeat(32);
+
+    private final SparseTreeHasher sparseTreeHasher = SparseTreeHasher.of(TreeHasher.of(HashAlgorithm.SHA_256, HashMode.RAW));
+
+    private final Map<String, SparseMerkleTree> trees = new HashMap<>();
+    private final Map<String, SparseMerkleNode> nodes = new HashMap<>();
+    // Write lease held on each tree
+    private final Map<String, String> leases = new HashMap<>();
+
+    private SparseMerkleTreeRepository sparseMerkleTreeRepository;
+    private SparseMerkleNodeRepository sparseMerkleNodeRepository;
+    private SparseMerkleTreeService sparseMerkleTreeService;
+
+    @BeforeEach
+    public void setUp() {
+        sparseMerkleTreeRepository = mock(SparseMerkleTreeRepository.class);
+        when(sparseMerkleTreeRepository.save(any())).thenAnswer(invocation -> {
+            SparseMerkleTree saved = invocation.getArgument(0);
+            trees.put(saved.getId(), saved);
+            return saved;
+        });
+        when(sparseMerkleTreeRepository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(trees.get(invocation.<String>getArgument(0))));
+        when(sparseMerkleTreeRepository.existsById(anyString())).thenAnswer(invocation -> trees.containsKey(invocation.<String>getArgument(0)));
+        when(sparseMerkleTreeRepository.acquireWriteLease(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            String id = invocation.getArgument(0);
+            if (!trees.containsKey(id) || leases.containsKey(id)) {
+                return Optional.empty();
+            }
+            leases.put(id, invocation.getArgument(1));
+            return Optional.of(trees.get(id));
+        });
+        when(sparseMerkleTreeRepository.commitWriteLease(any(), anyString())).thenAnswer(invocation -> {
+            SparseMerkleTree committed = invocation.getArgument(0);
+            if (!leases.remove(committed.getId(), invocation.<String>getArgument(1))) {
+                return false;
+            }
+            trees.put(committed.getId(), committed);
+            return true;
+        });
+        doAnswer(invocation -> leases.remove(invocation.<String>getArgument(0), invocation.<String>getArgument(1)))
+                .when(sparseMerkleTreeRepository).abandonWriteLease(anyString(), anyString());
+        when(sparseMerkleTreeRepository.deleteWithWriteLease(anyString(), anyString())).thenAnswer(invocation -> {
+            String id = invocation.getArgument(0);
+            return leases.remove(id, invocation.<String>getArgument(1)) && trees.remove(id) != null;
+        });
+
+        sparseMerkleNodeRepository = mock(SparseMerkleNodeRepository.class);
+        when(sparseMerkleNodeRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<String> ids = invocation.getArgument(0);
+            return StreamSupport.stream(ids.spliterator(), false).map(nodes::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
+        when(sparseMerkleNodeRepository.saveAll(any())).thenAnswer(invocation -> {
+            Iterable<SparseMerkleNode> saved = invocation.getArgument(0);
+            saved.forEach(node -> nodes.put(node.getId(), node));
+            return List.copyOf(nodes.values());
+        });
+        doAnswer(invocation -> {
+            Iterable<String> ids = invocation.getArgument(0);
+            ids.forEach(nodes::remove);
+            return null;
+        }).when(sparseMerkleNodeRepository).deleteAllById(any());
+        doAnswer(invocation -> {
+            String regex = invocation.getArgument(0);
+            nodes.keySet().removeIf(id -> id.matches(regex + ".*"));
+            return null;
+        }).when(sparseMerkleNodeRepository).deleteByIdMatching(anyString());
+
+        MerkleTreeProperties properties = new MerkleTreeProperties();
+        properties.getHash().setMode(HashMode.RAW);
+        sparseMerkleTreeService = new SparseMerkleTreeService(sparseMerkleTreeRepository, sparseMerkleNodeRepository, properties);
+    }
+
+    @Test
+    void createSparseMerkleTree() {
+        SparseMerkleTree sparseMerkleTree = sparseMerkleTreeService.createSparseMerkleTree(null);
+
+        assertThat(sparseMerkleTree.getSize()).isZero();
+        assertThat(sparseMerkleTree.getAlgorithm()).isEqualTo(HashAlgorithm.SHA_256);
+        assertThat(sparseMerkleTree.getHashMode()).isEqualTo(HashMode.RAW);
+        assertThat(sparseMerkleTree.getRoot()).isEqualTo(Hex.encode(referenceRoot(Map.of())));
+        assertThat(nodes).isEmpty();
+    }
+
+    @Test
+    void putEntriesMatchesReferenceRoot() {
+        String id = sparseMerkleTreeService.createSparseMerkleTree(null).getId();
+        Map<String, String> entries = randomEntries(50);
+        entries.putAll(Map.of(KEY_1, "VALUE_1", KEY_2, "VALUE_2", KEY_3, "VALUE_3", KEY_4, "VALUE_4"));
+
+        SparseMerkleTree sparseMerkleTree = null;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            sparseMerkleTree = sparseMerkleTreeService.putEntry(id, entry.getKey(), InputItem.builder().item(entry.getValue()).build());
+        }
+
+        assertThat(sparseMerkleTree.getSize()).isEqualTo(entries.size());
+        assertThat(sparseMerkleTree.getRoot()).isEqualTo(Hex.encode(referenceRoot(entries)));
+        assertThat(nodes).hasSize(referenceNodeCount(entries));
+    }
+
+    @Test
+    void putEntryReplacesValue() {
+        String id = sparseMerkleTreeService.createSparseMerkleTree(null).getId();
+        sparseMerkleTreeService.putEntry(id, KEY_1, InputItem.builder().item("VALUE_1").build());
+        sparseMerkleTreeService.putEntry(id, KEY_2, InputItem.builder().item("VALUE_2").build());
+
+        SparseMerkleTree sparseMerkleTree = sparseMerkleTreeService.putEntry(id, KEY_2, InputItem.builder().item("VALUE_3").build());
+
+        assertThat(sparseMerkleTree.getSize()).isEqualTo(2);
+        assertThat(sparseMerkleTree.getRoot()).isEqualTo(Hex.encode(referenceRoot(Map.of(KEY_1, "VALUE_1", KEY_2, "VALUE_3"))));
+    }
+
+    @Test
+    void removeEntryMatchesReferenceRoot() {
+        String id = sparseMerkleTreeService.createSparseMerkleTree(null).getId();
+        Map<String, String> entries = randomEntries(40);
+        entries.putAll(Map.of(KEY_1, "VALUE_1", KEY_2, "VALUE_2"));
+        entries.forEach((key, value) -> sparseMerkleTreeService.putEntry(id, key, InputItem.builder().item(value).build()));
+
+        List<String> keys = new ArrayList<>(entries.keySet());
+        Collections.shuffle(keys, new Random(1));
+        for (String key : keys) {
+            entries.remove(key);
+            SparseMerkleTree sparseMerkleTree = sparseMerkleTreeService.removeEntry(id, key);
+
+            assertThat(sparseMerkleTree.getSize()).isEqualTo(entries.size());
+            assertThat(sparseMerkleTree.getRoot()).isEqualTo(Hex.encode(referenceRoot(entries)));
+            assertThat(nodes).hasSize(referenceNodeCount(entries));
+        }
+    }
+
+    @Test
+    void removeAbsentEntry() {
+        String id = sparseMerkleTreeService.createSparseMerkleTree(null).getId();
+        sparseMerkleTreeService.putEntry(id, KEY_1, InputItem.builder().item("VALUE_1").build());
+
+        SparseMerkleTree sparseMerkleTree = sparseMerkleTreeService.removeEntry(id, KEY_2);
+
+        assertThat(sparseMerkleTree.getSize()).isEqualTo(1);
+        assertThat(sparseMerkleTree.getRoot()).isEqualTo(Hex.encode(referenceRoot(Map.of(KEY_1, "VALUE_1"))));
+    }
+
+    @Test
+    void getSparseMerkleProof() {
+        String id = sparseMerkleTreeService.createSparseMerkleTree(null).getId();
+        Map<String, String> entries = randomEntries(30);
+        entries.putAll(Map.of(KEY_1, "VALUE_1", KEY_3, "VALUE_3"));
+        entries.forEach((key, value) -> sparseMerkleTreeService.putEntry(id, key, InputItem.builder().item(value).build()));
+
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            SparseMerkleProof proof = sparseMerkleTreeService.getSparseMerkleProof(id, entry.getKey());
+
+            assertThat(proof.getLeaf()).isEqualTo(Hex.encode(sparseTreeHasher.getTreeHasher().hashLeaf(entry.getValue())));
+            assertThat(sparseMerkleTreeService.verifySparseMerkleProof(proof)).isTrue();
+        }
+    }
+
+    @Test
+    void getSparseMerkleProofOfAbsentKey() {
+        String id = sparseMerkleTreeService.createSparseMerkleTree(null).getId();
+        Map<String, String> entries = randomEntries(30);
+        entries.put(KEY_1, "VALUE_1");
+        entries.forEach((key, value) -> sparseMerkleTreeService.putEntry(id, key, InputItem.builder().item(value).build()));
+
+        // Absent keys landing in an empty subtree, next to another key, or sharing all but the last bit with one
+        for (String key : List.of(KEY_2, KEY_3, KEY_4, "7f".repeat(32))) {
+            SparseMerkleProof proof = sparseMerkleTreeService.getSparseMerkleProof(id, key);
+
+            assertThat(proof.getLeaf()).isNull();
+            assertThat(proof.getRoot()).isEqualTo(Hex.encode(referenceRoot(entries)));
+            assertThat(sparseMerkleTreeService.verifySparseMerkleProof(proof)).isTrue();
+        }
+    }
+
+    @Test
+    void verifyTamperedSparseMerkleProof() {
+        String id = sparseMerkleTreeService.createSparseMerkleTree(null).getId();
+        sparseMerkleTreeService.putEntry(id, KEY_1, InputItem.builder().item("VALUE_1").build());
+        sparseMerkleTreeService.putEntry(id, KEY_3, InputItem.builder().item("VALUE_3").build());
+        SparseMerkleProof proof = sparseMerkleTreeService.getSparseMerkleProof(id, KEY_1);
+
+        SparseMerkleProof absent = proof.toBuilder().leaf(null).build();
+        SparseMerkleProof otherKey = proof.toBuilder().key(KEY_2).build();
+        SparseMerkleProof movedSibling = proof.toBuilder().siblings(List.of(SparseProofStep.builder().height(254).hash(proof.getSiblings().get(0).getHash()).build())).build();
+
+        assertThat(sparseMerkleTreeService.verifySparseMerkleProof(proof)).isTrue();
+        assertThat(sparseMerkleTreeService.verifySparseMerkleProof(absent)).isFalse();
+        assertThat(sparseMerkleTreeService.verifySparseMerkleProof(otherKey)).isFalse();
+        assertThat(sparseMerkleTreeService.verifySparseMerkleProof(movedSibling)).isFalse();
+    }
+
+    @Test
+    void deleteSparseMerkleTree() {
+        String id = sparseMerkleTreeService.createSparseMerkleTree(InputSparseMerkleTree.builder().hashMode(HashMode.HEX_CONCATENATION).build()).getId();
+        String otherId = sparseMerkleTreeService.createSparseMerkleTree(null).getId();
+        sparseMerkleTreeService.putEntry(id, KEY_1, InputItem.builder().item("VALUE_1").build());
+        sparseMerkleTreeService.putEntry(otherId, KEY_1, InputItem.builder().item("VALUE_1").build());
+
+        sparseMerkleTreeService.deleteSparseMerkleTree(id);
+
+        assertThrows(SparseMerkleTreeNotFoundException.class, () -> sparseMerkleTreeService.getSparseMerkleTree(id));
+        assertThat(nodes.keySet()).allMatch(nodeId -> nodeId.startsWith(otherId + ":"));
+        assertThat(nodes).hasSize(1);
+    }
+
+    @Test
+    void putEntryLeasedByAnotherWriter() {
+        String id = sparseMerkleTreeService.createSparseMerkleTree(null).getId();
+        leases.put(id, "OTHER_LEASE");
+
+        assertThrows(MerkleTreeConflictException.class, () -> sparseMerkleTreeService.putEntry(id, KEY_1, InputItem.builder().item("VALUE_1").build()));
+        assertThrows(MerkleTreeConflictException.class, () -> sparseMerkleTreeService.removeEntry(id, KEY_1));
+        assertThat(nodes).isEmpty();
+        assertThat(leases).containsEntry(id, "OTHER_LEASE");
+    }
+
+    @Test
+    void putEntryWithExpiredLease() {
+        String id = sparseMerkleTreeService.createSparseMerkleTree(null).getId();
+        // Another writer takes the tree over while the nodes are being written
+        doAnswer(invocation -> {
+            leases.put(id, "OTHER_LEASE");
+            return List.of();
+        }).when(sparseMerkleNodeRepository).saveAll(any());
+
+        assertThrows(MerkleTreeConflictException.class, () -> sparseMerkleTreeService.putEntry(id, KEY_1, InputItem.builder().item("VALUE_1").build()));
+        assertThat(sparseMerkleTreeService.getSparseMerkleTree(id).getSize()).isZero();
+        assertThat(leases).containsEntry(id, "OTHER_LEASE");
+    }
+
+    @Test
+    void putEntryReleasesLease() {
+        String id = sparseMerkleTreeService.createSparseMerkleTree(null).getId();
+
+        sparseMerkleTreeService.putEntry(id, KEY_1, InputItem.builder().item("VALUE_1").build());
+        sparseMerkleTreeService.removeEntry(id, KEY_2);
+
+        assertThat(leases).isEmpty();
+        assertThrows(SparseMerkleTreeNotFoundException.class, () -> sparseMerkleTreeService.putEntry("UNKNOWN", KEY_1, InputItem.builder().item("VALUE_1").build()));
+    }
+
+    @Test
+    void deleteSparseMerkleTreeLeasedByAnotherWriter() {
+        String id = sparseMerkleTreeService.createSparseMerkleTree(null).getId();
+        sparseMerkleTreeService.putEntry(id, KEY_1, InputItem.builder().item("VALUE_1").build());
+        leases.put(id, "OTHER_LEASE");
+
+        assertThrows(MerkleTreeConflictException.class, () -> sparseMerkleTreeService.deleteSparseMerkleTree(id));
+        assertThat(trees).containsKey(id);
+        assertThat(nodes).hasSize(1);
+    }
+
+    @Test
+    void putEntryInvalidKey() {
+        String id = sparseMerkleTreeService.createSparseMerkleTree(null).getId();
+        InputItem inputItem = InputItem.builder().item("VALUE_1").build();
+
+        assertThrows(InvalidSparseKeyException.class, () -> sparseMerkleTreeService.putEntry(id, "00", inputItem));
+        assertThrows(InvalidSparseKeyException.class, () -> sparseMerkleTreeService.putEntry(id, "zz".repeat(32), inputItem));
+    }
+
+    @Test
+    void getSparseMerkleTreeNotFound() {
+        assertThrows(SparseMerkleTreeNotFoundException.class, () -> sparseMerkleTreeService.getSparseMerkleTree("UNKNOWN"));
+    }
+
+    private static Map<String, String> randomEntries(int count) {
+        Random random = new Random(42);
+        Map<String, String> entries = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[32];
+            random.nextBytes(key);
+            entries.put(Hex.encode(key), "VALUE_" + i);
+        }
+        return entries;
+    }
+
+    // One node per key, at the top of the subtree holding it alone, and one per subtree holding several keys
+    private static int referenceNodeCount(Map<String, String> entries) {
+        int count = entries.size();
+        for (int depth = 0; depth < DEPTH; depth++) {
+            int prefixDepth = depth;
+            Map<String, Long> keysByPrefix = entries.keySet().stream()
+                    .collect(Collectors.groupingBy(key -> SparseMerkleNode.id("", Hex.decode(key), prefixDepth), Collectors.counting()));
+            count += (int) keysByPrefix.values().stream().filter(keys -> keys > 1).count();
+        }
+        return count;
+    }
+
+    // Hashes the whole tree down to its 2^256 leaves, empty subtrees excepted
+    private byte[] referenceRoot(Map<String, String> entries) {
+        Map<String, byte[]> leaves = new HashMap<>();
+        entries.forEach((key, value) -> leaves.put(key, sparseTreeHasher.getTreeHasher().hashLeaf(value)));
+        return referenceHash(leaves, 0);
+    }
+
+    private byte[] referenceHash(Map<String, byte[]> leaves, int depth) {
+        if (leaves.isEmpty()) {
+            return sparseTreeHasher.defaultHash(DEPTH - depth);
+        }
+        if (depth == DEPTH) {
+            return leaves.values().iterator().next();
+        }
+
+        Map<String, byte[]> left = new HashMap<>();
+        Map<String, byte[]> right = new HashMap<>();
+        leaves.forEach((key, leaf) -> (SparseTreeHasher.bit(Hex.decode(key), depth + 1) == 0 ? left : right).put(key, leaf));
+        return sparseTreeHasher.getTreeHasher().hashChildren(referenceHash(left, depth + 1), referenceHash(right, depth + 1));
+    }
+}